@@ -0,0 +1,122 @@
+//import statements:
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import huffbench.HuffOps;
+
+// DefaultHuffOps runs the operations the benchmarks measure on the classes of
+// the compressor. Output is written to a stream that only sums the bytes, so
+// the benchmarks don't measure the growth of a buffer but the JIT can't skip
+// writing them.
+public class DefaultHuffOps implements HuffOps {
+
+	public long readBits(byte[] data) throws IOException {
+		BitInputStream reader = new BitInputStream(new ByteArrayInputStream(data));
+		long sum = 0;
+		int inBits = 0;
+		while ((inBits = reader.readBits(IHuffConstants.BITS_PER_WORD)) != -1) {
+			sum += inBits;
+		}
+		return sum;
+	}
+
+	public long writeBits(byte[] data) throws IOException {
+		CountingOutputStream out = new CountingOutputStream();
+		BitOutputStream writer = new BitOutputStream(out);
+		for (byte b : data) {
+			writer.writeBits(IHuffConstants.BITS_PER_WORD, b & 0xff);
+		}
+		writer.flush();
+		return out.sum;
+	}
+
+	public Object newCompressor(byte[] data, String headerFormat, boolean blocks) throws IOException {
+		int flags = IHuffConstants.FLAG_LENGTH;
+		if (blocks) {
+			flags |= IHuffConstants.FLAG_BLOCKS;
+		}
+		BitInputStream reader = new BitInputStream(new ByteArrayInputStream(data));
+		return new Compressor(reader, getHeaderFormat(headerFormat), Compressor.Options.NONE.withFlags(flags));
+	}
+
+	public long compress(Object compressor, byte[] data) throws IOException {
+		CountingOutputStream out = new CountingOutputStream();
+		compress((Compressor) compressor, data, out);
+		return out.sum;
+	}
+
+	public byte[] compressed(byte[] data, String headerFormat) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		compress((Compressor) newCompressor(data, headerFormat, false), data, out);
+		return out.toByteArray();
+	}
+
+	public byte[] treeHeader(byte[] data, String headerFormat) throws IOException {
+		int[] freq = new int[IHuffConstants.ALPH_SIZE];
+		for (byte b : data) {
+			freq[b & 0xff]++;
+		}
+		HuffTree tree = HuffTree.fromFrequencies(freq, IHuffConstants.PSEUDO_EOF);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BitOutputStream writer = new BitOutputStream(out);
+		tree.writeHeader(writer, getHeaderFormat(headerFormat), freq);
+		writer.flush();
+		return out.toByteArray();
+	}
+
+	public Object readTree(byte[] header, String headerFormat) throws IOException {
+		BitInputStream reader = new BitInputStream(new ByteArrayInputStream(header));
+		return HuffTree.readHeader(reader, getHeaderFormat(headerFormat), IHuffConstants.ALPH_SIZE);
+	}
+
+	public long decompress(byte[] compressed) throws IOException {
+		CountingOutputStream out = new CountingOutputStream();
+		BitInputStream reader = new BitInputStream(new ByteArrayInputStream(compressed));
+		Decompressor decompressor = new Decompressor();
+		if (!decompressor.isCompressedFile(reader)) {
+			throw new IOException("not compressed");
+		}
+		decompressor.constructTree(reader);
+		BitOutputStream writer = new BitOutputStream(decompressor.getFilterChain().unfilter(out));
+		if (decompressor.decompress(reader, writer) == -1) {
+			throw new IOException("compressed data ends early");
+		}
+		writer.close();
+		return out.sum;
+	}
+
+	// helper method writes data compressed by compressor to out.
+	private static void compress(Compressor compressor, byte[] data, OutputStream out) throws IOException {
+		BitOutputStream writer = new BitOutputStream(out);
+		BitInputStream reader = new BitInputStream(new ByteArrayInputStream(data));
+		compressor.compress(writer, reader);
+		writer.flush();
+	}
+
+	// helper method returns the header format with the given name.
+	private static int getHeaderFormat(String name) {
+		if (COUNTS.equals(name)) {
+			return IHuffConstants.STORE_COUNTS;
+		} else if (TREE.equals(name)) {
+			return IHuffConstants.STORE_TREE;
+		}
+		throw new IllegalArgumentException("unknown header format " + name);
+	}
+
+	// OutputStream that only sums the bytes written to it.
+	private static class CountingOutputStream extends OutputStream {
+		private long sum;
+
+		public void write(int b) {
+			sum += (b & 0xff) + 1;
+		}
+
+		public void write(byte[] b, int off, int len) {
+			for (int i = off; i < off + len; i++) {
+				sum += (b[i] & 0xff) + 1;
+			}
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package huffbench;
+
+//import statements:
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// BitStreamBenchmark measures reading and writing every chunk of the data one
+// BITS_PER_WORD chunk at a time.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BitStreamBenchmark {
+
+	@Param({ "4096", "1048576" })
+	public int size;
+
+	@Param({ Inputs.TEXT, Inputs.RANDOM })
+	public String profile;
+
+	private HuffOps ops;
+	private byte[] data;
+
+	@Setup
+	public void setUp() {
+		ops = HuffOps.load();
+		data = Inputs.generate(profile, size);
+	}
+
+	@Benchmark
+	public long readBits() throws IOException {
+		return ops.readBits(data);
+	}
+
+	@Benchmark
+	public long writeBits() throws IOException {
+		return ops.writeBits(data);
+	}
+}
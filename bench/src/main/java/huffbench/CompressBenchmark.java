@@ -0,0 +1,60 @@
+package huffbench;
+
+//import statements:
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// CompressBenchmark measures the two passes of compression: counting the data
+// and building the tree when a Compressor is constructed, and writing the codes
+// in compress.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressBenchmark {
+
+	@Param({ "4096", "1048576" })
+	public int size;
+
+	@Param({ Inputs.SKEWED, Inputs.TEXT, Inputs.RANDOM })
+	public String profile;
+
+	// true if the data may be split into blocks.
+	@Param({ "false", "true" })
+	public boolean blocks;
+
+	private HuffOps ops;
+	private byte[] data;
+	private Object compressor;
+
+	@Setup
+	public void setUp() throws IOException {
+		ops = HuffOps.load();
+		data = Inputs.generate(profile, size);
+		compressor = ops.newCompressor(data, HuffOps.TREE, blocks);
+	}
+
+	@Benchmark
+	public Object construct() throws IOException {
+		return ops.newCompressor(data, HuffOps.TREE, blocks);
+	}
+
+	@Benchmark
+	public long compress() throws IOException {
+		return ops.compress(compressor, data);
+	}
+}
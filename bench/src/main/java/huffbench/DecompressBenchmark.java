@@ -0,0 +1,51 @@
+package huffbench;
+
+//import statements:
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// DecompressBenchmark measures Decompressor reading the header and decoding
+// data compressed with a single tree.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecompressBenchmark {
+
+	@Param({ "4096", "1048576" })
+	public int size;
+
+	@Param({ Inputs.SKEWED, Inputs.TEXT, Inputs.RANDOM })
+	public String profile;
+
+	@Param({ HuffOps.COUNTS, HuffOps.TREE })
+	public String headerFormat;
+
+	private HuffOps ops;
+	private byte[] compressed;
+
+	@Setup
+	public void setUp() throws IOException {
+		ops = HuffOps.load();
+		compressed = ops.compressed(Inputs.generate(profile, size), headerFormat);
+	}
+
+	@Benchmark
+	public long decompress() throws IOException {
+		return ops.decompress(compressed);
+	}
+}
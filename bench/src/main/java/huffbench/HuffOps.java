@@ -0,0 +1,57 @@
+package huffbench;
+
+//import statements:
+import java.io.IOException;
+
+// HuffOps is the set of operations the benchmarks measure. The classes of the
+// compressor are in the default package, which can't be imported from a named
+// package, so they are only reached through this interface. The implementation
+// is DefaultHuffOps in the default package, loaded once by forName.
+public interface HuffOps {
+
+	// header formats passed to the methods below.
+	String COUNTS = "counts";
+	String TREE = "tree";
+
+	// method reads every chunk of data with BitInputStream.readBits.
+	// returns the sum of the chunks read.
+	long readBits(byte[] data) throws IOException;
+
+	// method writes every chunk of data with BitOutputStream.writeBits.
+	// returns a checksum of the bytes written.
+	long writeBits(byte[] data) throws IOException;
+
+	// method counts data and builds the tree and codes of a Compressor.
+	// blocks: true if the data may be split into blocks.
+	// returns the Compressor.
+	Object newCompressor(byte[] data, String headerFormat, boolean blocks) throws IOException;
+
+	// method writes the compressed data with a Compressor made by newCompressor
+	// for the same data.
+	// returns a checksum of the bytes written.
+	long compress(Object compressor, byte[] data) throws IOException;
+
+	// method returns data compressed with a single tree, with the length and
+	// without filters.
+	byte[] compressed(byte[] data, String headerFormat) throws IOException;
+
+	// method returns the tree header written for the frequencies of data.
+	byte[] treeHeader(byte[] data, String headerFormat) throws IOException;
+
+	// method rebuilds a tree from a header made by treeHeader.
+	// returns the tree.
+	Object readTree(byte[] header, String headerFormat) throws IOException;
+
+	// method decompresses data made by compressed with a Decompressor.
+	// returns a checksum of the bytes written.
+	long decompress(byte[] compressed) throws IOException;
+
+	// method returns the operations on the current classes of the compressor.
+	static HuffOps load() {
+		try {
+			return (HuffOps) Class.forName("DefaultHuffOps").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("can't load DefaultHuffOps", e);
+		}
+	}
+}
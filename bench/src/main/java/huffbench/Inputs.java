@@ -0,0 +1,58 @@
+package huffbench;
+
+//import statements:
+import java.util.Random;
+
+// Inputs generates the data the benchmarks compress. Every profile has a
+// different entropy, so the benchmarks see both short and long codes.
+public final class Inputs {
+
+	// class constants:
+	// profile names, from the lowest entropy to the highest.
+	public static final String SKEWED = "skewed";
+	public static final String TEXT = "text";
+	public static final String RANDOM = "random";
+	// the same data is generated for every run.
+	private static final long SEED = 42;
+	private static final String[] WORDS = { "the", "of", "and", "to", "in", "is", "that", "for", "it", "as",
+			"with", "was", "on", "be", "by", "this", "are", "from", "or", "which", "compression", "huffman",
+			"tree", "code", "bits", "stream", "file", "header", "frequency", "value" };
+
+	// this class only has static methods.
+	private Inputs() {
+	}
+
+	// method returns size bytes of data with the given profile.
+	// skewed: bytes with a geometric distribution, about 2 bits per byte.
+	// text: English-like words, about 4 bits per byte.
+	// random: uniform bytes, 8 bits per byte.
+	public static byte[] generate(String profile, int size) {
+		Random random = new Random(SEED);
+		byte[] data = new byte[size];
+		if (SKEWED.equals(profile)) {
+			for (int i = 0; i < size; i++) {
+				int value = 0;
+				while (value < 255 && random.nextBoolean()) {
+					value++;
+				}
+				data[i] = (byte) ('a' + value);
+			}
+		} else if (TEXT.equals(profile)) {
+			int i = 0;
+			while (i < size) {
+				String word = WORDS[(int) Math.min(WORDS.length - 1, -Math.log(random.nextDouble()) * 6)];
+				for (int j = 0; j < word.length() && i < size; j++) {
+					data[i++] = (byte) word.charAt(j);
+				}
+				if (i < size) {
+					data[i++] = (byte) (random.nextInt(12) == 0 ? '\n' : ' ');
+				}
+			}
+		} else if (RANDOM.equals(profile)) {
+			random.nextBytes(data);
+		} else {
+			throw new IllegalArgumentException("unknown profile " + profile);
+		}
+		return data;
+	}
+}
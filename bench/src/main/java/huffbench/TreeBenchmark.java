@@ -0,0 +1,49 @@
+package huffbench;
+
+//import statements:
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// TreeBenchmark measures rebuilding a HuffTree from the header of a
+// compressed file, in both header formats. The number of different values in
+// the data decides the size of the tree.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TreeBenchmark {
+
+	@Param({ HuffOps.COUNTS, HuffOps.TREE })
+	public String headerFormat;
+
+	@Param({ Inputs.SKEWED, Inputs.TEXT, Inputs.RANDOM })
+	public String profile;
+
+	private HuffOps ops;
+	private byte[] header;
+
+	@Setup
+	public void setUp() throws IOException {
+		ops = HuffOps.load();
+		header = ops.treeHeader(Inputs.generate(profile, 1 << 16), headerFormat);
+	}
+
+	@Benchmark
+	public Object readTree() throws IOException {
+		return ops.readTree(header, headerFormat);
+	}
+}
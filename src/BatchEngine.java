@@ -0,0 +1,299 @@
+//import statements:
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+// BatchEngine compresses or uncompresses many files at once on a
+// work-stealing pool. Files are submitted largest first, so a big file found
+// late doesn't leave one thread working after the others are done. Files that
+// fit in the memory budget are read into memory once, the rest are read from
+// disk for both passes, and the bytes held in memory by running jobs never
+// exceed the budget. Totals are kept in LongAdders, so jobs finishing at the
+// same time don't contend on them.
+public class BatchEngine implements AutoCloseable {
+
+	// class constants:
+	public static final String HUFF_SUFFIX = ".hf";
+	public static final String UNHUFF_SUFFIX = ".unhf";
+	// the budget is counted in units of this many bytes, so it fits a Semaphore.
+	private static final int BUDGET_UNIT = 1024;
+
+	// instance vars:
+	private final ForkJoinPool myPool;
+	// permits for the bytes that may be held in memory, in BUDGET_UNITs.
+	private final Semaphore myBudget;
+	private final int myBudgetUnits;
+	// STORE_COUNTS or STORE_TREE.
+	private int myHeaderFormat = IHuffConstants.STORE_TREE;
+	// true if files are written even when they don't get smaller.
+	private boolean myForce;
+	// true if files are decoded and checked as they are compressed.
+	private boolean myVerify;
+	// where output files are written, null to write them next to the input.
+	private File myOutputDirectory;
+	// the suffix that replaces .hf on uncompressed files.
+	private String myUncompressedSuffix = UNHUFF_SUFFIX;
+	// listener every job reports to, or null.
+	private IHuffMetrics myMetrics;
+
+	// totals over every file processed.
+	private final LongAdder myFiles = new LongAdder();
+	private final LongAdder myBytesRead = new LongAdder();
+	private final LongAdder myBytesWritten = new LongAdder();
+	private final LongAdder mySkipped = new LongAdder();
+	private final Queue<String> myErrors = new ConcurrentLinkedQueue<>();
+
+	// Constructor:
+	// threads: number of files processed at the same time.
+	// memoryBudget: bytes the running jobs may hold in memory.
+	// pre: threads > 0, memoryBudget >= 0
+	public BatchEngine(int threads, long memoryBudget) {
+		// check precon:
+		if (threads <= 0 || memoryBudget < 0) {
+			throw new IllegalArgumentException("need threads > 0 and memoryBudget >= 0");
+		}
+		// asyncMode runs the submitted jobs in the order they were submitted.
+		myPool = new ForkJoinPool(threads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+		myBudgetUnits = (int) Math.min(Integer.MAX_VALUE, memoryBudget / BUDGET_UNIT);
+		myBudget = new Semaphore(myBudgetUnits);
+	}
+
+	// method sets the header format compressed files are written in.
+	public void setHeaderFormat(int headerFormat) {
+		myHeaderFormat = headerFormat;
+	}
+
+	// method sets whether compressed files are written even when they aren't
+	// smaller than the original.
+	public void setForce(boolean force) {
+		myForce = force;
+	}
+
+	// method sets whether compressed files are checked while they are written,
+	// see SimpleHuffProcessor.setVerify.
+	public void setVerify(boolean verify) {
+		myVerify = verify;
+	}
+
+	// method sets the directory the output files are written to, null to write
+	// each next to its input (the default).
+	public void setOutputDirectory(File dir) {
+		myOutputDirectory = dir;
+	}
+
+	// method sets the suffix that replaces .hf in the name of an uncompressed
+	// file, .unhf by default. With "" name.hf is uncompressed to name.
+	// pre: suffix != null
+	public void setUncompressedSuffix(String suffix) {
+		myUncompressedSuffix = suffix;
+	}
+
+	// method sets the listener the phases of every job are reported to, null for
+	// none (the default). It is called from many threads at once.
+	public void setMetrics(IHuffMetrics metrics) {
+		myMetrics = metrics;
+	}
+
+	// method compresses every file, writing name.hf for each.
+	// pre: files != null
+	// returns true if no file failed.
+	public boolean compressAll(Collection<File> files) throws InterruptedException {
+		return runAll(files, true);
+	}
+
+	// method uncompresses every file, writing name.unhf (or the suffix set with
+	// setUncompressedSuffix) for each name.hf.
+	// pre: files != null
+	// returns true if no file failed.
+	public boolean uncompressAll(Collection<File> files) throws InterruptedException {
+		return runAll(files, false);
+	}
+
+	// helper method runs a job for every regular file, largest first, and waits
+	// for all of them. .hf files are not compressed again.
+	private boolean runAll(Collection<File> files, boolean compress) throws InterruptedException {
+		List<File> sorted = new ArrayList<>();
+		for (File f : files) {
+			if (f.isFile() && !(compress && f.getName().endsWith(HUFF_SUFFIX))) {
+				sorted.add(f);
+			}
+		}
+		sorted.sort((a, b) -> Long.compare(b.length(), a.length()));
+		int errors = myErrors.size();
+		List<Future<?>> jobs = new ArrayList<>();
+		for (File f : sorted) {
+			jobs.add(myPool.submit(() -> runJob(f, compress)));
+		}
+		for (Future<?> job : jobs) {
+			try {
+				job.get();
+			} catch (ExecutionException e) {
+				// runJob records its own failures, this is a bug.
+				myErrors.add(String.valueOf(e.getCause()));
+			}
+		}
+		return myErrors.size() == errors;
+	}
+
+	// helper method compresses or uncompresses one file and records the result.
+	private void runJob(File f, boolean compress) {
+		long length = f.length();
+		// a file is read into memory only if it fits in the budget.
+		int units = (int) Math.min(Integer.MAX_VALUE, (length + BUDGET_UNIT - 1) / BUDGET_UNIT);
+		boolean inMemory = units <= myBudgetUnits;
+		File out = getOutputFile(f, compress);
+		if (out.getAbsoluteFile().equals(f.getAbsoluteFile())) {
+			myErrors.add(f.getPath() + ": would be written over itself");
+			return;
+		}
+		try {
+			if (inMemory) {
+				myBudget.acquire(units);
+			}
+			try {
+				long written = compress ? compressFile(f, out, inMemory) : uncompressFile(f, out, inMemory);
+				if (written == -1) {
+					mySkipped.increment();
+				} else {
+					myFiles.increment();
+					myBytesRead.add(length);
+					myBytesWritten.add(written);
+				}
+			} finally {
+				if (inMemory) {
+					myBudget.release(units);
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			out.delete();
+			myErrors.add(f.getPath() + ": " + e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			myErrors.add(f.getPath() + ": interrupted");
+		}
+	}
+
+	// helper method compresses f to out.
+	// returns the number of bytes written, or -1 if the file wasn't written
+	// because it didn't get smaller.
+	private long compressFile(File f, File out, boolean inMemory) throws IOException {
+		SimpleHuffProcessor huffer = new SimpleHuffProcessor();
+		huffer.setMetrics(myMetrics);
+		huffer.setVerify(myVerify);
+		byte[] data = inMemory ? Files.readAllBytes(f.toPath()) : null;
+		int bits = 0;
+		try (InputStream in = open(f, data)) {
+			huffer.preprocessCompress(in, myHeaderFormat);
+		}
+		try (InputStream in = open(f, data); OutputStream os = new FileOutputStream(out)) {
+			bits = huffer.compress(in, os, myForce);
+		}
+		if (bits == -1) {
+			out.delete();
+			return -1;
+		}
+		return out.length();
+	}
+
+	// helper method uncompresses f to out.
+	// returns the number of bytes written.
+	private long uncompressFile(File f, File out, boolean inMemory) throws IOException {
+		SimpleHuffProcessor huffer = new SimpleHuffProcessor();
+		huffer.setMetrics(myMetrics);
+		ErrorViewer viewer = new ErrorViewer();
+		huffer.setViewer(viewer);
+		byte[] data = inMemory ? Files.readAllBytes(f.toPath()) : null;
+		try (InputStream in = open(f, data); OutputStream os = new FileOutputStream(out)) {
+			huffer.uncompress(in, os);
+		}
+		if (viewer.myError != null) {
+			throw new IOException(viewer.myError);
+		}
+		return out.length();
+	}
+
+	// helper method returns a stream of data if it was read into memory, or of
+	// the file otherwise.
+	private static InputStream open(File f, byte[] data) throws IOException {
+		return data != null ? new ByteArrayInputStream(data) : new FileInputStream(f);
+	}
+
+	// helper method returns the file written for f.
+	private File getOutputFile(File f, boolean compress) {
+		String name = f.getName();
+		if (compress) {
+			name += HUFF_SUFFIX;
+		} else if (name.endsWith(HUFF_SUFFIX)) {
+			name = name.substring(0, name.length() - HUFF_SUFFIX.length()) + myUncompressedSuffix;
+		} else {
+			name += myUncompressedSuffix;
+		}
+		File dir = myOutputDirectory != null ? myOutputDirectory : f.getAbsoluteFile().getParentFile();
+		return new File(dir, name);
+	}
+
+	// method returns the number of files written.
+	public long getFiles() {
+		return myFiles.sum();
+	}
+
+	// method returns the number of files not written because they didn't get
+	// smaller.
+	public long getSkipped() {
+		return mySkipped.sum();
+	}
+
+	// method returns the bytes read from the files written.
+	public long getBytesRead() {
+		return myBytesRead.sum();
+	}
+
+	// method returns the bytes written.
+	public long getBytesWritten() {
+		return myBytesWritten.sum();
+	}
+
+	// method returns a message for every file that failed.
+	public List<String> getErrors() {
+		return new ArrayList<>(myErrors);
+	}
+
+	// IHuffViewer that keeps the last error shown, so a file that isn't
+	// compressed is reported as a failure.
+	private static class ErrorViewer implements IHuffViewer {
+		private String myError;
+
+		public void setModel(IHuffProcessor model) {
+		}
+
+		public void update(String s) {
+		}
+
+		public void showMessage(String s) {
+		}
+
+		public void showError(String s) {
+			myError = s;
+		}
+	}
+
+	// method stops the threads once the running jobs are done.
+	public void close() {
+		myPool.shutdown();
+	}
+}
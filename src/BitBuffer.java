@@ -0,0 +1,178 @@
+//import statements:
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+// BitBuffer stores bits in a long[] in memory. Bits are packed starting with
+// the most significant bit of each long, so the bytes of the buffer are the same
+// as the bytes a BitOutputStream would write for the same calls to writeBits.
+public class BitBuffer implements BitSink, BitSource {
+
+	// class constants:
+	private static final int BITS_PER_LONG = 64;
+	private static final int BITS_PER_BYTE = 8;
+	private static final int INITIAL_WORDS = 16;
+
+	// instance vars:
+	private long[] myWords;
+	// number of bits written and position of the next bit to read.
+	private long myBitLength;
+	private long myReadPosition;
+
+	// Constructor:
+	// creates an empty buffer.
+	public BitBuffer() {
+		myWords = new long[INITIAL_WORDS];
+	}
+
+	// Constructor:
+	// words: bits previously returned by toLongArray.
+	// bitLength: number of valid bits in words.
+	// pre: words != null, 0 <= bitLength <= words.length * 64
+	public BitBuffer(long[] words, long bitLength) {
+		// check precon:
+		if (words == null || bitLength < 0 || bitLength > (long) words.length * BITS_PER_LONG) {
+			throw new IllegalArgumentException("invalid words or bit length");
+		}
+		myWords = words;
+		myBitLength = bitLength;
+	}
+
+	// method creates a buffer holding the remaining bytes of in.
+	// pre: in != null
+	// post: in's position is moved to its limit.
+	public static BitBuffer wrap(ByteBuffer in) {
+		int bytes = in.remaining();
+		long[] words = new long[(bytes + 7) / 8];
+		int i = 0;
+		boolean bigEndian = in.order() == ByteOrder.BIG_ENDIAN;
+		// copy whole longs first, then the bytes left over.
+		while (in.remaining() >= 8) {
+			long word = in.getLong();
+			words[i++] = bigEndian ? word : Long.reverseBytes(word);
+		}
+		int shift = BITS_PER_LONG - BITS_PER_BYTE;
+		while (in.hasRemaining()) {
+			words[i] |= (in.get() & 0xffL) << shift;
+			shift -= BITS_PER_BYTE;
+		}
+		return new BitBuffer(words, (long) bytes * BITS_PER_BYTE);
+	}
+
+	// method empties the buffer, keeping its memory so it can be written again
+	// without allocating.
+	public void clear() {
+		Arrays.fill(myWords, 0, (int) ((myBitLength + BITS_PER_LONG - 1) / BITS_PER_LONG), 0L);
+		myBitLength = 0;
+		myReadPosition = 0;
+	}
+
+	// method replaces the bits of the buffer with len bytes of bytes starting at
+	// off, to be read from the start. Like clear it keeps the memory of the
+	// buffer, which only grows if the bytes don't fit.
+	// pre: bytes != null, off and len are in bytes
+	public void load(byte[] bytes, int off, int len) {
+		// check precon:
+		if (bytes == null || off < 0 || len < 0 || off + len > bytes.length) {
+			throw new IllegalArgumentException("bytes can't be null and off and len must be in bytes");
+		}
+		clear();
+		int words = (len + 7) / 8;
+		if (words + 1 > myWords.length) {
+			myWords = new long[Math.max(words + 1, myWords.length * 2)];
+		}
+		int end = off + len;
+		int i = 0;
+		for (int b = off; b < end; b++) {
+			myWords[i >>> 3] |= (bytes[b] & 0xffL) << (BITS_PER_LONG - BITS_PER_BYTE - (i & 7) * BITS_PER_BYTE);
+			i++;
+		}
+		myBitLength = (long) len * BITS_PER_BYTE;
+	}
+
+	// method writes the rightmost howManyBits bits of value.
+	// pre: 0 <= howManyBits <= 32
+	public void writeBits(int howManyBits, int value) {
+		writeLongBits(howManyBits, value & 0xffffffffL);
+	}
+
+	// method writes the rightmost howManyBits bits of value.
+	// pre: 0 <= howManyBits <= 64
+	public void writeLongBits(int howManyBits, long value) {
+		if (howManyBits == 0) {
+			return;
+		}
+		if (howManyBits < BITS_PER_LONG) {
+			value &= (1L << howManyBits) - 1;
+		}
+		int index = (int) (myBitLength >>> 6);
+		if (index + 1 >= myWords.length) {
+			myWords = Arrays.copyOf(myWords, Math.max(INITIAL_WORDS, myWords.length * 2));
+		}
+		int free = BITS_PER_LONG - (int) (myBitLength & (BITS_PER_LONG - 1));
+		if (howManyBits <= free) {
+			myWords[index] |= value << (free - howManyBits);
+		} else {
+			// the bits are split across two longs.
+			int overflow = howManyBits - free;
+			myWords[index] |= value >>> overflow;
+			myWords[index + 1] |= value << (BITS_PER_LONG - overflow);
+		}
+		myBitLength += howManyBits;
+	}
+
+	// method returns the next howManyBits bits as the rightmost bits of the
+	// result, or -1 if not enough bits are left.
+	// pre: 1 <= howManyBits <= 32
+	public int readBits(int howManyBits) {
+		if (myReadPosition + howManyBits > myBitLength) {
+			return -1;
+		}
+		int index = (int) (myReadPosition >>> 6);
+		int offset = (int) (myReadPosition & (BITS_PER_LONG - 1));
+		long bits = myWords[index] << offset;
+		if (offset + howManyBits > BITS_PER_LONG) {
+			bits |= myWords[index + 1] >>> (BITS_PER_LONG - offset);
+		}
+		myReadPosition += howManyBits;
+		return (int) (bits >>> (BITS_PER_LONG - howManyBits));
+	}
+
+	// method returns the number of bits written.
+	public long getBitLength() {
+		return myBitLength;
+	}
+
+	// method returns the number of bits written and not read yet.
+	public long getBitsLeft() {
+		return myBitLength - myReadPosition;
+	}
+
+	// method returns a copy of the bits written, the last long is padded with
+	// zeroes.
+	public long[] toLongArray() {
+		return Arrays.copyOf(myWords, (int) ((myBitLength + BITS_PER_LONG - 1) / BITS_PER_LONG));
+	}
+
+	// method returns the number of bytes needed to hold the bits written.
+	public int getByteLength() {
+		return (int) ((myBitLength + BITS_PER_BYTE - 1) / BITS_PER_BYTE);
+	}
+
+	// method puts the bits written into out, the last byte is padded with
+	// zeroes.
+	// pre: out != null, out.remaining() >= getByteLength()
+	// returns the number of bytes put.
+	public int writeTo(ByteBuffer out) {
+		int bytes = getByteLength();
+		int words = bytes / 8;
+		boolean bigEndian = out.order() == ByteOrder.BIG_ENDIAN;
+		for (int i = 0; i < words; i++) {
+			out.putLong(bigEndian ? myWords[i] : Long.reverseBytes(myWords[i]));
+		}
+		for (int i = words * 8; i < bytes; i++) {
+			out.put((byte) (myWords[i / 8] >>> (BITS_PER_LONG - BITS_PER_BYTE - (i % 8) * BITS_PER_BYTE)));
+		}
+		return bytes;
+	}
+}
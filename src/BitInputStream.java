@@ -18,7 +18,7 @@ import java.io.*;
  * @version 2.0, October 2004
  */
 
-public class BitInputStream extends InputStream
+public class BitInputStream extends InputStream implements BitSource
 {
     private InputStream     myInput;
     private int             myBitCount;
@@ -157,6 +157,15 @@ public class BitInputStream extends InputStream
         return retval;
     }
 
+    /**
+     * Discards the bits left in the byte currently being read, so the
+     * next read starts at a byte boundary of the underlying stream.
+     */
+    public void alignToByte()
+    {
+        myBuffer = myBitCount = 0;
+    }
+
     /**
      * Required by classes extending InputStream, returns
      * the next byte from this stream as an int value.
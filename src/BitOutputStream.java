@@ -18,7 +18,7 @@
 
 import java.io.*;
 
-public class BitOutputStream extends OutputStream
+public class BitOutputStream extends OutputStream implements BitSink
 {
     
 
@@ -106,6 +106,34 @@ public class BitOutputStream extends OutputStream
         }
     }
 
+    /**
+     * Return the number of bits <code>writeVarLong</code> writes for value.
+     * @param value is a non-negative value
+     * @return the number of bits written for value
+     */
+    public static int getVarLongBitSize(long value)
+    {
+        int bytes = 1;
+        while (value >= 0x80) {
+            value >>>= 7;
+            bytes++;
+        }
+        return bytes * BITS_PER_BYTE;
+    }
+
+    /**
+     * Writes zero bits until the next byte boundary so the next bits
+     * written start a new byte. Unlike <code>flush</code> the underlying
+     * stream is not flushed.
+     * @throws RuntimeException if there's a problem writing bits
+     */
+    public void alignToByte()
+    {
+        if (myBitsToGo != BITS_PER_BYTE) {
+            writeBits(myBitsToGo, 0);
+        }
+    }
+
     /**
      * Releases system resources associated with file and
      * flushes bits not yet written. Either this function
@@ -0,0 +1,26 @@
+
+// A destination that bits can be written to, a few at a time.
+// Implemented by BitOutputStream and by BitBuffer so that headers and codes
+// can be written the same way to a file or to memory.
+public interface BitSink {
+
+	// method writes the rightmost howManyBits bits of value.
+	// pre: 0 <= howManyBits <= 32
+	public void writeBits(int howManyBits, int value);
+
+	// method writes a non-negative value as a variable-length integer: seven bits
+	// per byte, least significant group first, with the high bit of each byte set
+	// if more bytes follow. BitOutputStream.getVarLongBitSize returns its size.
+	// pre: value >= 0
+	public default void writeVarLong(long value) {
+		// check precon:
+		if (value < 0) {
+			throw new IllegalArgumentException("negative value " + value);
+		}
+		while (value >= 0x80) {
+			writeBits(Byte.SIZE, (int) (value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		writeBits(Byte.SIZE, (int) value);
+	}
+}
@@ -0,0 +1,30 @@
+//import statements:
+import java.io.IOException;
+
+// A source that bits can be read from, a few at a time.
+// Implemented by BitInputStream and by BitBuffer so that headers and codes
+// can be read the same way from a file or from memory.
+public interface BitSource {
+
+	// method returns the next howManyBits bits as the rightmost bits of the
+	// result, or -1 if not enough bits are left.
+	// pre: 1 <= howManyBits <= 32
+	public int readBits(int howManyBits) throws IOException;
+
+	// method reads a variable-length integer written by BitSink.writeVarLong.
+	// throws an IOException if the bits end or the value is too long.
+	public default long readVarLong() throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < Long.SIZE; shift += 7) {
+			int b = readBits(Byte.SIZE);
+			if (b == -1) {
+				throw new IOException("stream ended in a variable-length integer");
+			}
+			value |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("variable-length integer too long");
+	}
+}
@@ -0,0 +1,148 @@
+//import statements:
+import java.util.ArrayList;
+import java.util.List;
+
+// BlockPlanner splits a stream of chunks into blocks that are each huffed with
+// their own tree. The chunks are counted in windows of WINDOW_SIZE chunks. At
+// the end of every window the planner estimates the size of the current block
+// with the window added to it and the size of the two kept apart, using the
+// entropy of the frequencies plus the cost of a header, and starts a new block
+// when keeping them apart is smaller, or when the block would be longer than
+// HuffBlock.MAX_LENGTH chunks. Only the frequencies of the current block
+// and window are kept, so planning is a single pass with constant work per
+// window.
+public class BlockPlanner {
+
+	// class constants:
+	// number of chunks in a window.
+	public static final int WINDOW_SIZE = 1 << 13;
+	private static final double LOG_2 = Math.log(2);
+
+	// instance vars:
+	// STORE_COUNTS or STORE_TREE, used to estimate the header of a block.
+	private final int headerFormat;
+	// frequencies and number of chunks of the current block and window.
+	private int[] blockFreq;
+	private int blockLength;
+	private int[] windowFreq;
+	private int windowLength;
+	// frequencies of the blocks that are finished.
+	private final List<int[]> blocks;
+
+	// Constructor:
+	// headerFormat: the format of the tree header written for each block.
+	public BlockPlanner(int headerFormat) {
+		this.headerFormat = headerFormat;
+		blockFreq = new int[IHuffConstants.ALPH_SIZE];
+		windowFreq = new int[IHuffConstants.ALPH_SIZE];
+		blocks = new ArrayList<>();
+	}
+
+	// method counts one chunk.
+	// pre: 0 <= value < ALPH_SIZE
+	public void add(int value) {
+		windowFreq[value]++;
+		windowLength++;
+		if (windowLength == WINDOW_SIZE) {
+			endWindow();
+		}
+	}
+
+	// method finishes planning.
+	// returns the frequencies of each block in order, the list is empty if no
+	// chunks were added.
+	public List<int[]> finish() {
+		if (windowLength > 0) {
+			endWindow();
+		}
+		if (blockLength > 0) {
+			blocks.add(blockFreq);
+			blockFreq = new int[IHuffConstants.ALPH_SIZE];
+			blockLength = 0;
+		}
+		return blocks;
+	}
+
+	// helper method decides whether the window is added to the current block or
+	// starts a new block.
+	private void endWindow() {
+		if (blockLength > 0 && (blockLength + windowLength > HuffBlock.MAX_LENGTH || shouldSplit())) {
+			// the current block is finished, the window starts the next block.
+			blocks.add(blockFreq);
+			blockFreq = windowFreq;
+			blockLength = windowLength;
+			windowFreq = new int[IHuffConstants.ALPH_SIZE];
+		} else {
+			for (int i = 0; i < IHuffConstants.ALPH_SIZE; i++) {
+				blockFreq[i] += windowFreq[i];
+				windowFreq[i] = 0;
+			}
+			blockLength += windowLength;
+		}
+		windowLength = 0;
+	}
+
+	// helper method returns true if the current block and the window are
+	// estimated to be smaller as two blocks than as one.
+	private boolean shouldSplit() {
+		// entropy (in nats) of the block, the window and both together, computed
+		// as sum(f * ln(total / f)) = total * ln(total) - sum(f * ln(f)).
+		double blockSum = 0;
+		double windowSum = 0;
+		double mergedSum = 0;
+		int blockValues = 0;
+		int windowValues = 0;
+		int mergedValues = 0;
+		for (int i = 0; i < IHuffConstants.ALPH_SIZE; i++) {
+			int b = blockFreq[i];
+			int w = windowFreq[i];
+			if (b != 0) {
+				blockSum += b * Math.log(b);
+				blockValues++;
+			}
+			if (w != 0) {
+				windowSum += w * Math.log(w);
+				windowValues++;
+			}
+			if (b + w != 0) {
+				mergedSum += (b + w) * Math.log(b + w);
+				mergedValues++;
+			}
+		}
+		int mergedLength = blockLength + windowLength;
+		double blockBits = (blockLength * Math.log(blockLength) - blockSum) / LOG_2;
+		double windowBits = (windowLength * Math.log(windowLength) - windowSum) / LOG_2;
+		double mergedBits = (mergedLength * Math.log(mergedLength) - mergedSum) / LOG_2;
+		double split = blockBits + windowBits + getHeaderBits(blockValues) + getHeaderBits(windowValues);
+		double merged = mergedBits + getHeaderBits(mergedValues);
+		return split < merged;
+	}
+
+	// helper method estimates the bits needed for the header of a block with
+	// the given number of different values.
+	private int getHeaderBits(int values) {
+		int header = HuffBlock.HEADER_BITS;
+		if (headerFormat == IHuffConstants.STORE_COUNTS) {
+			header += IHuffConstants.ALPH_SIZE * IHuffConstants.BITS_PER_INT;
+		} else {
+			// one leaf per value plus the pseudoEOF, each a 1 and the value, and a 0
+			// for every internal node.
+			int leaves = values + 1;
+			header += IHuffConstants.BITS_PER_INT + leaves * (1 + IHuffConstants.BITS_PER_WORD + 1) + leaves - 1;
+		}
+		return header;
+	}
+
+	// method estimates the number of bits needed to huff total chunks with the
+	// given frequencies, using the entropy of the frequencies.
+	// pre: freq != null, total is the sum of freq.
+	public static double estimateBits(int[] freq, long total) {
+		double bits = 0;
+		for (int f : freq) {
+			if (f != 0) {
+				bits += f * Math.log((double) total / f);
+			}
+		}
+		return bits / LOG_2;
+	}
+}
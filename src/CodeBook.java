@@ -0,0 +1,100 @@
+//import statements:
+import java.util.Arrays;
+
+// CodeBook holds the Huffman code of every value in a HuffTree, stored as the
+// rightmost bits of a long together with the number of bits in the code.
+// A CodeBook only changes when HuffTree.fillCodeBook fills it again for a
+// caller that keeps one CodeBook for many trees.
+public class CodeBook {
+
+	// class constants:
+	// the longest code a CodeBook can hold.
+	public static final int MAX_CODE_LENGTH = 64;
+	private static final int BITS_PER_INT = 32;
+	// length stored for values that have no code.
+	private static final int NO_CODE = -1;
+
+	// instance vars:
+	private final long[] codes;
+	private final int[] lengths;
+
+	// Constructor:
+	// alphabetSize: number of values, codes are added with setCode.
+	// only HuffTree creates CodeBooks.
+	CodeBook(int alphabetSize) {
+		codes = new long[alphabetSize];
+		lengths = new int[alphabetSize];
+		clear();
+	}
+
+	// method removes every code, only used while HuffTree fills the CodeBook.
+	void clear() {
+		Arrays.fill(lengths, NO_CODE);
+	}
+
+	// method sets the code of value, only used while HuffTree creates the
+	// CodeBook.
+	void setCode(int value, long code, int length) {
+		if (length > MAX_CODE_LENGTH) {
+			throw new IllegalStateException("code longer than " + MAX_CODE_LENGTH + " bits");
+		}
+		codes[value] = code;
+		lengths[value] = length;
+	}
+
+	// method returns the number of values the CodeBook covers.
+	public int getAlphabetSize() {
+		return codes.length;
+	}
+
+	// method returns true if value has a code.
+	// pre: 0 <= value < getAlphabetSize()
+	public boolean hasCode(int value) {
+		return lengths[value] != NO_CODE;
+	}
+
+	// method returns the code of value, the code is in the rightmost
+	// getLength(value) bits.
+	// pre: hasCode(value)
+	public long getCode(int value) {
+		return codes[value];
+	}
+
+	// method returns the number of bits in the code of value.
+	// pre: hasCode(value)
+	public int getLength(int value) {
+		return lengths[value];
+	}
+
+	// method writes the code of value.
+	// writer: where the code is written.
+	// pre: writer != null, hasCode(value)
+	public void write(BitSink writer, int value) {
+		int length = lengths[value];
+		if (length <= BITS_PER_INT) {
+			// check precon:
+			if (length == NO_CODE) {
+				throw new IllegalArgumentException("no code for value " + value);
+			}
+			writer.writeBits(length, (int) codes[value]);
+		} else {
+			// codes longer than an int are written in two parts.
+			writer.writeBits(length - BITS_PER_INT, (int) (codes[value] >>> BITS_PER_INT));
+			writer.writeBits(BITS_PER_INT, (int) codes[value]);
+		}
+	}
+
+	// method returns the number of bits needed to write every value freq[i]
+	// times.
+	// pre: freq != null, freq.length <= getAlphabetSize(), every value with a
+	// non-zero frequency has a code.
+	public long getEncodedBitSize(int[] freq) {
+		long bits = 0;
+		for (int i = 0; i < freq.length; i++) {
+			if (freq[i] != 0) {
+				bits += (long) freq[i] * lengths[i];
+			}
+		}
+		return bits;
+	}
+}
@@ -1,187 +1,488 @@
-
 //import statements.
 import java.io.IOException;
-import java.util.Map;
+import java.util.List;
 
-// Compressor stores all data required for compression and writes the compressed version to a new file. 
+// Compressor stores all data required for compression and writes the compressed version to a new file.
+// A Compressor never changes once it is created, so one may write the data it
+// counted any number of times, from any number of threads at once.
 public class Compressor {
 
 	// instance vars:
 	// array to keep track of frequncies.
-	private int[] valFrequencies;
+	private final int[] valFrequencies;
 	// HuffTree used to find codes, write header information.
-	private HuffTree myTree;
-	// map which will contain all the codes for each chunk of bits.
-	private Map<Integer, String> codes;
+	private final HuffTree myTree;
+	// CodeBook which will contain all the codes for each chunk of bits.
+	private final CodeBook codes;
 	// variable stores which headerFormat we must write to the compressed file.
-	private int headerFormat;
-	// variable stores the size of the original file.
-	private int originalSizeOfFile;
+	private final int headerFormat;
+	// variable stores the size of the original file in chunks, 0 for stored data
+	// whose length is not known.
+	private final long originalLength;
+	// the filters applied to the data before it was counted.
+	private final FilterChain filters;
+	// the blocks the data is written in, null if it is written with a single tree.
+	private final HuffBlock[] blocks;
+	// true if the data was not counted and is written as STORED blocks.
+	private final boolean storeOnly;
+	// true if the number of chunks is written in the header.
+	private final boolean storeLength;
+	// number of chunks between sync points, 0 if there is no seek table.
+	private final int syncInterval;
+	// true if every block is written with its checksums.
+	private final boolean checked;
+	// listener the phases are reported to, or null.
+	private final IHuffMetrics metrics;
 
 	// Constructor:
-	// in: BitInputStream connected to the file to be compressed.
+	// in: BitInputStream connected to the filtered data of the file to be
+	// compressed.
 	// headerFormat: the format in which the header for the compressed file should
 	// be written.
-	// pre: in != null (handled by SimpleHuffProcessor)
-	public Compressor(BitInputStream in, int headerFormat) throws IOException {
-		// initialize the headerFormat.
-		this.headerFormat = headerFormat;
+	// options: the filters that were applied to the data read from in, the
+	// optional header flags, the seek table and the listener, see Options.
+	// pre: in != null, options != null (handled by SimpleHuffProcessor)
+	public Compressor(BitInputStream in, int headerFormat, Options options) throws IOException {
+		FilterChain filters = options.getFilters();
+		int flags = options.getFlags();
+		int syncInterval = options.getSyncInterval();
+		IHuffMetrics metrics = options.getMetrics();
+		this.metrics = metrics;
+		// initialize the headerFormat, anything but the count format is written in
+		// the tree format.
+		this.headerFormat = headerFormat == IHuffConstants.STORE_COUNTS ? IHuffConstants.STORE_COUNTS
+				: IHuffConstants.STORE_TREE;
+		// initialize the filters.
+		this.filters = filters;
+		storeOnly = false;
+		storeLength = (flags & IHuffConstants.FLAG_LENGTH) != 0;
+		this.syncInterval = syncInterval;
+		checked = (flags & IHuffConstants.FLAG_CHECKSUM) != 0;
 		// initialize valFrequencies
 		valFrequencies = new int[IHuffConstants.ALPH_SIZE];
+		// plan the blocks while counting if splitting is allowed or needed.
+		BlockPlanner planner = null;
+		if ((flags & IHuffConstants.FLAG_BLOCKS) != 0 || syncInterval != 0 || checked) {
+			planner = new BlockPlanner(this.headerFormat);
+		}
 		// find the frequencies of each BITS_PER_WORD chunk.
-		findFrequencies(in);
+		HuffEvents.FrequencyCount countEvent = HuffEvents.isRecording() ? new HuffEvents.FrequencyCount() : null;
+		long start = IHuffMetrics.startPhase(metrics, IHuffMetrics.Phase.COUNT);
+		originalLength = findFrequencies(in, planner);
+		IHuffMetrics.endPhase(metrics, IHuffMetrics.Phase.COUNT, start, originalLength);
+		if (countEvent != null) {
+			countEvent.end();
+			if (countEvent.shouldCommit()) {
+				countEvent.size = originalLength;
+				for (int freq : valFrequencies) {
+					if (freq > 0) {
+						countEvent.distinctValues++;
+					}
+				}
+				countEvent.commit();
+			}
+		}
+		HuffEvents.TreeBuild treeEvent = HuffEvents.isRecording() ? new HuffEvents.TreeBuild() : null;
+		start = IHuffMetrics.startPhase(metrics, IHuffMetrics.Phase.TREE);
 		// construct the tree.
-		myTree = constructHuffTree();
+		myTree = HuffTree.fromFrequencies(valFrequencies, IHuffConstants.PSEUDO_EOF);
 		// find all codes.
-		codes = myTree.getCodes();
+		codes = myTree.getCodeBook(IHuffConstants.ALPH_SIZE + 1);
+		// use the blocks only if they are smaller than a single tree, or if there
+		// are sync points or checksums. This is also how data that doesn't compress
+		// ends up in STORED blocks.
+		HuffBlock[] planned = null;
+		if (planner != null) {
+			List<int[]> plan = planner.finish();
+			if (plan.size() > 0 || syncInterval != 0 || checked) {
+				planned = new HuffBlock[plan.size()];
+				for (int i = 0; i < planned.length; i++) {
+					planned[i] = new HuffBlock(plan.get(i), this.headerFormat, checked);
+				}
+				if (syncInterval == 0 && !checked && getBlockBitsWritten(planned) >= getSingleTreeBitsWritten()) {
+					planned = null;
+				}
+			}
+		}
+		blocks = planned;
+		IHuffMetrics.endPhase(metrics, IHuffMetrics.Phase.TREE, start, 0);
+		if (treeEvent != null) {
+			treeEvent.end();
+			if (treeEvent.shouldCommit()) {
+				double[] lengths = HuffEvents.getCodeLengths(codes, valFrequencies);
+				treeEvent.symbols = (int) lengths[3];
+				treeEvent.minCodeLength = (int) lengths[0];
+				treeEvent.maxCodeLength = (int) lengths[1];
+				treeEvent.averageCodeLength = lengths[2];
+				treeEvent.blocks = getNumBlocks();
+				treeEvent.commit();
+			}
+		}
+	}
+
+	// Constructor used by forStoring, nothing is counted.
+	private Compressor(int headerFormat, long length, Options options) {
+		this.metrics = options.getMetrics();
+		this.headerFormat = headerFormat == IHuffConstants.STORE_COUNTS ? IHuffConstants.STORE_COUNTS
+				: IHuffConstants.STORE_TREE;
+		this.filters = options.getFilters();
+		storeOnly = true;
+		valFrequencies = null;
+		myTree = null;
+		codes = null;
+		blocks = null;
+		originalLength = Math.max(0, length);
+		// the length can only be written first if it is known.
+		storeLength = length >= 0;
+		this.syncInterval = options.getSyncInterval();
+		this.checked = (options.getFlags() & IHuffConstants.FLAG_CHECKSUM) != 0;
+	}
+
+	// method creates a Compressor that writes the data as STORED blocks without
+	// counting it first, for data known not to compress.
+	// headerFormat: the header format written after the magic number.
+	// length: the number of chunks in the data, or -1 if it is not known. If it
+	// is known it is written in the header.
+	// options: FLAG_CHECKSUM is the only flag used, a seek table is written
+	// after the data if there is a sync interval.
+	// pre: options != null
+	public static Compressor forStoring(int headerFormat, long length, Options options) {
+		return new Compressor(headerFormat, length, options);
 	}
 
 	// compress method writes the actual compressed file.
 	// writer: BitOutputStream connected to the compressed file.
 	// reader: BitInputSTream connected to the original file.
 	// pre: reader != null & writer != null (handled by SimpleHuffProcessor)
-	public void compress(BitOutputStream writer, BitInputStream reader) throws IOException {
+	// returns the number of chunks read, which is only not getOriginalLength()
+	// for data stored without a known length.
+	public long compress(BitOutputStream writer, BitInputStream reader) throws IOException {
+		HuffEvents.HeaderEncode headerEvent = HuffEvents.isRecording() ? new HuffEvents.HeaderEncode() : null;
+		long start = IHuffMetrics.startPhase(metrics, IHuffMetrics.Phase.WRITE_HEADER);
 		// write the magic number to the compressed file.
 		writer.writeBits(IHuffConstants.BITS_PER_INT, IHuffConstants.MAGIC_NUMBER);
-		// determine which header must be written
-		if (headerFormat == IHuffConstants.STORE_COUNTS) {
-			// write the code for the header format. (STORE_COUNTS)
-			writer.writeBits(IHuffConstants.BITS_PER_INT, IHuffConstants.STORE_COUNTS);
-			// loop through all values in valFrequencies.
-			for (int i = 0; i < IHuffConstants.ALPH_SIZE; i++) {
-				// write the frequencies of each possible chunk.
-				writer.writeBits(IHuffConstants.BITS_PER_INT, valFrequencies[i]);
+		// flags or-ed into the header format.
+		int flags = filters.isEmpty() ? 0 : IHuffConstants.FLAG_FILTERED;
+		if (blocks != null || storeOnly) {
+			flags |= IHuffConstants.FLAG_BLOCKS;
+		}
+		if (storeLength) {
+			flags |= IHuffConstants.FLAG_LENGTH;
+		}
+		if (syncInterval != 0) {
+			flags |= IHuffConstants.FLAG_SYNC;
+		}
+		if (checked) {
+			flags |= IHuffConstants.FLAG_CHECKSUM;
+		}
+		// write the code for the header format.
+		writer.writeBits(IHuffConstants.BITS_PER_INT, headerFormat | flags);
+		// write the filter chain if the data was filtered.
+		if (!filters.isEmpty()) {
+			filters.writeHeader(writer);
+		}
+		// write the number of chunks.
+		if (storeLength) {
+			writer.writeVarLong(originalLength);
+		}
+		// write the header data the tree is rebuilt from, blocks have their own.
+		if (blocks == null && !storeOnly) {
+			myTree.writeHeader(writer, headerFormat, valFrequencies);
+		}
+		IHuffMetrics.endPhase(metrics, IHuffMetrics.Phase.WRITE_HEADER, start, 0);
+		if (headerEvent != null) {
+			headerEvent.end();
+			if (headerEvent.shouldCommit()) {
+				headerEvent.headerFormat = HuffEvents.getFormatName(headerFormat);
+				headerEvent.flags = flags;
+				headerEvent.headerBits = getFileHeaderBitSize();
+				if (blocks == null && !storeOnly) {
+					headerEvent.headerBits += myTree.getHeaderBitSize(headerFormat, IHuffConstants.ALPH_SIZE);
+				}
+				headerEvent.commit();
 			}
-		} else {
-			// write the code for the header format (STORE_TREE)
-			writer.writeBits(IHuffConstants.BITS_PER_INT, IHuffConstants.STORE_TREE);
-			// write the size of the tree.
-			writer.writeBits(IHuffConstants.BITS_PER_INT, myTree.getTreeBitSize());
-			// get the tree representation that must be written,
-			String treeRepresentationHeader = myTree.getTreeRepresentaion();
-			// loop iterates over every character in the tree representation.
-			for (int i = 0; i < treeRepresentationHeader.length(); i++) {
-				char current = treeRepresentationHeader.charAt(i);
-				// write the appropriate bit based on the character.
-				// '1' = 1, '0' = 0
-				writer.writeBits(1, getBitToWrite(current));
+		}
+		start = IHuffMetrics.startPhase(metrics, IHuffMetrics.Phase.ENCODE);
+		long length = writeData(writer, reader);
+		IHuffMetrics.endPhase(metrics, IHuffMetrics.Phase.ENCODE, start, length);
+		return length;
+	}
+
+	// helper method writes everything after the file header.
+	// returns the number of chunks read.
+	private long writeData(BitOutputStream writer, BitInputStream reader) throws IOException {
+		// the table of sync points and the byte offset the next block starts at.
+		SeekTable table = syncInterval == 0 ? null : new SeekTable(syncInterval);
+		long offset = getFileHeaderBitSize() / IHuffConstants.BITS_PER_WORD;
+		if (storeOnly) {
+			// copy the data into STORED blocks, the length is only known now if it
+			// wasn't known before.
+			long length = HuffBlock.writeStored(writer, reader, table, offset, checked);
+			HuffBlock.writeEnd(writer);
+			offset += HuffBlock.getStoredBitSize(length, checked) / IHuffConstants.BITS_PER_WORD;
+			writeSeekTable(writer, table, offset, length);
+			long stored = (length + HuffBlock.MAX_STORED_LENGTH - 1) / HuffBlock.MAX_STORED_LENGTH;
+			IHuffMetrics.add(metrics, IHuffMetrics.Counter.BLOCKS, stored);
+			IHuffMetrics.add(metrics, IHuffMetrics.Counter.STORED_BLOCKS, stored);
+			return length;
+		}
+		if (blocks != null) {
+			// write every block, each with its own tree.
+			long start = 0;
+			for (HuffBlock block : blocks) {
+				HuffOperation.checkInterrupted();
+				block.write(writer, reader, table, offset, start);
+				offset += block.getBitSize() / IHuffConstants.BITS_PER_WORD;
+				start += block.getLength();
+				if (block.isStored()) {
+					IHuffMetrics.add(metrics, IHuffMetrics.Counter.STORED_BLOCKS, 1);
+				}
 			}
+			HuffBlock.writeEnd(writer);
+			writeSeekTable(writer, table, offset, originalLength);
+			IHuffMetrics.add(metrics, IHuffMetrics.Counter.BLOCKS, blocks.length);
+			return originalLength;
 		}
 		int inBits = 0;
-		// read the original file once again.
+		long numChunks = 0;
+		// read the original file once again, writing the code of every chunk.
 		while ((inBits = reader.readBits(IHuffConstants.BITS_PER_WORD)) != -1) {
-			// get the code based on the bits read by the reader.
-			String newCode = codes.get(inBits);
-			// loop iterates over every character of the code.
-			for (int i = 0; i < newCode.length(); i++) {
-				char current = newCode.charAt(i);
-				// write the appropriate bit based on the character.
-				// '1' = 1, '0' = 0
-				writer.writeBits(1, getBitToWrite(current));
+			codes.write(writer, inBits);
+			if ((++numChunks & (HuffOperation.CHECK_CHUNKS - 1)) == 0) {
+				HuffOperation.checkInterrupted();
 			}
 		}
-		// write the pseudoEOF character at the end of the compressed file.
-		String pseudoEOF = codes.get(IHuffConstants.PSEUDO_EOF);
-		for (int i = 0; i < pseudoEOF.length(); i++) {
-			char current = pseudoEOF.charAt(i);
-			writer.writeBits(1, getBitToWrite(current));
+		// write the pseudoEOF character at the end of the compressed file, unless
+		// the decompressor knows the number of chunks.
+		if (!storeLength) {
+			codes.write(writer, IHuffConstants.PSEUDO_EOF);
 		}
+		return numChunks;
 	}
 
-	// helper method to determine which bit value to write.
-	// bit: char which stores '0' or '1'.
-	private int getBitToWrite(char bit) {
-		final char ZERO = '0';
-		// return the appropriate int value.
-		if (bit == ZERO) {
-			return 0;
-		} else {
-			return 1;
+	// helper method writes the seek table after the end marker, if there is one.
+	// offset: byte offset of the end marker in the compressed file.
+	// length: the number of chunks written.
+	private void writeSeekTable(BitOutputStream writer, SeekTable table, long offset, long length) {
+		if (table != null) {
+			table.setLength(length);
+			table.write(writer, offset + HuffBlock.BITS_PER_TYPE / IHuffConstants.BITS_PER_WORD);
 		}
 	}
 
+	// method returns the filters applied to the data before it was counted.
+	public FilterChain getFilterChain() {
+		return filters;
+	}
+
+	// method returns the format the header is written in.
+	public int getHeaderFormat() {
+		return headerFormat;
+	}
+
+	// method returns true if the data is written as it is, without being
+	// counted first.
+	public boolean isStoreOnly() {
+		return storeOnly;
+	}
+
+	// method returns the number of blocks the data is written in, 0 if it is
+	// written with a single tree.
+	public int getNumBlocks() {
+		return blocks == null ? 0 : blocks.length;
+	}
+
 	// method finds the frequencies of each chunk of bits in the original file.
 	// in: BitInputStream object connected to the original file.
+	// planner: BlockPlanner every chunk is passed to, or null.
 	// pre: in != null (handled by SimpleHuffProcessor)
-	private void findFrequencies(BitInputStream in) throws IOException {
+	// returns the number of chunks read.
+	private long findFrequencies(BitInputStream in, BlockPlanner planner) throws IOException {
 		int valueOfBits = 0;
-		int numChunks = 0;
+		long numChunks = 0;
 		// loop reads the entire file.
 		while ((valueOfBits = in.readBits(IHuffConstants.BITS_PER_WORD)) != -1) {
 			// increment the frequency of the chunk found.
 			valFrequencies[valueOfBits]++;
+			if (planner != null) {
+				planner.add(valueOfBits);
+			}
 			// increment numChunks read.
 			numChunks++;
-		}
-		// calculate the original size of file.
-		originalSizeOfFile = numChunks * IHuffConstants.BITS_PER_WORD;
-	}
-
-	// method constructs the HuffTree required by the Compressor.
-	private HuffTree constructHuffTree() {
-		// create a PriorityQueue
-		// Custom Priority Queue used to break ties in a fair manner.
-		CustomPriorityQueue<TreeNode> q = new CustomPriorityQueue<>();
-		// loop through valFrequncies.
-		for (int i = 0; i < valFrequencies.length; i++) {
-			// if the frequency of the chunk is not zero:
-			if (valFrequencies[i] != 0) {
-				// create a TreeNode with value = i and frequency = valFrequencies[i]
-				TreeNode addToQueue = new TreeNode(i, valFrequencies[i]);
-				// add the node to the queue.
-				q.enqueue(addToQueue);
+			if ((numChunks & (HuffOperation.CHECK_CHUNKS - 1)) == 0) {
+				HuffOperation.checkInterrupted();
 			}
 		}
-		// create a TreeNode to represent the pseudoEOF chunk.
-		TreeNode pseudoEOFNode = new TreeNode(IHuffConstants.PSEUDO_EOF, 1);
-		// add the node to the queue.
-		q.enqueue(pseudoEOFNode);
-		// create and return the HuffTree.
-		return new HuffTree(q);
+		// the original size of file.
+		return numChunks;
 	}
 
 	// method returns the number of bits in the original file.
-	public int getNumBitsInOriginalFile() {
-		return originalSizeOfFile;
+	public long getNumBitsInOriginalFile() {
+		return originalLength * IHuffConstants.BITS_PER_WORD;
+	}
+
+	// method returns the number of chunks in the original file.
+	public long getOriginalLength() {
+		return originalLength;
+	}
+
+	// helper method returns the bits written for the header format, the filter
+	// chain and the number of chunks.
+	private int getFileHeaderBitSize() {
+		// magic number and headerFormat each require BITS_PER_INT number of bits.
+		int output = 2 * IHuffConstants.BITS_PER_INT;
+		// the filter chain is only written if the data was filtered.
+		if (!filters.isEmpty()) {
+			output += filters.getHeaderBitSize();
+		}
+		if (storeLength) {
+			output += BitOutputStream.getVarLongBitSize(originalLength);
+		}
+		return output;
 	}
 
 	// method determines the number of bits that would be written to the compressed
 	// file
 	// pre: none
 	// post: return the number of bits that would be written.
-	public int getNumBitsWritten() {
-		// variable stores the number of bits
-		// magic number requires BITS_PER_INT number of bits.
-		int output = IHuffConstants.BITS_PER_INT;
-		// headerFormat requires BITS_PER_INT number of bits.
-		output += IHuffConstants.BITS_PER_INT;
-		// get the number of bits required by the actual header data.
-		output += getHeaderDataSize();
-		// loop through all the chunks that have a code assigned to it.
-		for (int value : codes.keySet()) {
-			// ensure the chunk doesn't represent the pseudoEOF value.
-			if (value != IHuffConstants.PSEUDO_EOF) {
-				// add the frequency of the chunk * the length of the code to output.
-				output += valFrequencies[value] * codes.get(value).length();
-			}
+	public long getNumBitsWritten() {
+		return getNumBitsWritten(originalLength);
+	}
+
+	// method returns the number of bits written for data of length chunks, which
+	// is only not getNumBitsWritten() for data stored without a known length.
+	// length: the number of chunks compress read.
+	public long getNumBitsWritten(long length) {
+		if (storeOnly) {
+			// the file header, the blocks and the end marker.
+			return getFileHeaderBitSize() + HuffBlock.BITS_PER_TYPE + HuffBlock.getStoredBitSize(length, checked)
+					+ getSeekTableBitSize(length);
+		}
+		if (blocks != null) {
+			return getBlockBitsWritten(blocks);
 		}
+		return getSingleTreeBitsWritten();
+	}
+
+	// helper method determines the number of bits written with a single tree.
+	private long getSingleTreeBitsWritten() {
+		// variable stores the number of bits, starting with the magic number, the
+		// headerFormat, the filter chain and the number of chunks.
+		long output = getFileHeaderBitSize();
+		// get the number of bits required by the actual header data.
+		output += myTree.getHeaderBitSize(headerFormat, IHuffConstants.ALPH_SIZE);
+		// add the frequency of each chunk * the length of its code.
+		output += codes.getEncodedBitSize(valFrequencies);
 		// add the number of bits required to write the pseudoEOF chunk.
-		output += codes.get(IHuffConstants.PSEUDO_EOF).length();
+		if (!storeLength) {
+			output += codes.getLength(IHuffConstants.PSEUDO_EOF);
+		}
 		return output;
 	}
 
-	// helper method gets the size of the header data included in the compressed
-	// file.
-	// pre: none
-	// post: returns the size (in bits) of the header data.
-	private int getHeaderDataSize() {
-		if (headerFormat == IHuffConstants.STORE_COUNTS) {
-			// the bits required would be number of possible chunks * BITS_PER_INT.
-			return IHuffConstants.ALPH_SIZE * IHuffConstants.BITS_PER_INT;
-		} else {
-			// the bits required would be the size of the tree representation +
-			// BITS_PER_INT number of bits to write the size of the tree.
-			return myTree.getTreeBitSize() + IHuffConstants.BITS_PER_INT;
+	// helper method determines the number of bits written in blocks.
+	private long getBlockBitsWritten(HuffBlock[] blocks) {
+		// the magic number, the headerFormat, the filter chain and the number of
+		// chunks.
+		long output = getFileHeaderBitSize();
+		for (HuffBlock block : blocks) {
+			output += block.getBitSize();
+		}
+		// the marker after the last block.
+		output += HuffBlock.BITS_PER_TYPE;
+		return output + getSeekTableBitSize(originalLength);
+	}
+
+	// helper method returns the bits written for the seek table of length
+	// chunks, 0 if there is none.
+	private long getSeekTableBitSize(long length) {
+		return syncInterval == 0 ? 0 : SeekTable.getBitSize(length, syncInterval);
+	}
+
+	// Options holds how a Compressor is made besides the header format. Each
+	// option is set by name on a copy, starting from NONE, so flags and the sync
+	// interval can't be passed in each other's place:
+	//
+	// Compressor.Options.NONE.withFlags(FLAG_BLOCKS).withSyncInterval(n)
+	//
+	// Options never change, so one may be shared by every thread.
+	public static class Options {
+
+		// class constants:
+		// no filters, no flags, no seek table and no listener.
+		public static final Options NONE = new Options(FilterChain.NONE, 0, 0, null);
+
+		// instance vars:
+		// the filters applied to the data before it was counted.
+		private final FilterChain filters;
+		// the optional header flags the compressor may use.
+		private final int flags;
+		// number of chunks between sync points, 0 if there is no seek table.
+		private final int syncInterval;
+		// listener the phases are reported to, or null.
+		private final IHuffMetrics metrics;
+
+		// Constructor used by the with methods.
+		private Options(FilterChain filters, int flags, int syncInterval, IHuffMetrics metrics) {
+			this.filters = filters;
+			this.flags = flags;
+			this.syncInterval = syncInterval;
+			this.metrics = metrics;
+		}
+
+		// method returns these options with the filters that were applied to the
+		// data.
+		// pre: filters != null
+		public Options withFilters(FilterChain filters) {
+			// check precon:
+			if (filters == null) {
+				throw new IllegalArgumentException("filters can't be null");
+			}
+			return new Options(filters, flags, syncInterval, metrics);
+		}
+
+		// method returns these options with the optional header flags. With
+		// FLAG_BLOCKS the data is split into blocks if that makes the compressed
+		// file smaller. With FLAG_LENGTH the number of chunks is written in the
+		// header. With FLAG_CHECKSUM the data is always written in blocks, each
+		// followed by its checksums.
+		public Options withFlags(int flags) {
+			return new Options(filters, flags, syncInterval, metrics);
+		}
+
+		// method returns these options with a seek table written after the data.
+		// The data is then always written in blocks.
+		// syncInterval: number of chunks between sync points, 0 for no table.
+		// pre: syncInterval is 0 or a positive multiple of FilterChain.BLOCK_SIZE
+		public Options withSyncInterval(int syncInterval) {
+			// check precon:
+			if (syncInterval < 0 || syncInterval % FilterChain.BLOCK_SIZE != 0) {
+				throw new IllegalArgumentException("sync interval must be 0 or a multiple of " + FilterChain.BLOCK_SIZE);
+			}
+			return new Options(filters, flags, syncInterval, metrics);
+		}
+
+		// method returns these options with a listener the counting, tree and
+		// compress phases are reported to, or null for none.
+		public Options withMetrics(IHuffMetrics metrics) {
+			return new Options(filters, flags, syncInterval, metrics);
+		}
+
+		public FilterChain getFilters() {
+			return filters;
+		}
+
+		public int getFlags() {
+			return flags;
+		}
+
+		public int getSyncInterval() {
+			return syncInterval;
+		}
+
+		public IHuffMetrics getMetrics() {
+			return metrics;
 		}
 	}
 }
@@ -1,45 +1,57 @@
 
 // import statements:
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.Arrays;
 
-// Custom priority queue which breaks ties in fair manner. 
+// Custom priority queue which breaks ties in fair manner.
+// Elements that compare equal are dequeued in the order they were enqueued.
+// The queue is a binary heap ordered by (element, insertion order) so it can be
+// used for large alphabets.
 public class CustomPriorityQueue<E extends Comparable<? super E>> {
+	// class constants:
+	private static final int INITIAL_CAPACITY = 16;
 	// instance vars:
-	private LinkedList<E> myCon;
+	// the heap of elements and the insertion number of each element.
+	private E[] myCon;
+	private long[] myOrder;
+	private int mySize;
+	// insertion number given to the next element enqueued.
+	private long myNextOrder;
 
 	// constructor
-	// initializes the internal container (LinkedList)
+	// initializes the internal containers.
 	public CustomPriorityQueue() {
-		myCon = new LinkedList<E>();
+		@SuppressWarnings("unchecked")
+		E[] con = (E[]) new Comparable<?>[INITIAL_CAPACITY];
+		myCon = con;
+		myOrder = new long[INITIAL_CAPACITY];
 	}
 
 	// method adds an item to the queue in the correct position.
 	// pre: item != null
-	// pots: item is added to the list in the correct position.
+	// pots: item is added to the heap in the correct position.
 	public void enqueue(E item) {
 		// check precon:
 		if (item == null) {
 			throw new IllegalArgumentException("invalid node");
 		}
-		// variable stores the index at which the element is to be inserted.
-		int index = 0;
-		boolean positionFound = false;
-		// iterator of the list created.
-		Iterator<E> it = myCon.iterator();
-		// iterate over elements in the list until the insert position is found.
-		while (it.hasNext() && !positionFound) {
-			// get the current element.
-			E current = it.next();
-			// if the item is smaller than current, the position is found.
-			if (item.compareTo(current) < 0) {
-				positionFound = true;
-			} else {
-				index++;
+		if (mySize == myCon.length) {
+			myCon = Arrays.copyOf(myCon, mySize * 2);
+			myOrder = Arrays.copyOf(myOrder, mySize * 2);
+		}
+		// sift the new element up from the bottom of the heap.
+		long order = myNextOrder++;
+		int index = mySize++;
+		while (index > 0) {
+			int parent = (index - 1) / 2;
+			if (!less(item, order, myCon[parent], myOrder[parent])) {
+				break;
 			}
+			myCon[index] = myCon[parent];
+			myOrder[index] = myOrder[parent];
+			index = parent;
 		}
-		// insert element in the queue at the correct position.
-		myCon.add(index, item);
+		myCon[index] = item;
+		myOrder[index] = order;
 	}
 
 	// method removes the first element in the queue
@@ -47,27 +59,57 @@ public class CustomPriorityQueue<E extends Comparable<? super E>> {
 	// post: the element is removed from the internal container.
 	public E dequeue() {
 		// check precon:
-		if (myCon.size() == 0) {
+		if (mySize == 0) {
 			throw new IllegalStateException("queue cannot be empty.");
 		}
-		// remove the first element from the list.
-		return myCon.remove(0);
+		E result = myCon[0];
+		// move the last element to the top and sift it down.
+		mySize--;
+		E item = myCon[mySize];
+		long order = myOrder[mySize];
+		myCon[mySize] = null;
+		int index = 0;
+		int child = 1;
+		while (child < mySize) {
+			// pick the smaller of the two children.
+			if (child + 1 < mySize && less(myCon[child + 1], myOrder[child + 1], myCon[child], myOrder[child])) {
+				child++;
+			}
+			if (!less(myCon[child], myOrder[child], item, order)) {
+				break;
+			}
+			myCon[index] = myCon[child];
+			myOrder[index] = myOrder[child];
+			index = child;
+			child = 2 * index + 1;
+		}
+		if (mySize > 0) {
+			myCon[index] = item;
+			myOrder[index] = order;
+		}
+		return result;
 	}
 
 	// method returns the value held by the first element in the queue.
 	// pre: queue cannot be empty.
 	public E peek() {
 		// check precon:
-		if (myCon.size() == 0) {
+		if (mySize == 0) {
 			throw new IllegalStateException("queue cannot be empty.");
 		}
-		return myCon.getFirst();
+		return myCon[0];
 	}
 
 	// method returns the size of the queue.
 	// pre: none
 	public int size() {
-		// return the size of the internal list.
-		return myCon.size();
+		return mySize;
+	}
+
+	// helper method returns true if element a (enqueued as number orderA) comes
+	// before element b (enqueued as number orderB).
+	private boolean less(E a, long orderA, E b, long orderB) {
+		int cmp = a.compareTo(b);
+		return cmp < 0 || (cmp == 0 && orderA < orderB);
 	}
 }
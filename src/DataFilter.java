@@ -0,0 +1,152 @@
+
+// DataFilter is a single reversible transform applied to the data before the
+// frequencies are counted. Each filter works on one filter block at a time and
+// keeps no state between blocks, so a block can always be undone on its own.
+public class DataFilter {
+
+	// class constants:
+	// filter types, these values are written to the header of the compressed
+	// file.
+	public static final int DELTA = 1;
+	public static final int XOR = 2;
+	public static final int STRIDE = 3;
+	// the largest width (in bytes) of an element a filter can work on.
+	public static final int MAX_WIDTH = 8;
+	private static final int BITS_PER_BYTE = 8;
+	private static final int BYTE_MASK = 0xff;
+
+	// instance vars:
+	// type of the filter (DELTA, XOR or STRIDE).
+	private final int type;
+	// number of bytes in a single element (e.g. 4 for an int or a float).
+	private final int width;
+
+	// Constructor:
+	// type: DELTA, XOR or STRIDE.
+	// width: number of bytes per element.
+	// pre: type is a valid filter type, 2 <= width <= MAX_WIDTH
+	public DataFilter(int type, int width) {
+		// check precon:
+		if (type != DELTA && type != XOR && type != STRIDE) {
+			throw new IllegalArgumentException("invalid filter type: " + type);
+		}
+		if (width < 2 || width > MAX_WIDTH) {
+			throw new IllegalArgumentException("invalid filter width: " + width);
+		}
+		this.type = type;
+		this.width = width;
+	}
+
+	// method returns the type of the filter.
+	public int getType() {
+		return type;
+	}
+
+	// method returns the width of the elements the filter works on.
+	public int getWidth() {
+		return width;
+	}
+
+	// method applies the filter to the first len bytes of data.
+	// scratch: array at least len bytes long used by filters that can't work in
+	// place.
+	// pre: data != null, scratch != null, 0 <= len <= data.length
+	// post: the first len bytes of data are replaced by the filtered bytes.
+	public void apply(byte[] data, int len, byte[] scratch) {
+		if (type == DELTA) {
+			applyDelta(data, len);
+		} else if (type == XOR) {
+			// go backwards so every byte is xor-ed with the original previous element.
+			int end = len - len % width;
+			for (int i = end - 1; i >= width; i--) {
+				data[i] ^= data[i - width];
+			}
+		} else {
+			splitStride(data, len, scratch);
+		}
+	}
+
+	// method undoes the filter on the first len bytes of data.
+	// scratch: array at least len bytes long.
+	// pre: data != null, scratch != null, 0 <= len <= data.length
+	// post: the first len bytes of data are replaced by the original bytes.
+	public void undo(byte[] data, int len, byte[] scratch) {
+		if (type == DELTA) {
+			undoDelta(data, len);
+		} else if (type == XOR) {
+			// go forwards so every byte is xor-ed with the already restored element.
+			int end = len - len % width;
+			for (int i = width; i < end; i++) {
+				data[i] ^= data[i - width];
+			}
+		} else {
+			joinStride(data, len, scratch);
+		}
+	}
+
+	// helper method replaces every element by the difference with the previous
+	// element. Any bytes after the last full element are left alone.
+	private void applyDelta(byte[] data, int len) {
+		long previous = 0;
+		for (int i = 0; i + width <= len; i += width) {
+			long current = readElement(data, i);
+			writeElement(data, i, current - previous);
+			previous = current;
+		}
+	}
+
+	// helper method adds every element to the sum of the elements before it.
+	private void undoDelta(byte[] data, int len) {
+		long previous = 0;
+		for (int i = 0; i + width <= len; i += width) {
+			previous += readElement(data, i);
+			writeElement(data, i, previous);
+		}
+	}
+
+	// helper method moves byte j of every element to plane j, so bytes with
+	// similar statistics end up next to each other.
+	private void splitStride(byte[] data, int len, byte[] scratch) {
+		int elements = len / width;
+		for (int i = 0; i < elements; i++) {
+			for (int j = 0; j < width; j++) {
+				scratch[j * elements + i] = data[i * width + j];
+			}
+		}
+		System.arraycopy(scratch, 0, data, 0, elements * width);
+	}
+
+	// helper method moves the bytes in the planes back into their elements.
+	private void joinStride(byte[] data, int len, byte[] scratch) {
+		int elements = len / width;
+		for (int i = 0; i < elements; i++) {
+			for (int j = 0; j < width; j++) {
+				scratch[i * width + j] = data[j * elements + i];
+			}
+		}
+		System.arraycopy(scratch, 0, data, 0, elements * width);
+	}
+
+	// helper method reads a big-endian element of width bytes starting at pos.
+	private long readElement(byte[] data, int pos) {
+		long value = 0;
+		for (int i = 0; i < width; i++) {
+			value = (value << BITS_PER_BYTE) | (data[pos + i] & BYTE_MASK);
+		}
+		return value;
+	}
+
+	// helper method writes the low width bytes of value big-endian starting at
+	// pos.
+	private void writeElement(byte[] data, int pos, long value) {
+		for (int i = width - 1; i >= 0; i--) {
+			data[pos + i] = (byte) value;
+			value >>>= BITS_PER_BYTE;
+		}
+	}
+
+	public String toString() {
+		String name = type == DELTA ? "delta" : type == XOR ? "xor" : "stride";
+		return name + width;
+	}
+}
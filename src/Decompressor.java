@@ -1,19 +1,46 @@
 
 //import statements:
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
 
 // Decompressor stores data required for decompression and writes the decompressed file. 
 public class Decompressor {
 
 	// instance vars:
 	private HuffTree myTree;
-	// class constant:
-	private static final int INTERNAL_NODE_VALUE = -1;
+	// the filters to undo on the decompressed data.
+	private FilterChain myFilters;
+	// true if the data is stored in blocks, each with its own tree.
+	private boolean myBlocks;
+	// the header format of the tree of each block.
+	private int myHeaderFormat;
+	// the number of chunks in the original file, -1 if the header doesn't say.
+	private long myLength;
+	// true if a seek table follows the blocks.
+	private boolean mySync;
+	// true if every block is followed by its checksums.
+	private boolean myChecked;
+	// listener the phases are reported to, or null.
+	private IHuffMetrics myMetrics;
 
 	// Constructor:
 	public Decompressor() {
 		// intialize the tree.
 		myTree = new HuffTree();
+		// no filters unless the header says otherwise.
+		myFilters = FilterChain.NONE;
+		// the length is unknown unless the header says otherwise.
+		myLength = -1;
+	}
+
+	// method sets the listener the header and decode phases are reported to,
+	// null for none.
+	public void setMetrics(IHuffMetrics metrics) {
+		myMetrics = metrics;
 	}
 
 	// method determines if the file to decompress is actually compressed
@@ -34,112 +61,297 @@ public class Decompressor {
 	// reader: BitInputStream connected to the compressed file.
 	// pre: reader != null (handled by SimpleHuffProcessor)
 	public void constructTree(BitInputStream reader) throws IOException {
-		// get the headerFormat.
-		int headerFormat = reader.readBits(IHuffConstants.BITS_PER_INT);
-		// check which headerFormat was used.
-		if (headerFormat == IHuffConstants.STORE_COUNTS) {
-			// call the appropriate helper method (constructTreeWithCounts())
-			constructTreeWithCounts(reader);
-		} else if (headerFormat == IHuffConstants.STORE_TREE) {
-			// call the appropriate helper method (constructTreeWithCounts())
-			constructTreeWithTreeRep(reader);
+		HuffEvents.HeaderDecode event = HuffEvents.isRecording() ? new HuffEvents.HeaderDecode() : null;
+		long start = IHuffMetrics.startPhase(myMetrics, IHuffMetrics.Phase.READ_HEADER);
+		int headerValue = readHeader(reader);
+		IHuffMetrics.endPhase(myMetrics, IHuffMetrics.Phase.READ_HEADER, start, 0);
+		if (event != null) {
+			event.end();
+			if (event.shouldCommit()) {
+				event.headerFormat = HuffEvents.getFormatName(myHeaderFormat);
+				event.flags = headerValue & ~IHuffConstants.HEADER_FORMAT_MASK;
+				event.originalSize = myLength;
+				event.filters = myFilters.toString();
+				event.commit();
+			}
 		}
 	}
 
-	// helper method:
-	// constructs tree using the count format
-	// reader: BitInputStream object connected to the compressed file.
-	private void constructTreeWithCounts(BitInputStream reader) throws IOException {
-		// create a priority queue,
-		// custom priority queue used to break ties in fair manner.
-		CustomPriorityQueue<TreeNode> q = new CustomPriorityQueue<>();
-		// read the first ALPH_SIZE number of BITS_PER_INT
-		for (int i = 0; i < IHuffConstants.ALPH_SIZE; i++) {
-			// get the frequency of the chunk.
-			int currentFrequency = reader.readBits(IHuffConstants.BITS_PER_INT);
-			if (currentFrequency != 0) {
-				// if the frequency was not zero, create a TreeNode with value = i
-				// and frequency = currentFrequency.
-				TreeNode toAdd = new TreeNode(i, currentFrequency);
-				// add the node to the queue.
-				q.enqueue(toAdd);
-			}
+	// helper method reads the file header, and the tree unless the data is stored
+	// in blocks.
+	// returns the header format value, with its flags.
+	private int readHeader(BitInputStream reader) throws IOException {
+		// get the headerFormat and split off the flags.
+		int headerValue = reader.readBits(IHuffConstants.BITS_PER_INT);
+		int headerFormat = headerValue & IHuffConstants.HEADER_FORMAT_MASK;
+		// read the filter chain if the data was filtered.
+		if ((headerValue & IHuffConstants.FLAG_FILTERED) != 0) {
+			myFilters = FilterChain.readHeader(reader);
+		}
+		// read the number of chunks if it was written.
+		if ((headerValue & IHuffConstants.FLAG_LENGTH) != 0) {
+			myLength = reader.readVarLong();
+		}
+		myHeaderFormat = headerFormat;
+		// the trees of a file stored in blocks are read with each block.
+		myBlocks = (headerValue & IHuffConstants.FLAG_BLOCKS) != 0;
+		mySync = myBlocks && (headerValue & IHuffConstants.FLAG_SYNC) != 0;
+		myChecked = myBlocks && (headerValue & IHuffConstants.FLAG_CHECKSUM) != 0;
+		if (myBlocks) {
+			return headerValue;
+		}
+		// rebuild the tree from the header data if the headerFormat is known.
+		if (headerFormat == IHuffConstants.STORE_COUNTS || headerFormat == IHuffConstants.STORE_TREE) {
+			myTree = HuffTree.readHeader(reader, headerFormat, IHuffConstants.ALPH_SIZE);
 		}
-		// add a node representing the pseudoEOF chunk.
-		q.enqueue(new TreeNode(IHuffConstants.PSEUDO_EOF, 1));
-		// create the tree.
-		myTree = new HuffTree(q);
+		return headerValue;
 	}
 
-	// helper method:
-	// constructs the tree using the tree format.
-	// reader: BitInputStream object connected to the compressed file.
-	private void constructTreeWithTreeRep(BitInputStream reader) throws IOException {
-		// get the size of the tree.
-		int sizeOfTree = reader.readBits(IHuffConstants.BITS_PER_INT);
-		// variable to keep track of number of bits read.
-		int count = 0;
-		// StringBuilder used to make method more efficient.
-		StringBuilder treeRepresentation = new StringBuilder();
-		// loop reads sizeOfTree number of bits from the file.
-		while (count < sizeOfTree) {
-			// get the currentBit.
-			int currentBit = reader.readBits(1);
-			// append it to the StringBuilder.
-			treeRepresentation.append(currentBit);
-			count++;
-		}
-		// create the tree using the tree representation.
-		myTree = new HuffTree(treeRepresentation.toString());
+	// method returns the filters that must be undone on the decompressed data.
+	// pre: constructTree has been called.
+	public FilterChain getFilterChain() {
+		return myFilters;
+	}
+
+	// method returns the format of the header, without its flags.
+	// pre: constructTree has been called.
+	public int getHeaderFormat() {
+		return myHeaderFormat;
+	}
+
+	// method returns the number of chunks in the original file, or -1 if the
+	// header doesn't record it.
+	// pre: constructTree has been called.
+	public long getOriginalLength() {
+		return myLength;
 	}
 
 	// method writes to the uncompressed file.
 	// reader: BitInputStream connected to the compressed file.
 	// writer: BitOutputStream connected to the decompressed file.
-	// returns the number of bits written to the decompressed file.
+	// returns the number of chunks written to the decompressed file, or -1 if the
+	// file ends early.
 	// pre: reader != null & writer != null (handled by SimpleHuffProcessor)
-	public int decompress(BitInputStream reader, BitOutputStream writer) throws IOException {
-		boolean done = false;
-		boolean decompressSuccessful = true;
-		int bitsWritten = 0;
-		// set the current node of the tree to the root.
-		myTree.startTraversal();
-		// read the bits in the file.
-		while (!done) {
-			// get the current bit.
-			int bit = reader.readBits(1);
-			// if bit == -1, we have reached the end of the file.
-			if (bit == -1) {
-				// technically, the end of the file would never be reached if compressed
-				// properly.
-				decompressSuccessful = false;
-				done = true;
-			} else {
-				// update the current node in the tree.
-				// get the value held by the current node.
-				int value = myTree.updateCurrent(bit);
-				// ensure the current node is not an internal node.
-				if (value != INTERNAL_NODE_VALUE) {
-					// check if the pseudoEOF has been reached.
-					if (value == IHuffConstants.PSEUDO_EOF) {
-						// done reading the file.
-						done = true;
-					} else {
-						// write the value as a BITS_PER_WORD chunk.
-						writer.writeBits(IHuffConstants.BITS_PER_WORD, value);
-						// update the number of bits written.
-						bitsWritten += IHuffConstants.BITS_PER_WORD;
-						// reset the current node of the tree to the root.
-						myTree.resetTraversal();
-					}
-				}
+	public long decompress(BitInputStream reader, BitOutputStream writer) throws IOException {
+		long start = IHuffMetrics.startPhase(myMetrics, IHuffMetrics.Phase.DECODE);
+		long numChunks = decode(reader, writer);
+		IHuffMetrics.endPhase(myMetrics, IHuffMetrics.Phase.DECODE, start, Math.max(0, numChunks));
+		return numChunks;
+	}
+
+	// helper method decodes the data with the format given by the header.
+	private long decode(BitInputStream reader, BitOutputStream writer) throws IOException {
+		if (myBlocks) {
+			return decompressBlocks(reader, writer);
+		}
+		if (myLength != -1) {
+			return decompressCounted(reader, writer);
+		}
+		long numChunks = 0;
+		// read codes until the pseudoEOF. decode keeps no state in the tree, so a
+		// tree may be shared by decoders on other threads.
+		int value = 0;
+		while ((value = myTree.decode(reader)) != IHuffConstants.PSEUDO_EOF) {
+			// technically, the end of the file would never be reached if compressed
+			// properly.
+			if (value == -1) {
+				return -1;
+			}
+			// write the value as a BITS_PER_WORD chunk.
+			writer.writeBits(IHuffConstants.BITS_PER_WORD, value);
+			if ((++numChunks & (HuffOperation.CHECK_CHUNKS - 1)) == 0) {
+				HuffOperation.checkInterrupted();
+			}
+		}
+		return numChunks;
+	}
+
+	// helper method decodes exactly myLength chunks of a file written with a
+	// single tree and no pseudoEOF.
+	// returns the number of chunks written to the decompressed file, or -1 if
+	// the file ends early.
+	private long decompressCounted(BitInputStream reader, BitOutputStream writer) throws IOException {
+		for (long i = 0; i < myLength; i++) {
+			if ((i & (HuffOperation.CHECK_CHUNKS - 1)) == 0) {
+				HuffOperation.checkInterrupted();
+			}
+			int value = myTree.decode(reader);
+			if (value == -1 || value == IHuffConstants.PSEUDO_EOF) {
+				return -1;
+			}
+			writer.writeBits(IHuffConstants.BITS_PER_WORD, value);
+		}
+		return myLength;
+	}
+
+	// helper method decodes every block of a file stored in blocks.
+	// returns the number of chunks written to the decompressed file.
+	private long decompressBlocks(BitInputStream reader, BitOutputStream writer) throws IOException {
+		long numChunks = 0;
+		int chunks = 0;
+		// decode blocks until the end marker is read, checking their checksums.
+		while ((chunks = HuffBlock.decode(reader, writer, myHeaderFormat, myChecked)) != -1) {
+			numChunks += chunks;
+			IHuffMetrics.add(myMetrics, IHuffMetrics.Counter.BLOCKS, 1);
+			HuffOperation.checkInterrupted();
+		}
+		return numChunks;
+	}
+
+	// method writes part of the original file, starting at the sync point at or
+	// before offset instead of the start of the data if the file has a seek
+	// table. Files without one are decoded from the start.
+	// in: the compressed file, its position is changed.
+	// offset: index of the first chunk of the original file to write.
+	// length: the most chunks to write.
+	// out: where the chunks are written, the filters are undone. It is flushed
+	// but not closed.
+	// returns the number of chunks written, fewer than length if the original
+	// file ends first.
+	// pre: in != null, out != null, offset >= 0, length >= 0
+	public long decompressRange(SeekableByteChannel in, long offset, long length, OutputStream out)
+			throws IOException {
+		in.position(0);
+		BitInputStream reader = openAt(in, 0);
+		if (!isCompressedFile(reader)) {
+			throw new IOException("File not compressed");
+		}
+		constructTree(reader);
+		if (!mySync) {
+			// decode everything, only the range is written.
+			RangeOutputStream range = new RangeOutputStream(out, offset, length);
+			BitOutputStream writer = new BitOutputStream(new BufferedOutputStream(myFilters.unfilter(range)));
+			if (decompress(reader, writer) == -1) {
+				throw new IOException("File not compressed properly");
 			}
+			writer.close();
+			return range.getWritten();
 		}
-		if (decompressSuccessful) {
-			return bitsWritten;
-		} else {
-			return -1;
+		SeekTable table = SeekTable.read(in);
+		long end = Math.min(table.getLength(), offset + Math.min(length, Long.MAX_VALUE - offset));
+		if (offset >= end) {
+			return 0;
+		}
+		// the sync point at or before offset, it starts a filtered block.
+		int k = (int) (offset / table.getInterval());
+		long from = (long) k * table.getInterval();
+		// whole filtered blocks are decoded so the filters can be undone.
+		long left = Math.min(table.getLength() - from,
+				(end - from + FilterChain.BLOCK_SIZE - 1) / FilterChain.BLOCK_SIZE * FilterChain.BLOCK_SIZE);
+		// read the header of the block of the sync point, and its tree.
+		reader = openAt(in, table.getBlockOffset(k));
+		int type = reader.readBits(HuffBlock.BITS_PER_TYPE);
+		int blockLength = reader.readBits(IHuffConstants.BITS_PER_INT);
+		HuffTree tree = readBlockTree(reader, type, blockLength);
+		// then start at the code of the chunk.
+		long bitOffset = table.getBitOffset(k);
+		reader = openAt(in, table.getBlockOffset(k) + HuffBlock.HEADER_BITS / IHuffConstants.BITS_PER_WORD
+				+ bitOffset / IHuffConstants.BITS_PER_WORD);
+		reader.readBits((int) (bitOffset % IHuffConstants.BITS_PER_WORD));
+		RangeOutputStream range = new RangeOutputStream(out, offset - from, end - offset);
+		BitOutputStream writer = new BitOutputStream(new BufferedOutputStream(myFilters.unfilter(range)));
+		int count = (int) Math.min(left, blockLength - table.getIndex(k));
+		decodeChunks(reader, writer, tree, count);
+		left -= count;
+		// the rest of the chunks are in the blocks that follow. Only part of the
+		// first block is decoded, so the checksums are skipped, not checked.
+		while (left > 0) {
+			reader.alignToByte();
+			if (myChecked) {
+				reader.readBits(IHuffConstants.BITS_PER_INT);
+				reader.readBits(IHuffConstants.BITS_PER_INT);
+			}
+			type = reader.readBits(HuffBlock.BITS_PER_TYPE);
+			blockLength = reader.readBits(IHuffConstants.BITS_PER_INT);
+			tree = readBlockTree(reader, type, blockLength);
+			count = (int) Math.min(left, blockLength);
+			decodeChunks(reader, writer, tree, count);
+			left -= count;
 		}
+		writer.close();
+		return range.getWritten();
 	}
 
+	// helper method returns a BitInputStream reading in from position.
+	private static BitInputStream openAt(SeekableByteChannel in, long position) throws IOException {
+		in.position(position);
+		return new BitInputStream(new BufferedInputStream(Channels.newInputStream(in)));
+	}
+
+	// helper method reads the rest of a block header whose type and length have
+	// been read, and the tree of a HUFF block.
+	// returns the tree, or null for a STORED block.
+	private HuffTree readBlockTree(BitInputStream reader, int type, int blockLength) throws IOException {
+		// the payload size is only needed to skip a block.
+		reader.readBits(IHuffConstants.BITS_PER_INT);
+		if ((type != HuffBlock.HUFF && type != HuffBlock.STORED) || blockLength < 0) {
+			throw new IOException("invalid block header");
+		}
+		if (type == HuffBlock.STORED) {
+			return null;
+		}
+		return HuffTree.readHeader(reader, myHeaderFormat, IHuffConstants.ALPH_SIZE);
+	}
+
+	// helper method decodes count chunks of a block, copying them if tree is null.
+	private static void decodeChunks(BitInputStream reader, BitOutputStream writer, HuffTree tree, int count)
+			throws IOException {
+		for (int i = 0; i < count; i++) {
+			int value = tree == null ? reader.readBits(IHuffConstants.BITS_PER_WORD) : tree.decode(reader);
+			if (value == -1 || value == IHuffConstants.PSEUDO_EOF) {
+				throw new IOException("compressed block ends early");
+			}
+			writer.writeBits(IHuffConstants.BITS_PER_WORD, value);
+		}
+	}
+
+	// OutputStream that passes on only the bytes in a range of what is written to
+	// it. Closing it flushes the wrapped stream but doesn't close it.
+	private static class RangeOutputStream extends OutputStream {
+		private final OutputStream myOutput;
+		// bytes still to skip and still to pass on.
+		private long mySkip;
+		private long myLeft;
+		private long myWritten;
+
+		public RangeOutputStream(OutputStream out, long skip, long length) {
+			myOutput = out;
+			mySkip = skip;
+			myLeft = length;
+		}
+
+		public void write(int b) throws IOException {
+			if (mySkip > 0) {
+				mySkip--;
+			} else if (myLeft > 0) {
+				myOutput.write(b);
+				myLeft--;
+				myWritten++;
+			}
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException {
+			int skipped = (int) Math.min(len, mySkip);
+			mySkip -= skipped;
+			int n = (int) Math.min(len - skipped, myLeft);
+			if (n > 0) {
+				myOutput.write(b, off + skipped, n);
+				myLeft -= n;
+				myWritten += n;
+			}
+		}
+
+		// method returns the number of bytes passed on.
+		public long getWritten() {
+			return myWritten;
+		}
+
+		public void flush() throws IOException {
+			myOutput.flush();
+		}
+
+		public void close() throws IOException {
+			myOutput.flush();
+		}
+	}
 }
@@ -1,14 +1,21 @@
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
-import javax.swing.ProgressMonitorInputStream;
+import javax.swing.ProgressMonitor;
+import javax.swing.Timer;
 import javax.swing.UIManager;
 
 public class Diff {
 
-    protected static JFileChooser ourChooser = new JFileChooser(".");
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+    // how often the progress of a compare is shown, and its scale.
+    private static final int PROGRESS_MILLIS = 100;
+    private static final int PROGRESS_MAX = 1000;
 
     public static void showMessage(String message) {
         JOptionPane.showMessageDialog(null, message,"Diff Output",
@@ -16,48 +23,76 @@ public class Diff {
     }
 
     public static void doDiffer(File[] files, DiffStats ds) {
-        final int BITS_PER_BYTE = 8;
+        // the engine adds to progress once per window, a timer on the event
+        // thread shows it.
+        AtomicLong progress = new AtomicLong();
+        long total = Math.min(files[0].length(), files[1].length());
+        ProgressMonitor monitor = new ProgressMonitor(null, "comparing files ...", null, 0, PROGRESS_MAX);
+        monitor.setMillisToDecideToPopup(PROGRESS_MILLIS);
+        monitor.setMillisToPopup(PROGRESS_MILLIS);
+        Timer timer = new Timer(PROGRESS_MILLIS, e -> monitor.setProgress(
+                total == 0 ? PROGRESS_MAX : (int) (PROGRESS_MAX * progress.get() / total)));
+        timer.start();
         try {
-            ProgressMonitorInputStream stream1 =
-                new ProgressMonitorInputStream(
-                        null,
-                        "reading " + files[0].getName(),
-                        new FileInputStream(files[0]));
-            ProgressMonitorInputStream stream2 =
-                new ProgressMonitorInputStream(
-                        null,
-                        "reading " + files[1].getName(),
-                        new FileInputStream(files[1]));
-            BitInputStream b1 = new BitInputStream(stream1);
-            BitInputStream b2 = new BitInputStream(stream2);
-            ds.file1Size = files[0].length();
-            ds.file2Size = files[1].length();
-            int x = b1.readBits(BITS_PER_BYTE);
-            int y = b2.readBits(BITS_PER_BYTE);
-            int bytesRead = 1;
-            while (x != -1 && y != -1) {
-                if (x != y) {
-                    ds.totalDifferences++;
-                    if (ds.firstDiff == -1)
-                        ds.firstDiff = bytesRead;
-                }
-                x = b1.readBits(8);
-                y = b2.readBits(8);
-                bytesRead++;
-            }
-            bytesRead--; // last read didn't work
-            b1.close();
-            b2.close();
+            DiffEngine.Result result = new DiffEngine(THREADS).compare(files[0], files[1], progress);
+            ds.file1Size = result.getSize1();
+            ds.file2Size = result.getSize2();
+            ds.totalDifferences = result.getDifferences();
+            // reported as the number of bytes read up to and including it.
+            if (result.getFirstDifference() != -1 && result.getDifferences() > 0)
+                ds.firstDiff = result.getFirstDifference() + 1;
         } catch (IOException e) {
             e.printStackTrace();
             JOptionPane.showMessageDialog(null,"trouble reading","Diff Error",
                     JOptionPane.ERROR_MESSAGE);
+        } finally {
+            timer.stop();
+            monitor.close();
         }
 
     }
 
+    /**
+     * Compares two files named on the command line without a display:
+     * <code>java Diff [-j threads] file1 file2</code>. Exits with 0 if the
+     * files are the same, 1 if they differ and 2 if they can't be read.
+     */
+    private static void diffHeadless(String[] args) {
+        int threads = THREADS;
+        List<String> names = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-j") && i + 1 < args.length) {
+                try {
+                    threads = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    threads = 0;
+                }
+            } else {
+                names.add(args[i]);
+            }
+        }
+        if (names.size() != 2 || threads < 1) {
+            System.err.println("usage: java Diff [-j threads] file1 file2");
+            System.exit(2);
+        }
+        try {
+            DiffEngine.Result result = new DiffEngine(threads).compare(
+                    new File(names.get(0)), new File(names.get(1)));
+            System.out.print(result);
+            System.exit(result.isSame() ? 0 : 1);
+        } catch (IOException e) {
+            System.err.println("Diff: " + e);
+            System.exit(2);
+        }
+    }
+
     public static void main(String[] args){
+        if (args.length > 0) {
+            diffHeadless(args);
+            return;
+        }
         setLookAndFeel();
+        JFileChooser ourChooser = new JFileChooser(".");
         ourChooser.setMultiSelectionEnabled(true);
         ourChooser.setDialogTitle("Diff: choose two files");
         int retval = ourChooser.showOpenDialog(null);
@@ -88,8 +123,8 @@ public class Diff {
     private static class DiffStats {
         private long file1Size;
         private long file2Size;
-        private int firstDiff;
-        private int totalDifferences;
+        private long firstDiff;
+        private long totalDifferences;
 
         private DiffStats() {
             firstDiff = -1;
@@ -0,0 +1,227 @@
+//import statements:
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+// DiffEngine compares two files byte by byte without a display. Both files are
+// mapped in windows of WINDOW_SIZE bytes and compared with ByteBuffer.mismatch,
+// which skips equal spans many bytes at a time. After a difference the next
+// SCAN_SIZE bytes are counted eight at a time before looking for the next
+// difference again. Large files are split into ranges compared on separate
+// threads. Offsets and counts are longs, so files over 2 GB are fine. Progress
+// is added to a counter once per window, so a display can sample it on a timer.
+public class DiffEngine {
+
+	// class constants:
+	// bytes of each file mapped at a time.
+	public static final int WINDOW_SIZE = 1 << 26;
+	// bytes counted after a difference before mismatch is used again.
+	private static final int SCAN_SIZE = 1 << 12;
+	// high and low bits of every byte of a long.
+	private static final long HIGH_BITS = 0x8080808080808080L;
+	private static final long LOW_BITS = 0x7f7f7f7f7f7f7f7fL;
+
+	// instance vars:
+	// most ranges compared at the same time.
+	private final int myThreads;
+
+	// Constructor:
+	// threads: most threads used to compare one pair of files.
+	// pre: threads > 0
+	public DiffEngine(int threads) {
+		// check precon:
+		if (threads <= 0) {
+			throw new IllegalArgumentException("threads must be > 0");
+		}
+		myThreads = threads;
+	}
+
+	// Result is the outcome of comparing two files.
+	public static class Result {
+		private final long mySize1;
+		private final long mySize2;
+		private final long myFirstDifference;
+		private final long myDifferences;
+
+		private Result(long size1, long size2, long firstDifference, long differences) {
+			mySize1 = size1;
+			mySize2 = size2;
+			myFirstDifference = firstDifference;
+			myDifferences = differences;
+		}
+
+		// method returns the size of the first file.
+		public long getSize1() {
+			return mySize1;
+		}
+
+		// method returns the size of the second file.
+		public long getSize2() {
+			return mySize2;
+		}
+
+		// method returns the offset of the first byte that differs, the size of the
+		// shorter file if one file is the start of the other, or -1 if the files
+		// are the same.
+		public long getFirstDifference() {
+			return myFirstDifference;
+		}
+
+		// method returns the number of offsets within both files where the bytes
+		// differ.
+		public long getDifferences() {
+			return myDifferences;
+		}
+
+		// method returns true if the files are the same.
+		public boolean isSame() {
+			return myFirstDifference == -1;
+		}
+
+		public String toString() {
+			String result = "file 1 size in bytes: " + mySize1 + "\n" + "file 2 size in bytes: " + mySize2 + "\n";
+			if (isSame()) {
+				result += "All bytes in files the same\n";
+			} else {
+				result += "number of bytes different: " + myDifferences + "\n";
+				if (mySize1 != mySize2) {
+					result += "files differ in size\n";
+				}
+				result += "first difference at byte offset " + myFirstDifference + "\n";
+			}
+			return result;
+		}
+	}
+
+	// method compares two files.
+	// pre: file1 != null, file2 != null
+	public Result compare(File file1, File file2) throws IOException {
+		return compare(file1, file2, null);
+	}
+
+	// method compares two files, adding the bytes compared to progress as it
+	// goes. The total is the size of the shorter file.
+	// progress: counter read by other threads, or null.
+	// pre: file1 != null, file2 != null
+	public Result compare(File file1, File file2, AtomicLong progress) throws IOException {
+		try (FileChannel channel1 = FileChannel.open(file1.toPath(), StandardOpenOption.READ);
+				FileChannel channel2 = FileChannel.open(file2.toPath(), StandardOpenOption.READ)) {
+			long size1 = channel1.size();
+			long size2 = channel2.size();
+			long common = Math.min(size1, size2);
+			// one range per window at most, and no more ranges than threads.
+			int ranges = (int) Math.max(1, Math.min(myThreads, (common + WINDOW_SIZE - 1) / WINDOW_SIZE));
+			long[] counts;
+			if (ranges == 1) {
+				counts = compareRange(channel1, channel2, 0, common, progress);
+			} else {
+				counts = compareRanges(channel1, channel2, common, ranges, progress);
+			}
+			long first = counts[0];
+			if (first == -1 && size1 != size2) {
+				first = common;
+			}
+			return new Result(size1, size2, first, counts[1]);
+		}
+	}
+
+	// helper method splits [0, common) into ranges compared on their own threads.
+	// returns the first difference and the number of differences.
+	private static long[] compareRanges(FileChannel channel1, FileChannel channel2, long common, int ranges,
+			AtomicLong progress) throws IOException {
+		// ranges are whole windows except the last.
+		long windows = (common + WINDOW_SIZE - 1) / WINDOW_SIZE;
+		long rangeSize = (windows + ranges - 1) / ranges * WINDOW_SIZE;
+		ExecutorService pool = Executors.newFixedThreadPool(ranges);
+		try {
+			List<Future<long[]>> results = new ArrayList<>();
+			for (long start = 0; start < common; start += rangeSize) {
+				long from = start;
+				long to = Math.min(common, start + rangeSize);
+				results.add(pool.submit(() -> compareRange(channel1, channel2, from, to, progress)));
+			}
+			long first = -1;
+			long differences = 0;
+			// the ranges are in order, so the first difference is in the first range
+			// that has one.
+			for (Future<long[]> result : results) {
+				long[] counts = result.get();
+				if (first == -1) {
+					first = counts[0];
+				}
+				differences += counts[1];
+			}
+			return new long[] { first, differences };
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	// helper method compares the bytes in [from, to) of both files, adding each
+	// window to progress if it isn't null.
+	// returns the first difference (-1 if none) and the number of differences.
+	private static long[] compareRange(FileChannel channel1, FileChannel channel2, long from, long to,
+			AtomicLong progress) throws IOException {
+		long first = -1;
+		long differences = 0;
+		for (long position = from; position < to; position += WINDOW_SIZE) {
+			int length = (int) Math.min(WINDOW_SIZE, to - position);
+			MappedByteBuffer window1 = channel1.map(FileChannel.MapMode.READ_ONLY, position, length);
+			MappedByteBuffer window2 = channel2.map(FileChannel.MapMode.READ_ONLY, position, length);
+			int i = 0;
+			while (i < length) {
+				window1.position(i);
+				window2.position(i);
+				int mismatch = window1.mismatch(window2);
+				if (mismatch == -1) {
+					break;
+				}
+				int start = i + mismatch;
+				if (first == -1) {
+					first = position + start;
+				}
+				i = Math.min(length, start + SCAN_SIZE);
+				differences += countDifferences(window1, window2, start, i);
+			}
+			if (progress != null) {
+				progress.addAndGet(length);
+			}
+		}
+		return new long[] { first, differences };
+	}
+
+	// helper method counts the bytes that differ in [from, to) of both buffers,
+	// eight at a time.
+	private static long countDifferences(MappedByteBuffer buffer1, MappedByteBuffer buffer2, int from, int to) {
+		long count = 0;
+		int i = from;
+		for (; i + Long.BYTES <= to; i += Long.BYTES) {
+			long x = buffer1.getLong(i) ^ buffer2.getLong(i);
+			// the high bit of every byte that isn't zero.
+			count += Long.bitCount((((x & LOW_BITS) + LOW_BITS) | x) & HIGH_BITS);
+		}
+		for (; i < to; i++) {
+			if (buffer1.get(i) != buffer2.get(i)) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,109 @@
+//import statements:
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+// EntropySampler estimates how well a stream will compress from a few samples
+// spread over the stream, without reading all of it. Files are sampled with
+// positional reads, ByteArrayInputStreams with mark/skip/reset and any other
+// stream only through the bytes at its start.
+public class EntropySampler {
+
+	// class constants:
+	// estimated bits per byte above which data is not worth huffing.
+	public static final double INCOMPRESSIBLE_BITS = 7.9;
+	// number of samples and bytes per sample.
+	private static final int SAMPLES = 16;
+	private static final int SAMPLE_SIZE = 4096;
+	// streams shorter than this are cheap enough to simply count.
+	private static final long MIN_LENGTH = 2L * SAMPLES * SAMPLE_SIZE;
+
+	// this class only has static methods.
+	private EntropySampler() {
+	}
+
+	// method returns the number of bytes left in the stream, or -1 if that can't
+	// be found without reading it.
+	// pre: in != null
+	public static long remainingLength(InputStream in) throws IOException {
+		if (in instanceof FileInputStream) {
+			FileChannel channel = ((FileInputStream) in).getChannel();
+			try {
+				return channel.size() - channel.position();
+			} catch (IOException e) {
+				// a pipe or other stream that can't seek.
+				return -1;
+			}
+		} else if (in instanceof ByteArrayInputStream) {
+			return in.available();
+		}
+		return -1;
+	}
+
+	// method estimates the number of bits per byte needed to huff the stream.
+	// in: the stream, its position is not changed.
+	// head: the first bytes of the stream, used if it can't be sampled.
+	// headLength: number of valid bytes in head.
+	// pre: in != null, head != null
+	// returns the estimate, or -1 if the stream is too short to be worth
+	// sampling.
+	public static double estimateBitsPerByte(InputStream in, byte[] head, int headLength) throws IOException {
+		long length = remainingLength(in);
+		if (length == -1) {
+			// only the start of the stream is available.
+			if (headLength < SAMPLES * SAMPLE_SIZE) {
+				return -1;
+			}
+			return bitsPerByte(head, headLength);
+		}
+		if (length < MIN_LENGTH) {
+			return -1;
+		}
+		byte[] samples = new byte[SAMPLES * SAMPLE_SIZE];
+		long stride = (length - SAMPLE_SIZE) / (SAMPLES - 1);
+		int read = 0;
+		if (in instanceof FileInputStream) {
+			// positional reads don't move the position of the channel.
+			FileChannel channel = ((FileInputStream) in).getChannel();
+			long start = channel.position();
+			for (int i = 0; i < SAMPLES; i++) {
+				ByteBuffer buffer = ByteBuffer.wrap(samples, read, SAMPLE_SIZE);
+				long position = start + i * stride;
+				int n = 0;
+				while (buffer.hasRemaining() && (n = channel.read(buffer, position)) > 0) {
+					position += n;
+				}
+				read = buffer.position();
+			}
+		} else {
+			in.mark(0);
+			for (int i = 0; i < SAMPLES; i++) {
+				int n = 0;
+				int got = 0;
+				while (got < SAMPLE_SIZE && (n = in.read(samples, read + got, SAMPLE_SIZE - got)) > 0) {
+					got += n;
+				}
+				read += got;
+				in.skip(stride - got);
+			}
+			in.reset();
+		}
+		return bitsPerByte(samples, read);
+	}
+
+	// helper method returns the entropy in bits per byte of the first len bytes of
+	// data.
+	private static double bitsPerByte(byte[] data, int len) {
+		if (len == 0) {
+			return 0;
+		}
+		int[] freq = new int[IHuffConstants.ALPH_SIZE];
+		for (int i = 0; i < len; i++) {
+			freq[data[i] & 0xff]++;
+		}
+		return BlockPlanner.estimateBits(freq, len) / len;
+	}
+}
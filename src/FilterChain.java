@@ -0,0 +1,326 @@
+//import statements:
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+// FilterChain is an ordered list of DataFilters. The chain is applied to the
+// data in blocks of BLOCK_SIZE bytes before the frequencies are counted, it is
+// recorded in the header of the compressed file and undone on decompression.
+public class FilterChain {
+
+	// class constants:
+	// number of bytes filtered at a time.
+	public static final int BLOCK_SIZE = 1 << 16;
+	// the chain that leaves the data as it is.
+	public static final FilterChain NONE = new FilterChain(new DataFilter[0]);
+	// bits used in the header for the number of filters, the type and the width.
+	private static final int BITS_PER_FIELD = 8;
+	// the smallest sample worth choosing a filter for.
+	private static final int MIN_SAMPLE = 1024;
+	// a filter must estimate at least this fraction of the unfiltered size to be
+	// used.
+	private static final double MIN_GAIN = 0.95;
+	// estimated bits per value in the tree header of a plane.
+	private static final int PLANE_BITS_PER_VALUE = IHuffConstants.BITS_PER_WORD + 3;
+	// candidate chains tried when a filter is chosen automatically.
+	private static final FilterChain[] CANDIDATES = {
+			new FilterChain(new DataFilter(DataFilter.DELTA, 2)),
+			new FilterChain(new DataFilter(DataFilter.DELTA, 4)),
+			new FilterChain(new DataFilter(DataFilter.DELTA, 8)),
+			new FilterChain(new DataFilter(DataFilter.XOR, 4)),
+			new FilterChain(new DataFilter(DataFilter.XOR, 8)),
+			new FilterChain(new DataFilter(DataFilter.DELTA, 2), new DataFilter(DataFilter.STRIDE, 2)),
+			new FilterChain(new DataFilter(DataFilter.DELTA, 4), new DataFilter(DataFilter.STRIDE, 4)),
+			new FilterChain(new DataFilter(DataFilter.DELTA, 8), new DataFilter(DataFilter.STRIDE, 8)),
+			new FilterChain(new DataFilter(DataFilter.XOR, 4), new DataFilter(DataFilter.STRIDE, 4)),
+			new FilterChain(new DataFilter(DataFilter.XOR, 8), new DataFilter(DataFilter.STRIDE, 8)) };
+
+	// instance vars:
+	// the filters in the order they are applied.
+	private final DataFilter[] filters;
+
+	// Constructor:
+	// filters: the filters in the order they are applied.
+	// pre: filters != null, no element is null.
+	public FilterChain(DataFilter... filters) {
+		// check precon:
+		if (filters == null) {
+			throw new IllegalArgumentException("filters can't be null");
+		}
+		for (DataFilter f : filters) {
+			if (f == null) {
+				throw new IllegalArgumentException("filters can't contain null");
+			}
+		}
+		this.filters = filters.clone();
+	}
+
+	// method returns true if the chain doesn't change the data.
+	public boolean isEmpty() {
+		return filters.length == 0;
+	}
+
+	// method applies every filter in order to the first len bytes of data.
+	// pre: data != null, scratch != null, scratch.length >= len
+	public void apply(byte[] data, int len, byte[] scratch) {
+		for (int i = 0; i < filters.length; i++) {
+			filters[i].apply(data, len, scratch);
+		}
+	}
+
+	// method undoes every filter in reverse order on the first len bytes of data.
+	// pre: data != null, scratch != null, scratch.length >= len
+	public void undo(byte[] data, int len, byte[] scratch) {
+		for (int i = filters.length - 1; i >= 0; i--) {
+			filters[i].undo(data, len, scratch);
+		}
+	}
+
+	// method writes the chain to the header of the compressed file.
+	// pre: writer != null
+	public void writeHeader(BitOutputStream writer) {
+		writer.writeBits(BITS_PER_FIELD, filters.length);
+		for (DataFilter f : filters) {
+			writer.writeBits(BITS_PER_FIELD, f.getType());
+			writer.writeBits(BITS_PER_FIELD, f.getWidth());
+		}
+	}
+
+	// method returns the number of bits writeHeader writes.
+	public int getHeaderBitSize() {
+		return BITS_PER_FIELD + filters.length * 2 * BITS_PER_FIELD;
+	}
+
+	// method reads a chain written by writeHeader.
+	// pre: reader != null
+	public static FilterChain readHeader(BitInputStream reader) throws IOException {
+		int count = reader.readBits(BITS_PER_FIELD);
+		if (count == -1) {
+			throw new IOException("missing filter header");
+		}
+		DataFilter[] filters = new DataFilter[count];
+		for (int i = 0; i < count; i++) {
+			int type = reader.readBits(BITS_PER_FIELD);
+			int width = reader.readBits(BITS_PER_FIELD);
+			try {
+				filters[i] = new DataFilter(type, width);
+			} catch (IllegalArgumentException e) {
+				throw new IOException("invalid filter header: " + e.getMessage());
+			}
+		}
+		return new FilterChain(filters);
+	}
+
+	// method returns a stream which reads the bytes of in with the chain applied.
+	// pre: in != null
+	public InputStream filter(InputStream in) {
+		if (isEmpty()) {
+			return in;
+		}
+		return new FilteringInputStream(in, this);
+	}
+
+	// method returns a stream which undoes the chain on the bytes written to it
+	// before passing them on to out. The stream must be closed so the last
+	// (partial) block is written.
+	// pre: out != null
+	public OutputStream unfilter(OutputStream out) {
+		if (isEmpty()) {
+			return out;
+		}
+		return new UnfilteringOutputStream(out, this);
+	}
+
+	// method chooses the chain which gives the smallest estimated compressed size
+	// for the sample. Returns NONE if no chain is clearly better than leaving the
+	// data unfiltered.
+	// sample: the first bytes of the data.
+	// len: number of valid bytes in sample.
+	// pre: sample != null, 0 <= len <= sample.length
+	public static FilterChain select(byte[] sample, int len) {
+		if (len < MIN_SAMPLE) {
+			return NONE;
+		}
+		FilterChain best = NONE;
+		double bestSize = NONE.estimateSize(sample, len) * MIN_GAIN;
+		byte[] filtered = new byte[len];
+		byte[] scratch = new byte[len];
+		for (FilterChain candidate : CANDIDATES) {
+			System.arraycopy(sample, 0, filtered, 0, len);
+			candidate.apply(filtered, len, scratch);
+			double size = candidate.estimateSize(filtered, len);
+			if (size < bestSize) {
+				best = candidate;
+				bestSize = size;
+			}
+		}
+		return best;
+	}
+
+	// helper method estimates the number of bits needed to huff the first len
+	// bytes of data, using the entropy of the byte frequencies. If the chain
+	// ends by splitting elements into planes, each plane is estimated on its own
+	// plus the cost of a block header, since the planes can be huffed as
+	// separate blocks.
+	private double estimateSize(byte[] data, int len) {
+		int planes = 1;
+		if (!isEmpty() && filters[filters.length - 1].getType() == DataFilter.STRIDE) {
+			planes = filters[filters.length - 1].getWidth();
+		}
+		int planeLength = len / planes;
+		double bits = 0;
+		for (int p = 0; p < planes; p++) {
+			// the last plane also takes any bytes after the last full element.
+			int start = p * planeLength;
+			int end = p == planes - 1 ? len : start + planeLength;
+			int[] freq = new int[IHuffConstants.ALPH_SIZE];
+			int values = 0;
+			for (int i = start; i < end; i++) {
+				if (freq[data[i] & 0xff]++ == 0) {
+					values++;
+				}
+			}
+			bits += BlockPlanner.estimateBits(freq, end - start);
+			if (planes > 1) {
+				bits += HuffBlock.HEADER_BITS + values * PLANE_BITS_PER_VALUE;
+			}
+		}
+		return bits;
+	}
+
+	public String toString() {
+		if (isEmpty()) {
+			return "none";
+		}
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < filters.length; i++) {
+			if (i > 0) {
+				sb.append('+');
+			}
+			sb.append(filters[i]);
+		}
+		return sb.toString();
+	}
+
+	// helper method reads until buf is full or the stream ends.
+	// returns the number of bytes read.
+	private static int readBlock(InputStream in, byte[] buf) throws IOException {
+		int total = 0;
+		int n = 0;
+		while (total < buf.length && (n = in.read(buf, total, buf.length - total)) != -1) {
+			total += n;
+		}
+		return total;
+	}
+
+	// InputStream that reads a block at a time from the wrapped stream and
+	// returns the filtered bytes.
+	private static class FilteringInputStream extends InputStream {
+		// instance vars
+		private final InputStream myInput;
+		private final FilterChain myChain;
+		private final byte[] myBuffer;
+		private final byte[] myScratch;
+		// number of valid bytes in myBuffer and position of the next byte.
+		private int myLength;
+		private int myPosition;
+
+		public FilteringInputStream(InputStream in, FilterChain chain) {
+			myInput = in;
+			myChain = chain;
+			myBuffer = new byte[BLOCK_SIZE];
+			myScratch = new byte[BLOCK_SIZE];
+		}
+
+		public int read() throws IOException {
+			if (myPosition == myLength && !fill()) {
+				return -1;
+			}
+			return myBuffer[myPosition++] & 0xff;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (myPosition == myLength && !fill()) {
+				return -1;
+			}
+			int n = Math.min(len, myLength - myPosition);
+			System.arraycopy(myBuffer, myPosition, b, off, n);
+			myPosition += n;
+			return n;
+		}
+
+		// helper method reads and filters the next block.
+		// returns false if there are no more bytes.
+		private boolean fill() throws IOException {
+			myLength = readBlock(myInput, myBuffer);
+			myPosition = 0;
+			myChain.apply(myBuffer, myLength, myScratch);
+			return myLength > 0;
+		}
+
+		public void close() throws IOException {
+			myInput.close();
+		}
+	}
+
+	// OutputStream that collects a block at a time, undoes the filters and
+	// writes the original bytes to the wrapped stream.
+	private static class UnfilteringOutputStream extends OutputStream {
+		// instance vars
+		private final OutputStream myOutput;
+		private final FilterChain myChain;
+		private final byte[] myBuffer;
+		private final byte[] myScratch;
+		private int myLength;
+
+		public UnfilteringOutputStream(OutputStream out, FilterChain chain) {
+			myOutput = out;
+			myChain = chain;
+			myBuffer = new byte[BLOCK_SIZE];
+			myScratch = new byte[BLOCK_SIZE];
+		}
+
+		public void write(int b) throws IOException {
+			myBuffer[myLength++] = (byte) b;
+			if (myLength == BLOCK_SIZE) {
+				writeBlock();
+			}
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				int n = Math.min(len, BLOCK_SIZE - myLength);
+				System.arraycopy(b, off, myBuffer, myLength, n);
+				myLength += n;
+				off += n;
+				len -= n;
+				if (myLength == BLOCK_SIZE) {
+					writeBlock();
+				}
+			}
+		}
+
+		// only the wrapped stream is flushed, a partial block can't be undone until
+		// it is complete.
+		public void flush() throws IOException {
+			myOutput.flush();
+		}
+
+		public void close() throws IOException {
+			if (myLength > 0) {
+				writeBlock();
+			}
+			myOutput.close();
+		}
+
+		// helper method undoes the filters on the buffered block and writes it.
+		private void writeBlock() throws IOException {
+			myChain.undo(myBuffer, myLength, myScratch);
+			myOutput.write(myBuffer, 0, myLength);
+			myLength = 0;
+		}
+	}
+}
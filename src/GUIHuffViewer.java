@@ -1,33 +1,30 @@
 import java.awt.BorderLayout;
 import java.awt.Font;
 import java.awt.event.ActionEvent;
-import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.function.Supplier;
 
 import javax.swing.AbstractAction;
+import javax.swing.AbstractListModel;
 import javax.swing.BorderFactory;
 import javax.swing.ButtonGroup;
+import javax.swing.JButton;
 import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
+import javax.swing.JList;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JRadioButtonMenuItem;
 import javax.swing.JScrollPane;
+import javax.swing.JSplitPane;
 import javax.swing.JTextArea;
 import javax.swing.JTextField;
-import javax.swing.ProgressMonitor;
-import javax.swing.ProgressMonitorInputStream;
+import javax.swing.Timer;
 
 /**
  * The GUI/View for Huffman coding assignment. Clients communicate
@@ -36,6 +33,13 @@ import javax.swing.ProgressMonitorInputStream;
  * almost certainly not work and generate null pointer problems because the view/GUI will
  * not have an associated model.
  * <P>
+ * Files are counted, compressed and uncompressed as jobs on a
+ * <code>HuffJobQueue</code>, so several can run at once while the GUI
+ * stays responsive. The jobs and their progress are listed under the
+ * output, where they can be cancelled. Give the view a model factory with
+ * <code>setModelFactory</code> to run every job on its own model;
+ * otherwise the jobs take turns with the model set by <code>setModel</code>.
+ * <P>
  * @author Owen Astrachan
  *  Minor changes by Mike Scott
  *
@@ -44,6 +48,8 @@ public class GUIHuffViewer extends JFrame implements IHuffViewer {
 
 	private static String HUFF_SUFFIX = ".hf";
 	private static String UNHUFF_SUFFIX = ".unhf";   
+	// how often the list of jobs is redrawn.
+	private static final int PROGRESS_MILLIS = 100;
 	private boolean myFast = true;
 
 
@@ -54,8 +60,10 @@ public class GUIHuffViewer extends JFrame implements IHuffViewer {
 	protected File myFile;
 	private boolean myForce;
 	private int myHeaderFormat;
-	private Thread myFirstFileThread;
-	private boolean myFirstReadingDone;
+	// makes a model for every job, or null to share myModel.
+	private Supplier<IHuffProcessor> myModelFactory;
+	private final HuffJobQueue myJobs = new HuffJobQueue(Runtime.getRuntime().availableProcessors());
+	private JobListModel myJobList;
 
 	protected static JFileChooser ourChooser = 
 			new JFileChooser(System.getProperties().getProperty("user.dir"));
@@ -70,12 +78,14 @@ public class GUIHuffViewer extends JFrame implements IHuffViewer {
 		myForce = false;
 		myHeaderFormat = IHuffProcessor.STORE_COUNTS;
 
-		panel.add(makeOutput(), BorderLayout.CENTER);
+		JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT, makeOutput(), makeJobs());
+		split.setResizeWeight(0.6);
+		panel.add(split, BorderLayout.CENTER);
 		panel.add(makeMessage(), BorderLayout.SOUTH);
 		makeMenus();
 
 		pack();
-		setSize(650, 400);
+		setSize(650, 550);
 		setLocation(200, 100);
 		setVisible(true);
 	}
@@ -91,6 +101,15 @@ public class GUIHuffViewer extends JFrame implements IHuffViewer {
 		myModel.setViewer(this);
 	}
 
+	/**
+	 * Makes a new model for every job, so jobs run at the same time. Without
+	 * a factory the jobs take turns with the model set by <code>setModel</code>.
+	 * @param factory makes the models, or null to share the model
+	 */
+	public void setModelFactory(Supplier<IHuffProcessor> factory) {
+		myModelFactory = factory;
+	}
+
 	protected JPanel makeMessage() {
 		JPanel p = new JPanel(new BorderLayout());
 		myMessage = new JTextField(30);
@@ -109,52 +128,62 @@ public class GUIHuffViewer extends JFrame implements IHuffViewer {
 
 	}
 
+	protected JPanel makeJobs() {
+		JPanel p = new JPanel(new BorderLayout());
+		myJobList = new JobListModel();
+		final JList<HuffJob> list = new JList<HuffJob>(myJobList);
+		p.setBorder(BorderFactory.createTitledBorder("jobs"));
+		p.add(new JScrollPane(list), BorderLayout.CENTER);
+
+		JPanel buttons = new JPanel();
+		buttons.add(new JButton(new AbstractAction("Cancel") {
+			public void actionPerformed(ActionEvent ev) {
+				for (HuffJob job : list.getSelectedValuesList()) {
+					job.cancel();
+				}
+			}
+		}));
+		buttons.add(new JButton(new AbstractAction("Cancel All") {
+			public void actionPerformed(ActionEvent ev) {
+				myJobs.cancelAll();
+			}
+		}));
+		buttons.add(new JButton(new AbstractAction("Clear Finished") {
+			public void actionPerformed(ActionEvent ev) {
+				myJobs.clearFinished();
+				list.clearSelection();
+			}
+		}));
+		p.add(buttons, BorderLayout.SOUTH);
+
+		// the jobs only add to counters as they run, the list is redrawn from
+		// them on a timer.
+		new Timer(PROGRESS_MILLIS, e -> myJobList.refresh()).start();
+		return p;
+	}
+
 	protected File doRead() {
 
 		int retval = ourChooser.showOpenDialog(null);
 		if (retval != JFileChooser.APPROVE_OPTION) {
 			return null;
 		}
-		showMessage("reading/initializing");
-
-
-
-		myFile = ourChooser.getSelectedFile();
-		ProgressMonitorInputStream temp = null;
-		if (myFast){
-			temp = getMonitorableStream(getFastByteReader(myFile),"counting/reading bits ...");
-		}
-		else {
-			temp = getMonitorableStream(myFile,"counting/reading bits ...");
-		}
-		final ProgressMonitorInputStream pmis = temp;
-		final ProgressMonitor progress = pmis.getProgressMonitor();
-		try {
-
+		File file = ourChooser.getSelectedFile();
+		submit(IHuffMetrics.Phase.PREPROCESS, file, null);
+		return file;
+	}
 
-			myFirstFileThread = new Thread() {
-				public void run() {
-					try {
-						myFirstReadingDone = false;
-						int saved = myModel.preprocessCompress(pmis, myHeaderFormat);
-						showMessage("saved: "+ saved +" bits");
-						myFirstReadingDone = true;
-					} catch (IOException e) {
-						showError("reading exception\n "+e);
-						//e.printStackTrace();
-					}
-					if (progress.isCanceled()) {
-						showError("reading cancelled");
-					}
-				}
-			};
-			myFirstFileThread.start();
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
-		File ret = myFile;
-		myFile = null;
-		return ret;
+	// helper method queues a job with the options chosen now, so changing them
+	// doesn't change jobs already queued.
+	private void submit(IHuffMetrics.Phase kind, File input, File output) {
+		IHuffProcessor model = myModelFactory != null ? myModelFactory.get() : myModel;
+		HuffJob job = new HuffJob(kind, input, output, model, this);
+		job.setHeaderFormat(myHeaderFormat);
+		job.setForce(myForce);
+		job.setInMemory(myFast);
+		myJobs.submit(job);
+		showMessage("queued " + job);
+		myJobList.refresh();
 	}
 
 	protected JMenu makeOptionsMenu() {
@@ -234,6 +263,7 @@ public class GUIHuffViewer extends JFrame implements IHuffViewer {
 
 		fileMenu.add(new AbstractAction("Quit") {
 			public void actionPerformed(ActionEvent ev) {
+				myJobs.close();
 				System.exit(0);
 			}
 		});
@@ -249,177 +279,57 @@ public class GUIHuffViewer extends JFrame implements IHuffViewer {
 	}
 
 	private void doDecode() {
-		File file = null;
-		showMessage("uncompressing");
-		try {
-			int retval = ourChooser.showOpenDialog(null);
-			if (retval != JFileChooser.APPROVE_OPTION) {
-				return;
-			}
-			file = ourChooser.getSelectedFile();
-			String name = file.getName();
-			String uname = name;
-			if (name.endsWith(HUFF_SUFFIX)) {
-				uname = name.substring(0,name.length() - HUFF_SUFFIX.length()) + UNHUFF_SUFFIX;
-			}
-			else {
-				uname = name + UNHUFF_SUFFIX;
-			}
-			String newName = JOptionPane.showInputDialog(this,
-					"Name of uncompressed file", uname);
-			if (newName == null) {
-				return;
-			}
-			String path = file.getCanonicalPath();
-
-			int pos = path.lastIndexOf(name);
-			newName = path.substring(0, pos) + newName;
-			final File newFile = new File(newName);
-			ProgressMonitorInputStream temp = null;
-			if (myFast){
-				temp = getMonitorableStream(getFastByteReader(file),"uncompressing bits ...");
-			}
-			else {
-				temp = getMonitorableStream(file, "uncompressing bits...");
-			}
-			final ProgressMonitorInputStream stream = temp;
-
-			final ProgressMonitor progress = stream.getProgressMonitor();
-			final OutputStream out = new FileOutputStream(newFile);
-			Thread fileReaderThread = new Thread() {
-				public void run() {
-					try {
-						myModel.uncompress(stream, out);
-					} catch (IOException e) {
-
-						cleanUp(newFile);
-						showError("could not uncompress\n "+e);
-						//e.printStackTrace();
-					}
-					if (progress.isCanceled()) {
-						cleanUp(newFile);
-						showError("reading cancelled");
-					}
-				}
-			};
-			fileReaderThread.start();
-		} catch (FileNotFoundException e) {
-			showError("could not open " + file.getName());
-			e.printStackTrace();
-		} catch (IOException e) {
-			showError("IOException, uncompression halted from viewer");
-			e.printStackTrace();
+		int retval = ourChooser.showOpenDialog(null);
+		if (retval != JFileChooser.APPROVE_OPTION) {
+			return;
+		}
+		File file = ourChooser.getSelectedFile();
+		String name = file.getName();
+		String uname = name;
+		if (name.endsWith(HUFF_SUFFIX)) {
+			uname = name.substring(0,name.length() - HUFF_SUFFIX.length()) + UNHUFF_SUFFIX;
+		}
+		else {
+			uname = name + UNHUFF_SUFFIX;
+		}
+		File newFile = getNewFile(file, "Name of uncompressed file", uname);
+		if (newFile != null) {
+			submit(IHuffMetrics.Phase.UNCOMPRESS, file, newFile);
 		}
 	}
 
 	private void doSave() {
-		myFile = doRead();
-		if (myFile == null){
+		int retval = ourChooser.showOpenDialog(null);
+		if (retval != JFileChooser.APPROVE_OPTION) {
 			return;
 		}
+		File file = ourChooser.getSelectedFile();
+		File newFile = getNewFile(file, "Name of compressed file", file.getName() + HUFF_SUFFIX);
+		if (newFile != null) {
+			// the job counts the file again itself, so it doesn't depend on an
+			// Open/Count job having finished.
+			submit(IHuffMetrics.Phase.COMPRESS, file, newFile);
+		}
+	}
 
-		String name = myFile.getName();
-		showMessage("compressing " + name);
-		String newName = JOptionPane.showInputDialog(this,
-				"Name of compressed file", name + HUFF_SUFFIX);
+	// helper method asks for the name of the file written from file, in the
+	// same directory.
+	// returns null if the user cancelled.
+	private File getNewFile(File file, String prompt, String suggested) {
+		String newName = JOptionPane.showInputDialog(this, prompt, suggested);
 		if (newName == null) {
-			return;
+			return null;
 		}
+		String name = file.getName();
 		String path = null;
 		try {
-			path = myFile.getCanonicalPath();
+			path = file.getCanonicalPath();
 		} catch (IOException e) {
 			showError("trouble with file canonicalizing");
-			return;
-		}
-		int pos = path.lastIndexOf(name);
-		newName = path.substring(0, pos) + newName;
-		final File file = new File(newName);
-		try {
-			final FileOutputStream out = new FileOutputStream(file);
-			ProgressMonitorInputStream  temp = null;
-			if (myFast){
-				temp = getMonitorableStream(getFastByteReader(myFile),"compressing bits...");
-			}
-			else {
-				temp = getMonitorableStream(myFile,"compressing bits ...");
-			}
-			final ProgressMonitorInputStream pmis = temp; 
-			final ProgressMonitor progress = pmis.getProgressMonitor();
-			Thread fileWriterThread = new Thread() {
-				public void run() {
-					try {
-						while (! myFirstReadingDone){
-							try {
-								sleep(100);
-							} catch (InterruptedException e) {
-								// what to do?
-								showError("Trouble in Thread " + e);
-							}
-						}
-						myModel.compress(pmis, out, myForce);
-					} catch (IOException e) {
-						showError("compression exception\n " + e);
-						cleanUp(file);
-						//e.printStackTrace();
-					}
-					if (progress.isCanceled()) {
-						showError("compression cancelled");
-						cleanUp(file);
-					}
-				}
-			};
-			fileWriterThread.start();
-		} catch (FileNotFoundException e) {
-			showError("could not open " + file.getName());
-			e.printStackTrace();
-		}
-		myFile = null;
-	}
-
-	private void cleanUp(File f) {
-		if (!f.delete()) {
-			showError("trouble deleting " + f.getName());
-		} else {
-			// do something here?
-		}
-	}
-
-	private ProgressMonitorInputStream getMonitorableStream(InputStream stream, String message) {
-
-
-		final ProgressMonitorInputStream pmis = new ProgressMonitorInputStream(
-				this, message, stream);
-
-		ProgressMonitor progress = pmis.getProgressMonitor();
-		progress.setMillisToDecideToPopup(1);
-		progress.setMillisToPopup(1);
-
-		return pmis;
-	}
-
-
-
-	private ProgressMonitorInputStream getMonitorableStream(File file,
-			String message) {
-		try {
-			FileInputStream stream = new FileInputStream(file);
-			if (stream == null){
-				System.out.println("null on "+file.getCanonicalPath());
-			}
-			final ProgressMonitorInputStream pmis = new ProgressMonitorInputStream(
-					this, message, stream);
-
-			ProgressMonitor progress = pmis.getProgressMonitor();
-			progress.setMillisToDecideToPopup(1);
-			progress.setMillisToPopup(1);
-
-			return pmis;
-		} catch (IOException e) {
-			showError("could not open " + file.getName());
-			e.printStackTrace();
 			return null;
 		}
+		int pos = path.lastIndexOf(name);
+		return new File(path.substring(0, pos) + newName);
 	}
 
 	/**
@@ -459,22 +369,34 @@ public class GUIHuffViewer extends JFrame implements IHuffViewer {
 				JOptionPane.INFORMATION_MESSAGE);
 	}
 
-	private ByteArrayInputStream getFastByteReader(File f){
-		ByteBuffer buffer = null;
-		try {
-			FileChannel channel = new FileInputStream(f).getChannel();
-			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
-			byte[] barray = new byte[buffer.limit()];
+	// ListModel of the jobs in myJobs. It is refreshed from the queue on the
+	// event thread, the jobs themselves are never changed by it.
+	private class JobListModel extends AbstractListModel<HuffJob> {
+		private static final long serialVersionUID = 1L;
+		private List<HuffJob> myShown = myJobs.getJobs();
+
+		public int getSize() {
+			return myShown.size();
+		}
+
+		public HuffJob getElementAt(int index) {
+			return myShown.get(index);
+		}
 
-			if (barray.length != channel.size()){               
-				showError(String.format("Reading %s error: lengths differ %d %ld\n",f.getName(),barray.length,channel.size()));
+		// method takes the jobs from the queue again and redraws them.
+		private void refresh() {
+			int oldSize = myShown.size();
+			myShown = myJobs.getJobs();
+			int size = myShown.size();
+			if (oldSize > size) {
+				fireIntervalRemoved(this, size, oldSize - 1);
+			} else if (oldSize < size) {
+				fireIntervalAdded(this, oldSize, size - 1);
+			}
+			if (size > 0) {
+				fireContentsChanged(this, 0, size - 1);
 			}
-			buffer.get(barray);
-			return new ByteArrayInputStream(barray);
-		} catch (IOException e) {
-			e.printStackTrace();
 		}
-		return null;
 	}
 
 }
@@ -6,8 +6,10 @@
 public class Huff {
 
     public static void main(String[] args){
-        IHuffViewer sv = new GUIHuffViewer("Huffman Compression");
+        GUIHuffViewer sv = new GUIHuffViewer("Huffman Compression");
         IHuffProcessor proc = new SimpleHuffProcessor();
         sv.setModel(proc);
+        // every job gets its own model, so several run at once.
+        sv.setModelFactory(SimpleHuffProcessor::new);
     }
 }
@@ -0,0 +1,728 @@
+//import statements:
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+// HuffBlock is one block of a file compressed in blocks. Every block has its
+// own tree, built from the frequencies of the chunks in the block. A block that
+// would be larger huffed than as it is is stored instead.
+//
+// A block starts at a byte boundary with a header of the block type
+// (BITS_PER_TYPE bits), the number of chunks in the block and the number of
+// bytes in the payload (BITS_PER_INT bits each). The payload of a HUFF block is
+// the header data for the tree followed by the code of every chunk, padded to a
+// byte boundary. The payload of a STORED block is the chunks themselves.
+// With FLAG_CHECKSUM the payload is followed by the CRC32C of the payload and
+// the CRC32C of the chunks (BITS_PER_INT bits each). The last block is
+// followed by the END type.
+public class HuffBlock {
+
+	// class constants:
+	// block types.
+	public static final int END = 0;
+	public static final int HUFF = 1;
+	public static final int STORED = 2;
+	// the largest number of chunks writeStored puts in one block.
+	public static final int MAX_STORED_LENGTH = 1 << 20;
+	// the largest number of chunks in any block. The writers never go past it, so
+	// a reader can reject a longer header before allocating room for the block.
+	public static final int MAX_LENGTH = 1 << 24;
+	// bits used to write the block type.
+	public static final int BITS_PER_TYPE = 8;
+	// bits in the header of a block.
+	public static final int HEADER_BITS = BITS_PER_TYPE + 2 * IHuffConstants.BITS_PER_INT;
+	// bits in the checksums after the payload of a checked block.
+	public static final int CHECKSUM_BITS = 2 * IHuffConstants.BITS_PER_INT;
+	private static final int BITS_PER_BYTE = 8;
+	private static final int BITS_PER_LONG = 64;
+	// bits looked up at once when decoding a buffer, longer codes are searched.
+	private static final int TABLE_BITS = 10;
+
+	// instance vars:
+	// frequencies of the chunks in this block.
+	private final int[] freq;
+	// number of chunks in this block.
+	private final int length;
+	// STORE_COUNTS or STORE_TREE.
+	private final int headerFormat;
+	private final HuffTree tree;
+	private final CodeBook codes;
+	// true if the chunks are written as they are.
+	private final boolean stored;
+	// true if the payload is followed by the checksums.
+	private final boolean checked;
+
+	// Constructor:
+	// freq: frequencies of the chunks in the block.
+	// headerFormat: STORE_COUNTS or STORE_TREE.
+	// pre: freq != null, freq.length == ALPH_SIZE
+	public HuffBlock(int[] freq, int headerFormat) {
+		this(freq, headerFormat, false);
+	}
+
+	// Constructor:
+	// freq: frequencies of the chunks in the block.
+	// headerFormat: STORE_COUNTS or STORE_TREE.
+	// checked: true if the block is written with its checksums, for files with
+	// FLAG_CHECKSUM.
+	// pre: freq != null, freq.length == ALPH_SIZE
+	public HuffBlock(int[] freq, int headerFormat, boolean checked) {
+		// check precon:
+		if (freq == null || freq.length != IHuffConstants.ALPH_SIZE) {
+			throw new IllegalArgumentException("invalid frequencies");
+		}
+		this.freq = freq;
+		this.headerFormat = headerFormat;
+		this.checked = checked;
+		int total = 0;
+		for (int f : freq) {
+			total += f;
+		}
+		length = total;
+		tree = HuffTree.fromFrequencies(freq, IHuffConstants.PSEUDO_EOF);
+		codes = tree.getCodeBook(IHuffConstants.ALPH_SIZE + 1);
+		// store the block if huffing doesn't make it smaller.
+		stored = getHuffPayloadByteSize() >= length;
+	}
+
+	// method returns the number of chunks in the block.
+	public int getLength() {
+		return length;
+	}
+
+	// method returns true if the block is stored rather than huffed.
+	public boolean isStored() {
+		return stored;
+	}
+
+	// method returns the number of bytes in the payload of the block.
+	public int getPayloadByteSize() {
+		if (stored) {
+			return length;
+		}
+		return getHuffPayloadByteSize();
+	}
+
+	// helper method returns the number of bytes in the payload if the block is
+	// huffed.
+	private int getHuffPayloadByteSize() {
+		long bits = tree.getHeaderBitSize(headerFormat, IHuffConstants.ALPH_SIZE) + codes.getEncodedBitSize(freq);
+		return (int) ((bits + BITS_PER_BYTE - 1) / BITS_PER_BYTE);
+	}
+
+	// method returns the number of bits write writes, including the block header
+	// and the checksums.
+	public long getBitSize() {
+		return HEADER_BITS + (long) getPayloadByteSize() * BITS_PER_BYTE + (checked ? CHECKSUM_BITS : 0);
+	}
+
+	// method writes the block.
+	// writer: BitOutputStream connected to the compressed file, at a byte
+	// boundary.
+	// reader: BitInputStream the chunks of the block are read from.
+	// pre: writer != null, reader != null
+	// post: getLength() chunks are read and the writer is at a byte boundary.
+	public void write(BitOutputStream writer, BitInputStream reader) throws IOException {
+		write(writer, reader, null, 0, 0);
+	}
+
+	// method writes the block and adds the sync points in it to a SeekTable.
+	// writer: BitOutputStream connected to the compressed file, at a byte
+	// boundary.
+	// reader: BitInputStream the chunks of the block are read from.
+	// table: the table the sync points are added to, or null.
+	// offset: byte offset of the block in the compressed file.
+	// start: index in the original data of the first chunk of the block.
+	// pre: writer != null, reader != null
+	// post: getLength() chunks are read and the writer is at a byte boundary.
+	public void write(BitOutputStream writer, BitInputStream reader, SeekTable table, long offset, long start)
+			throws IOException {
+		HuffEvents.Block event = HuffEvents.isRecording() ? new HuffEvents.Block() : null;
+		writeBlock(writer, reader, table, offset, start);
+		if (event != null) {
+			event.end();
+			if (event.shouldCommit()) {
+				event.encode = true;
+				event.stored = stored;
+				event.chunks = length;
+				event.payloadSize = getPayloadByteSize();
+				if (!stored) {
+					double[] lengths = HuffEvents.getCodeLengths(codes, freq);
+					event.minCodeLength = (int) lengths[0];
+					event.maxCodeLength = (int) lengths[1];
+					event.averageCodeLength = lengths[2];
+				}
+				event.commit();
+			}
+		}
+	}
+
+	// helper method writes the block, see write.
+	private void writeBlock(BitOutputStream writer, BitInputStream reader, SeekTable table, long offset, long start)
+			throws IOException {
+		if (checked) {
+			writeChecked(writer, reader, table, offset, start);
+			return;
+		}
+		writer.writeBits(BITS_PER_TYPE, stored ? STORED : HUFF);
+		writer.writeBits(IHuffConstants.BITS_PER_INT, length);
+		writer.writeBits(IHuffConstants.BITS_PER_INT, getPayloadByteSize());
+		// index in the block of the next sync point.
+		long next = Long.MAX_VALUE;
+		if (table != null) {
+			next = (start + table.getInterval() - 1) / table.getInterval() * table.getInterval() - start;
+		}
+		if (stored) {
+			for (; next < length; next += table.getInterval()) {
+				table.add(offset, next * BITS_PER_BYTE, (int) next);
+			}
+			copyChunks(reader, writer, length);
+			return;
+		}
+		tree.writeHeader(writer, headerFormat, freq);
+		// bits written to the payload so far, only counted for the sync points.
+		long bits = table == null ? 0 : tree.getHeaderBitSize(headerFormat, IHuffConstants.ALPH_SIZE);
+		// write the code of every chunk in the block.
+		for (int i = 0; i < length; i++) {
+			int inBits = reader.readBits(IHuffConstants.BITS_PER_WORD);
+			if (inBits == -1) {
+				throw new IOException("input ended before the end of the block");
+			}
+			if (table != null) {
+				if (i == next) {
+					table.add(offset, bits, i);
+					next += table.getInterval();
+				}
+				bits += codes.getLength(inBits);
+			}
+			codes.write(writer, inBits);
+		}
+		writer.alignToByte();
+	}
+
+	// helper method writes the block with its checksums. The checksums are found
+	// from the bytes, so the chunks are read into memory and the block is put
+	// together there first, see write.
+	private void writeChecked(BitOutputStream writer, BitInputStream reader, SeekTable table, long offset, long start)
+			throws IOException {
+		byte[] chunks = new byte[length];
+		for (int i = 0; i < length; i++) {
+			int inBits = reader.readBits(IHuffConstants.BITS_PER_WORD);
+			if (inBits == -1) {
+				throw new IOException("input ended before the end of the block");
+			}
+			chunks[i] = (byte) inBits;
+		}
+		ByteBuffer block = ByteBuffer.allocate((int) (getBitSize() / BITS_PER_BYTE));
+		write(ByteBuffer.wrap(chunks), block);
+		for (int i = 0; i < block.position(); i++) {
+			writer.writeBits(BITS_PER_BYTE, block.get(i) & 0xff);
+		}
+		if (table == null) {
+			return;
+		}
+		// the sync points, found the same way writeBlock finds them.
+		long interval = table.getInterval();
+		long next = (start + interval - 1) / interval * interval - start;
+		long bits = stored ? 0 : tree.getHeaderBitSize(headerFormat, IHuffConstants.ALPH_SIZE);
+		for (int i = 0; i < length && next < length; i++) {
+			if (i == next) {
+				table.add(offset, stored ? next * BITS_PER_BYTE : bits, i);
+				next += interval;
+			}
+			bits += codes.getLength(chunks[i] & 0xff);
+		}
+	}
+
+	// method writes the block from one buffer to another, without going through
+	// a bit stream for every chunk.
+	// in: the chunks of the block, from its position. Its position is moved past
+	// them.
+	// out: where the block is put, at its position.
+	// pre: in.remaining() >= getLength(), out.remaining() >= getBitSize() / 8
+	public void write(ByteBuffer in, ByteBuffer out) {
+		out.put((byte) (stored ? STORED : HUFF));
+		out.putInt(length);
+		out.putInt(getPayloadByteSize());
+		int chunkStart = in.position();
+		int payloadStart = out.position();
+		if (stored) {
+			ByteBuffer chunks = in.duplicate();
+			chunks.limit(chunks.position() + length);
+			out.put(chunks);
+			in.position(chunks.position());
+		} else {
+			writeCodes(in, out);
+		}
+		if (checked) {
+			int payloadChecksum = checksum(out, payloadStart, out.position());
+			out.putInt(payloadChecksum);
+			out.putInt(checksum(in, chunkStart, in.position()));
+		}
+	}
+
+	// helper method puts the payload of a HUFF block, see write.
+	private void writeCodes(ByteBuffer in, ByteBuffer out) {
+		// the tree header is collected in memory, then added to the codes.
+		BitBuffer header = new BitBuffer();
+		tree.writeHeader(header, headerFormat, freq);
+		BufferWriter writer = new BufferWriter(out);
+		long[] words = header.toLongArray();
+		long headerBits = header.getBitLength();
+		for (int i = 0; headerBits > 0; i++) {
+			int bits = (int) Math.min(headerBits, BITS_PER_LONG);
+			writer.put(words[i] >>> (BITS_PER_LONG - bits), bits);
+			headerBits -= bits;
+		}
+		int start = in.position();
+		int i = 0;
+		// the chunks are taken a long at a time.
+		for (; i + Long.BYTES <= length; i += Long.BYTES) {
+			long word = in.getLong(start + i);
+			for (int shift = BITS_PER_LONG - BITS_PER_BYTE; shift >= 0; shift -= BITS_PER_BYTE) {
+				int value = (int) (word >>> shift) & 0xff;
+				writer.put(codes.getCode(value), codes.getLength(value));
+			}
+		}
+		for (; i < length; i++) {
+			int value = in.get(start + i) & 0xff;
+			writer.put(codes.getCode(value), codes.getLength(value));
+		}
+		in.position(start + length);
+		writer.finish();
+	}
+
+	// method reads one block from a buffer and puts the decoded chunks in another,
+	// without going through a bit stream for every chunk.
+	// in: the compressed data, at the start of a block. Its position is moved past
+	// the block.
+	// out: where the chunks are put, from its position.
+	// headerFormat: STORE_COUNTS or STORE_TREE.
+	// pre: in holds the whole block, out has room for its chunks
+	// returns the number of chunks put, or -1 if the end marker was read.
+	public static int decode(ByteBuffer in, ByteBuffer out, int headerFormat) throws IOException {
+		return decode(in, out, headerFormat, false);
+	}
+
+	// method reads one block from a buffer, see above.
+	// checked: true if the block is followed by its checksums, which are checked
+	// before and after it is decoded.
+	// throws an IOException if a checksum doesn't match.
+	public static int decode(ByteBuffer in, ByteBuffer out, int headerFormat, boolean checked) throws IOException {
+		int type = in.get();
+		if (type == END) {
+			return -1;
+		}
+		int length = in.getInt();
+		int payload = in.getInt();
+		int trailer = checked ? CHECKSUM_BITS / BITS_PER_BYTE : 0;
+		checkHeader(type, length, payload);
+		if (payload > in.remaining() - trailer) {
+			throw new IOException("invalid block header");
+		}
+		int end = in.position() + payload;
+		// damaged codes can decode to anything, so the payload is checked first.
+		if (checked && checksum(in, in.position(), end) != in.getInt(end)) {
+			throw new IOException("block checksum doesn't match, the compressed data is damaged");
+		}
+		int start = out.position();
+		if (type == STORED) {
+			ByteBuffer chunks = in.duplicate();
+			chunks.limit(end);
+			out.put(chunks);
+		} else {
+			decodeCodes(in, end, out, headerFormat, length);
+		}
+		if (checked && checksum(out, start, start + length) != in.getInt(end + Integer.BYTES)) {
+			throw new IOException("decoded block doesn't match its checksum");
+		}
+		in.position(end + trailer);
+		return length;
+	}
+
+	// method checks the fields of a block header before anything is read or
+	// allocated for the block. A block is only huffed when that is smaller than
+	// storing it, so the payload is never longer than the chunks.
+	// throws an IOException if no writer writes such a block.
+	public static void checkHeader(int type, int length, int payload) throws IOException {
+		if ((type != HUFF && type != STORED) || length < 0 || length > MAX_LENGTH || payload < 0
+				|| payload > length || (type == STORED && payload != length)) {
+			throw new IOException("invalid block header");
+		}
+	}
+
+	// helper method puts the chunks of a HUFF block whose payload ends at end, see
+	// decode.
+	private static void decodeCodes(ByteBuffer in, int end, ByteBuffer out, int headerFormat, int length)
+			throws IOException {
+		BufferReader reader = new BufferReader(in, end);
+		HuffTree tree = HuffTree.readHeader(reader, headerFormat, IHuffConstants.ALPH_SIZE);
+		CodeTable table = new CodeTable(tree.getCodeBook(IHuffConstants.ALPH_SIZE + 1));
+		int start = out.position();
+		int i = 0;
+		// the chunks are put a long at a time.
+		for (; i + Long.BYTES <= length; i += Long.BYTES) {
+			long word = 0;
+			for (int k = 0; k < Long.BYTES; k++) {
+				word = word << BITS_PER_BYTE | table.next(reader);
+			}
+			out.putLong(start + i, word);
+		}
+		for (; i < length; i++) {
+			out.put(start + i, (byte) table.next(reader));
+		}
+		out.position(start + length);
+	}
+
+	// method returns the CRC32C of the bytes of buffer from start to end, without
+	// moving its position.
+	public static int checksum(ByteBuffer buffer, int start, int end) {
+		ByteBuffer bytes = buffer.duplicate();
+		bytes.position(start);
+		bytes.limit(end);
+		CRC32C crc = new CRC32C();
+		crc.update(bytes);
+		return (int) crc.getValue();
+	}
+
+	// method writes every chunk left in reader as STORED blocks of at most
+	// MAX_STORED_LENGTH chunks, without counting them first.
+	// writer: BitOutputStream connected to the compressed file, at a byte
+	// boundary.
+	// reader: BitInputStream the chunks are read from.
+	// pre: writer != null, reader != null
+	// returns the number of chunks written.
+	public static long writeStored(BitOutputStream writer, BitInputStream reader) throws IOException {
+		return writeStored(writer, reader, null, 0);
+	}
+
+	// method writes every chunk left in reader as STORED blocks and adds the
+	// sync points in them to a SeekTable.
+	// writer: BitOutputStream connected to the compressed file, at a byte
+	// boundary.
+	// reader: BitInputStream the chunks are read from.
+	// table: the table the sync points are added to, or null.
+	// offset: byte offset of the first block in the compressed file.
+	// pre: writer != null, reader != null
+	// returns the number of chunks written.
+	public static long writeStored(BitOutputStream writer, BitInputStream reader, SeekTable table, long offset)
+			throws IOException {
+		return writeStored(writer, reader, table, offset, false);
+	}
+
+	// method writes every chunk left in reader as STORED blocks, see above.
+	// checked: true if every block is followed by its checksums.
+	public static long writeStored(BitOutputStream writer, BitInputStream reader, SeekTable table, long offset,
+			boolean checked) throws IOException {
+		byte[] chunks = new byte[MAX_STORED_LENGTH];
+		long total = 0;
+		int length = 0;
+		do {
+			HuffOperation.checkInterrupted();
+			// the length of a block is written first, so the chunks are collected.
+			length = 0;
+			int inBits = 0;
+			while (length < chunks.length && (inBits = reader.readBits(IHuffConstants.BITS_PER_WORD)) != -1) {
+				chunks[length++] = (byte) inBits;
+			}
+			if (length > 0) {
+				HuffEvents.Block event = HuffEvents.isRecording() ? new HuffEvents.Block() : null;
+				writer.writeBits(BITS_PER_TYPE, STORED);
+				writer.writeBits(IHuffConstants.BITS_PER_INT, length);
+				writer.writeBits(IHuffConstants.BITS_PER_INT, length);
+				for (int i = 0; i < length; i++) {
+					writer.writeBits(IHuffConstants.BITS_PER_WORD, chunks[i] & 0xff);
+				}
+				if (checked) {
+					// the payload is the chunks, so the two checksums are the same.
+					int crc = checksum(ByteBuffer.wrap(chunks), 0, length);
+					writer.writeBits(IHuffConstants.BITS_PER_INT, crc);
+					writer.writeBits(IHuffConstants.BITS_PER_INT, crc);
+				}
+				if (table != null) {
+					// the sync points in this block.
+					for (long next = (total + table.getInterval() - 1) / table.getInterval() * table.getInterval()
+							- total; next < length; next += table.getInterval()) {
+						table.add(offset, next * BITS_PER_BYTE, (int) next);
+					}
+					offset += (HEADER_BITS + (checked ? CHECKSUM_BITS : 0)) / BITS_PER_BYTE + length;
+				}
+				if (event != null) {
+					event.end();
+					if (event.shouldCommit()) {
+						event.encode = true;
+						event.stored = true;
+						event.chunks = length;
+						event.payloadSize = length;
+						event.commit();
+					}
+				}
+				total += length;
+			}
+		} while (length == chunks.length);
+		return total;
+	}
+
+	// method returns the number of bits writeStored writes for length chunks.
+	public static long getStoredBitSize(long length) {
+		return getStoredBitSize(length, false);
+	}
+
+	// method returns the number of bits writeStored writes for length chunks,
+	// with or without the checksums.
+	public static long getStoredBitSize(long length, boolean checked) {
+		long blocks = (length + MAX_STORED_LENGTH - 1) / MAX_STORED_LENGTH;
+		return blocks * (HEADER_BITS + (checked ? CHECKSUM_BITS : 0)) + length * BITS_PER_BYTE;
+	}
+
+	// helper method copies length chunks from reader to writer.
+	private static void copyChunks(BitInputStream reader, BitOutputStream writer, int length) throws IOException {
+		for (int i = 0; i < length; i++) {
+			int inBits = reader.readBits(IHuffConstants.BITS_PER_WORD);
+			if (inBits == -1) {
+				throw new IOException("input ended before the end of the block");
+			}
+			writer.writeBits(IHuffConstants.BITS_PER_WORD, inBits);
+		}
+	}
+
+	// method writes the marker following the last block.
+	// pre: writer != null
+	public static void writeEnd(BitOutputStream writer) {
+		writer.writeBits(BITS_PER_TYPE, END);
+	}
+
+	// writer of bits to a ByteBuffer, 32 at a time.
+	private static class BufferWriter {
+		private final ByteBuffer myOut;
+		// the bits not yet put, in the rightmost myCount bits.
+		private long myBits;
+		private int myCount;
+
+		BufferWriter(ByteBuffer out) {
+			myOut = out;
+		}
+
+		// method writes the rightmost count bits of bits.
+		// pre: 0 <= count <= 64
+		void put(long bits, int count) {
+			if (count > IHuffConstants.BITS_PER_INT) {
+				put(bits >>> IHuffConstants.BITS_PER_INT, count - IHuffConstants.BITS_PER_INT);
+				count = IHuffConstants.BITS_PER_INT;
+			}
+			if (count == 0) {
+				return;
+			}
+			// fewer than 32 bits are waiting, so the new ones always fit.
+			myBits = myBits << count | bits & (-1L >>> (BITS_PER_LONG - count));
+			myCount += count;
+			if (myCount >= IHuffConstants.BITS_PER_INT) {
+				myCount -= IHuffConstants.BITS_PER_INT;
+				myOut.putInt((int) (myBits >>> myCount));
+			}
+		}
+
+		// method puts the bits left, padded with zeroes to a byte boundary.
+		void finish() {
+			while (myCount > 0) {
+				int bits = Math.min(myCount, BITS_PER_BYTE);
+				myCount -= bits;
+				myOut.put((byte) ((myBits >>> myCount) << (BITS_PER_BYTE - bits)));
+			}
+		}
+	}
+
+	// table the codes of a block are decoded with. Codes of up to TABLE_BITS bits
+	// are looked up, longer ones are searched for.
+	private static class CodeTable {
+		private final CodeBook myCodes;
+		// myTable[bits] is the value and the length of the code starting with the
+		// next TABLE_BITS bits, 0 if that code is longer.
+		private final int[] myTable = new int[1 << TABLE_BITS];
+		// the values with longer codes.
+		private final int[] myLongValues;
+
+		CodeTable(CodeBook codes) throws IOException {
+			myCodes = codes;
+			int longCodes = 0;
+			for (int value = 0; value < codes.getAlphabetSize(); value++) {
+				if (codes.hasCode(value)) {
+					int bits = codes.getLength(value);
+					if (bits == 0) {
+						throw new IOException("invalid tree in block");
+					}
+					if (bits <= TABLE_BITS) {
+						int first = (int) codes.getCode(value) << (TABLE_BITS - bits);
+						for (int i = 0; i < 1 << (TABLE_BITS - bits); i++) {
+							myTable[first + i] = value << BITS_PER_BYTE | bits;
+						}
+					} else {
+						longCodes++;
+					}
+				}
+			}
+			myLongValues = new int[longCodes];
+			for (int value = 0, i = 0; value < codes.getAlphabetSize(); value++) {
+				if (codes.hasCode(value) && codes.getLength(value) > TABLE_BITS) {
+					myLongValues[i++] = value;
+				}
+			}
+		}
+
+		// method reads one code and returns its value.
+		// throws an IOException if the bits run out or lead to the pseudoEOF.
+		int next(BufferReader reader) throws IOException {
+			reader.fill();
+			int entry = myTable[(int) (reader.myWindow >>> (BITS_PER_LONG - TABLE_BITS))];
+			int value = entry >>> BITS_PER_BYTE;
+			int bits = entry & 0xff;
+			if (entry == 0) {
+				value = -1;
+				// a block has fewer than 2^31 chunks, so no code is longer than the
+				// 56 bits fill leaves in the window.
+				for (int v : myLongValues) {
+					int n = myCodes.getLength(v);
+					if (n <= reader.myAvailable && reader.myWindow >>> (BITS_PER_LONG - n) == myCodes.getCode(v)) {
+						value = v;
+						bits = n;
+						break;
+					}
+				}
+			}
+			if (value == -1 || value == IHuffConstants.PSEUDO_EOF || bits > reader.myAvailable) {
+				throw new IOException("compressed block ends early");
+			}
+			reader.skip(bits);
+			return value;
+		}
+	}
+
+	// reader of bits from a ByteBuffer, a long at a time where it can.
+	private static class BufferReader implements BitSource {
+		private final ByteBuffer myIn;
+		// index of the next byte to read, and of the byte after the last one.
+		private int myPosition;
+		private final int myEnd;
+		// the next bits, from the leftmost bit, and how many of them there are.
+		private long myWindow;
+		private int myAvailable;
+
+		BufferReader(ByteBuffer in, int end) {
+			myIn = in;
+			myPosition = in.position();
+			myEnd = end;
+		}
+
+		// method adds bytes to the window until it holds at least 56 bits or the
+		// data ends.
+		void fill() {
+			if (myAvailable >= BITS_PER_LONG - BITS_PER_BYTE) {
+				return;
+			}
+			if (myPosition + Long.BYTES <= myEnd) {
+				// take the whole bytes that fit below the bits already there.
+				int bytes = (BITS_PER_LONG - 1 - myAvailable) / BITS_PER_BYTE;
+				int bits = bytes * BITS_PER_BYTE;
+				long next = myIn.getLong(myPosition) >>> myAvailable;
+				myWindow |= next & ~(-1L >>> (myAvailable + bits));
+				myAvailable += bits;
+				myPosition += bytes;
+			} else {
+				while (myAvailable < BITS_PER_LONG - BITS_PER_BYTE && myPosition < myEnd) {
+					myWindow |= (myIn.get(myPosition++) & 0xffL) << (BITS_PER_LONG - BITS_PER_BYTE - myAvailable);
+					myAvailable += BITS_PER_BYTE;
+				}
+			}
+		}
+
+		// method drops the next count bits.
+		// pre: count <= myAvailable
+		void skip(int count) {
+			myWindow = count == BITS_PER_LONG ? 0 : myWindow << count;
+			myAvailable -= count;
+		}
+
+		public int readBits(int howManyBits) {
+			fill();
+			if (howManyBits > myAvailable) {
+				return -1;
+			}
+			int result = (int) (myWindow >>> (BITS_PER_LONG - howManyBits));
+			skip(howManyBits);
+			return result;
+		}
+	}
+
+	// method reads one block and writes the decoded chunks.
+	// reader: BitInputStream connected to the compressed file, at a byte boundary.
+	// writer: where the decoded chunks are written.
+	// headerFormat: STORE_COUNTS or STORE_TREE.
+	// pre: reader != null, writer != null
+	// returns the number of chunks written, or -1 if the end marker was read.
+	public static int decode(BitInputStream reader, BitOutputStream writer, int headerFormat) throws IOException {
+		return decode(reader, writer, headerFormat, false);
+	}
+
+	// method reads one block and writes the decoded chunks, see above.
+	// checked: true if the block is followed by its checksums. The block is then
+	// read into memory and decoded there so they can be checked.
+	// throws an IOException if a checksum doesn't match.
+	public static int decode(BitInputStream reader, BitOutputStream writer, int headerFormat, boolean checked)
+			throws IOException {
+		HuffEvents.Block event = HuffEvents.isRecording() ? new HuffEvents.Block() : null;
+		int type = reader.readBits(BITS_PER_TYPE);
+		if (type == END) {
+			return -1;
+		}
+		int length = reader.readBits(IHuffConstants.BITS_PER_INT);
+		int payload = reader.readBits(IHuffConstants.BITS_PER_INT);
+		checkHeader(type, length, payload);
+		if (checked) {
+			decodeChecked(reader, writer, headerFormat, type, length, payload);
+		} else if (type == STORED) {
+			copyChunks(reader, writer, length);
+		} else {
+			HuffTree tree = HuffTree.readHeader(reader, headerFormat, IHuffConstants.ALPH_SIZE);
+			for (int i = 0; i < length; i++) {
+				int value = tree.decode(reader);
+				if (value == -1 || value == IHuffConstants.PSEUDO_EOF) {
+					throw new IOException("compressed block ends early");
+				}
+				writer.writeBits(IHuffConstants.BITS_PER_WORD, value);
+			}
+			reader.alignToByte();
+		}
+		if (event != null) {
+			event.end();
+			if (event.shouldCommit()) {
+				event.stored = type == STORED;
+				event.chunks = length;
+				event.payloadSize = payload & 0xffffffffL;
+				event.commit();
+			}
+		}
+		return length;
+	}
+
+	// helper method reads the payload and checksums of a block whose header has
+	// been read, checks and decodes them in memory and writes the chunks.
+	private static void decodeChecked(BitInputStream reader, BitOutputStream writer, int headerFormat, int type,
+			int length, int payload) throws IOException {
+		checkHeader(type, length, payload);
+		ByteBuffer block = ByteBuffer.allocate(HEADER_BITS / BITS_PER_BYTE + payload + CHECKSUM_BITS / BITS_PER_BYTE);
+		block.put((byte) type).putInt(length).putInt(payload);
+		while (block.hasRemaining()) {
+			int inBits = reader.readBits(BITS_PER_BYTE);
+			if (inBits == -1) {
+				throw new IOException("compressed block ends early");
+			}
+			block.put((byte) inBits);
+		}
+		block.flip();
+		byte[] chunks = new byte[length];
+		decode(block, ByteBuffer.wrap(chunks), headerFormat, true);
+		for (byte chunk : chunks) {
+			writer.writeBits(IHuffConstants.BITS_PER_WORD, chunk & 0xff);
+		}
+	}
+}
@@ -0,0 +1,353 @@
+//import statements:
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+// HuffCLI is the command line version of Huff. It never loads the AWT or Swing
+// classes, so it starts quickly and runs on machines without a display.
+//
+// java HuffCLI c|d|t [options] [file ...]
+// c  compress each file to file.hf
+// d  uncompress each file.hf to file
+// t  test that each file.hf uncompresses and its checksums match, nothing is
+//    written
+// With no files, or the file -, standard in is read and the result is written
+// to standard out. Input files are never removed.
+//
+// -c        write to standard out instead of to files
+// -f        write over output files that already exist
+// -v        print the size of each file written
+// -j n      process n files at a time
+// --counts  write the count header format instead of the tree format
+// --stats   print the time spent in each phase to standard error
+// --pipeline  read and write each file on threads of their own while it is
+//           compressed
+// --verify  decode each file as it is compressed and check it against the
+//           original
+public class HuffCLI {
+
+	// class constants:
+	private static final String HUFF_SUFFIX = ".hf";
+	private static final String STDIN = "-";
+	// the most bytes of standard in kept in memory while it is compressed, the
+	// rest goes to a temp file.
+	private static final int STDIN_MEMORY = 1 << 24;
+	// exit status when a file fails and when the arguments are wrong.
+	private static final int EXIT_FAILED = 1;
+	private static final int EXIT_USAGE = 2;
+
+	// instance vars:
+	// c, d or t.
+	private char myCommand;
+	private boolean myToStdout;
+	private boolean myOverwrite;
+	private boolean myVerbose;
+	private boolean myPipelined;
+	private boolean myVerify;
+	private int myThreads = 1;
+	private int myHeaderFormat = IHuffConstants.STORE_TREE;
+	// the phases of every file, null unless --stats is given.
+	private MetricsRecorder myMetrics;
+	private final List<String> myFiles = new ArrayList<>();
+	// true once any file has failed.
+	private boolean myFailed;
+
+	public static void main(String[] args) {
+		HuffCLI cli = new HuffCLI();
+		String error = cli.parse(args);
+		if (error != null) {
+			System.err.println("huff: " + error);
+			System.err.println("usage: huff c|d|t [-c] [-f] [-v] [-j n] [--counts] [--stats] [--pipeline] [--verify] [file ...]");
+			System.exit(EXIT_USAGE);
+		}
+		cli.run();
+		if (cli.myMetrics != null) {
+			System.err.print(cli.myMetrics);
+		}
+		System.exit(cli.myFailed ? EXIT_FAILED : 0);
+	}
+
+	// helper method reads the arguments.
+	// returns a message if they are wrong, null otherwise.
+	private String parse(String[] args) {
+		if (args.length == 0) {
+			return "missing command";
+		}
+		String command = args[0];
+		if (command.equals("c") || command.equals("compress")) {
+			myCommand = 'c';
+		} else if (command.equals("d") || command.equals("decompress")) {
+			myCommand = 'd';
+		} else if (command.equals("t") || command.equals("test")) {
+			myCommand = 't';
+		} else {
+			return "unknown command " + command;
+		}
+		boolean options = true;
+		for (int i = 1; i < args.length; i++) {
+			String arg = args[i];
+			if (options && arg.equals("--")) {
+				options = false;
+			} else if (options && arg.equals("-c")) {
+				myToStdout = true;
+			} else if (options && arg.equals("-f")) {
+				myOverwrite = true;
+			} else if (options && arg.equals("-v")) {
+				myVerbose = true;
+			} else if (options && arg.equals("--counts")) {
+				myHeaderFormat = IHuffConstants.STORE_COUNTS;
+			} else if (options && arg.equals("--stats")) {
+				myMetrics = new MetricsRecorder();
+			} else if (options && arg.equals("--pipeline")) {
+				myPipelined = true;
+			} else if (options && arg.equals("--verify")) {
+				myVerify = true;
+			} else if (options && arg.equals("-j")) {
+				if (i + 1 == args.length) {
+					return "-j needs a number";
+				}
+				try {
+					myThreads = Integer.parseInt(args[++i]);
+				} catch (NumberFormatException e) {
+					return "-j needs a number";
+				}
+				if (myThreads < 1) {
+					return "-j needs a number > 0";
+				}
+			} else if (options && arg.startsWith("-") && !arg.equals(STDIN)) {
+				return "unknown option " + arg;
+			} else {
+				myFiles.add(arg);
+			}
+		}
+		if (myFiles.isEmpty()) {
+			myFiles.add(STDIN);
+		}
+		if (myCommand == 'c' && myToStdout && myFiles.size() > 1) {
+			return "only one file can be compressed to standard out";
+		}
+		return null;
+	}
+
+	// helper method processes every file.
+	private void run() {
+		if (myThreads > 1 && !myToStdout && myCommand != 't' && !myFiles.contains(STDIN)) {
+			runBatch();
+			return;
+		}
+		for (String name : myFiles) {
+			try {
+				if (name.equals(STDIN)) {
+					runStream();
+				} else {
+					runFile(new File(name));
+				}
+			} catch (IOException | RuntimeException e) {
+				fail(name, e.getMessage() != null ? e.getMessage() : e.toString());
+			}
+		}
+	}
+
+	// helper method reads standard in and writes the result to standard out.
+	private void runStream() throws IOException {
+		InputStream in = new FileInputStream(FileDescriptor.in);
+		OutputStream out = new FileOutputStream(FileDescriptor.out);
+		if (myCommand == 'c') {
+			// standard in can't be read twice, so the processor keeps a copy.
+			compress(in, null, out, STDIN);
+		} else if (myCommand == 't') {
+			test(in, STDIN);
+		} else {
+			uncompress(in, out, STDIN);
+		}
+		out.flush();
+	}
+
+	// helper method compresses, uncompresses or tests one file.
+	private void runFile(File f) throws IOException {
+		if (!f.isFile()) {
+			fail(f.getPath(), f.exists() ? "not a regular file" : "no such file");
+			return;
+		}
+		if (myCommand == 'c' && f.getName().endsWith(HUFF_SUFFIX)) {
+			fail(f.getPath(), "already has the " + HUFF_SUFFIX + " suffix");
+			return;
+		}
+		if (myCommand != 'c' && !f.getName().endsWith(HUFF_SUFFIX)) {
+			fail(f.getPath(), "doesn't have the " + HUFF_SUFFIX + " suffix");
+			return;
+		}
+		if (myCommand == 't') {
+			try (InputStream in = new FileInputStream(f)) {
+				if (test(in, f.getPath()) && myVerbose) {
+					System.err.println(f.getPath() + ": OK");
+				}
+			}
+			return;
+		}
+		if (myToStdout) {
+			OutputStream out = new FileOutputStream(FileDescriptor.out);
+			if (myCommand == 'c') {
+				try (InputStream first = new FileInputStream(f); InputStream second = new FileInputStream(f)) {
+					compress(first, second, out, f.getPath());
+				}
+			} else {
+				try (InputStream in = new FileInputStream(f)) {
+					uncompress(in, out, f.getPath());
+				}
+			}
+			out.flush();
+			return;
+		}
+		File target = getOutputFile(f);
+		if (target.exists() && !myOverwrite) {
+			fail(f.getPath(), target.getPath() + " already exists, use -f to write over it");
+			return;
+		}
+		boolean ok = false;
+		try (InputStream in = new FileInputStream(f); OutputStream out = new FileOutputStream(target)) {
+			if (myCommand == 'c') {
+				try (InputStream second = new FileInputStream(f)) {
+					ok = compress(in, second, out, f.getPath());
+				}
+			} else {
+				ok = uncompress(in, out, f.getPath());
+			}
+		} finally {
+			if (!ok) {
+				target.delete();
+			}
+		}
+		if (ok && myVerbose) {
+			System.err.println(f.getPath() + ": " + f.length() + " -> " + target.length() + " bytes, "
+					+ target.getPath());
+		}
+	}
+
+	// helper method processes the files with a BatchEngine, myThreads at a time.
+	private void runBatch() {
+		List<File> files = new ArrayList<>();
+		for (String name : myFiles) {
+			File f = new File(name);
+			if (!f.isFile()) {
+				fail(name, f.exists() ? "not a regular file" : "no such file");
+			} else if (myCommand == 'c' && f.getName().endsWith(HUFF_SUFFIX)) {
+				fail(name, "already has the " + HUFF_SUFFIX + " suffix");
+			} else if (myCommand == 'd' && !f.getName().endsWith(HUFF_SUFFIX)) {
+				fail(name, "doesn't have the " + HUFF_SUFFIX + " suffix");
+			} else if (getOutputFile(f).exists() && !myOverwrite) {
+				fail(name, getOutputFile(f).getPath() + " already exists, use -f to write over it");
+			} else {
+				files.add(f);
+			}
+		}
+		try (BatchEngine engine = new BatchEngine(myThreads, Runtime.getRuntime().maxMemory() / 4)) {
+			engine.setHeaderFormat(myHeaderFormat);
+			engine.setForce(true);
+			engine.setVerify(myVerify);
+			engine.setUncompressedSuffix("");
+			engine.setMetrics(myMetrics);
+			boolean ok = myCommand == 'c' ? engine.compressAll(files) : engine.uncompressAll(files);
+			for (String error : engine.getErrors()) {
+				System.err.println("huff: " + error);
+			}
+			myFailed |= !ok;
+			if (myVerbose) {
+				System.err.println(engine.getFiles() + " files, " + engine.getBytesRead() + " -> "
+						+ engine.getBytesWritten() + " bytes");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			fail("huff", "interrupted");
+		}
+	}
+
+	// helper method compresses the data read from first (counted) and second
+	// (written) to out. If second is null first is read once and kept for the
+	// write. Data is always written, data that doesn't compress is stored with a
+	// few bytes of header.
+	// returns true if it worked.
+	private boolean compress(InputStream first, InputStream second, OutputStream out, String name)
+			throws IOException {
+		SimpleHuffProcessor huffer = new SimpleHuffProcessor();
+		ConsoleViewer viewer = new ConsoleViewer(name);
+		huffer.setViewer(viewer);
+		huffer.setMetrics(myMetrics);
+		huffer.setPipelined(myPipelined);
+		huffer.setVerify(myVerify);
+		if (second == null) {
+			huffer.setRetainInput(STDIN_MEMORY);
+		}
+		huffer.preprocessCompress(first, myHeaderFormat);
+		huffer.compress(second, out, true);
+		return !viewer.myFailed;
+	}
+
+	// helper method uncompresses in to out.
+	// returns true if it worked.
+	private boolean uncompress(InputStream in, OutputStream out, String name) throws IOException {
+		SimpleHuffProcessor huffer = new SimpleHuffProcessor();
+		ConsoleViewer viewer = new ConsoleViewer(name);
+		huffer.setViewer(viewer);
+		huffer.setMetrics(myMetrics);
+		huffer.uncompress(in, out);
+		return !viewer.myFailed;
+	}
+
+	// helper method checks that in uncompresses without writing it anywhere.
+	// returns true if it does.
+	private boolean test(InputStream in, String name) throws IOException {
+		SimpleHuffProcessor huffer = new SimpleHuffProcessor();
+		ConsoleViewer viewer = new ConsoleViewer(name);
+		huffer.setViewer(viewer);
+		huffer.setMetrics(myMetrics);
+		huffer.test(in);
+		return !viewer.myFailed;
+	}
+
+	// helper method returns the file written for f.
+	private File getOutputFile(File f) {
+		String path = f.getPath();
+		if (myCommand == 'c') {
+			return new File(path + HUFF_SUFFIX);
+		}
+		return new File(path.substring(0, path.length() - HUFF_SUFFIX.length()));
+	}
+
+	// helper method reports a file that failed.
+	private void fail(String name, String message) {
+		System.err.println("huff: " + name + ": " + message);
+		myFailed = true;
+	}
+
+	// IHuffViewer that prints errors to standard error, since standard out may
+	// be the compressed data.
+	private class ConsoleViewer implements IHuffViewer {
+		private final String myName;
+		private boolean myFailed;
+
+		public ConsoleViewer(String name) {
+			myName = name;
+		}
+
+		public void setModel(IHuffProcessor model) {
+		}
+
+		public void update(String s) {
+		}
+
+		public void showMessage(String s) {
+		}
+
+		public void showError(String s) {
+			myFailed = true;
+			fail(myName, s);
+		}
+	}
+}
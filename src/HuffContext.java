@@ -0,0 +1,185 @@
+//import statements:
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// HuffContext compresses and uncompresses payloads held in byte arrays without
+// allocating anything once it is warmed up, for servers that compress many
+// small messages. The counts, the tree, the code book, the bits and the output
+// buffer are kept from call to call, the tree and code book are built again in
+// place and the bits are packed into a BitBuffer instead of through streams.
+// Each thread uses its own context:
+//
+// HuffContext context = HuffContext.get();
+// int size = context.compress(data, 0, data.length, STORE_TREE);
+// out.write(context.getBuffer(), 0, size);
+//
+// The data is written with a single tree and the number of chunks in the
+// header by the same HuffTree and CodeBook code a Compressor uses, so the
+// output is the same as a Compressor's without blocks or filters and any
+// Decompressor reads it. uncompress reads those files itself and passes any
+// other file to a HuffEngine, which allocates as usual. The buffers only grow
+// when a payload is larger than any before it.
+public class HuffContext {
+
+	// class constants:
+	private static final int INITIAL_CAPACITY = 1 << 12;
+	private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+	private static final ThreadLocal<HuffContext> THREAD_CONTEXT = ThreadLocal.withInitial(HuffContext::new);
+	// reads files this context doesn't read itself.
+	private static final HuffEngine FALLBACK = new HuffEngine();
+
+	// instance vars:
+	private final int[] myFreq = new int[IHuffConstants.ALPH_SIZE];
+	private final HuffTree myTree = new HuffTree(IHuffConstants.PSEUDO_EOF);
+	private final CodeBook myCodes = myTree.getCodeBook(IHuffConstants.ALPH_SIZE + 1);
+	// the compressed data being written or read.
+	private final BitBuffer myBits = new BitBuffer();
+	// the output of the last call, and a ByteBuffer over it.
+	private byte[] myBuffer = new byte[INITIAL_CAPACITY];
+	private ByteBuffer myOutput = ByteBuffer.wrap(myBuffer);
+	private int mySize;
+
+	// method returns the context of the current thread, made the first time.
+	public static HuffContext get() {
+		return THREAD_CONTEXT.get();
+	}
+
+	// method forgets the last payload. compress and uncompress call it first, the
+	// buffers are kept.
+	public void reset() {
+		for (int i = 0; i < myFreq.length; i++) {
+			myFreq[i] = 0;
+		}
+		myBits.clear();
+		mySize = 0;
+	}
+
+	// method returns the buffer holding the output of the last call, valid until
+	// the next one.
+	public byte[] getBuffer() {
+		return myBuffer;
+	}
+
+	// method returns the number of bytes of the buffer the last call wrote.
+	public int getSize() {
+		return mySize;
+	}
+
+	// method compresses len bytes of data starting at off into the buffer.
+	// headerFormat: STORE_COUNTS or STORE_TREE.
+	// pre: data != null, off and len are in data
+	// returns the number of bytes written to the buffer.
+	public int compress(byte[] data, int off, int len, int headerFormat) {
+		// check precon:
+		if (data == null || off < 0 || len < 0 || off + len > data.length) {
+			throw new IllegalArgumentException("data can't be null and off and len must be in data");
+		}
+		reset();
+		headerFormat = headerFormat == IHuffConstants.STORE_COUNTS ? IHuffConstants.STORE_COUNTS
+				: IHuffConstants.STORE_TREE;
+		for (int i = off; i < off + len; i++) {
+			myFreq[data[i] & 0xff]++;
+		}
+		myTree.build(myFreq, IHuffConstants.PSEUDO_EOF);
+		myTree.fillCodeBook(myCodes);
+		myBits.writeBits(IHuffConstants.BITS_PER_INT, IHuffConstants.MAGIC_NUMBER);
+		myBits.writeBits(IHuffConstants.BITS_PER_INT, headerFormat | IHuffConstants.FLAG_LENGTH);
+		myBits.writeVarLong(len);
+		myTree.writeHeader(myBits, headerFormat, myFreq);
+		for (int i = off; i < off + len; i++) {
+			myCodes.write(myBits, data[i] & 0xff);
+		}
+		ensureCapacity(myBits.getByteLength());
+		myOutput.clear();
+		mySize = myBits.writeTo(myOutput);
+		return mySize;
+	}
+
+	// method uncompresses len bytes of compressed data starting at off into the
+	// buffer.
+	// pre: data != null, off and len are in data
+	// returns the number of bytes written to the buffer.
+	// throws an IOException if the data is not compressed or ends early.
+	public int uncompress(byte[] data, int off, int len) throws IOException {
+		// check precon:
+		if (data == null || off < 0 || len < 0 || off + len > data.length) {
+			throw new IllegalArgumentException("data can't be null and off and len must be in data");
+		}
+		reset();
+		myBits.load(data, off, len);
+		if (myBits.readBits(IHuffConstants.BITS_PER_INT) != IHuffConstants.MAGIC_NUMBER) {
+			throw new IOException("File not compressed");
+		}
+		int headerValue = myBits.readBits(IHuffConstants.BITS_PER_INT);
+		int headerFormat = headerValue & IHuffConstants.HEADER_FORMAT_MASK;
+		int flags = headerValue & ~IHuffConstants.HEADER_FORMAT_MASK;
+		// filters, blocks and anything newer are left to the engine.
+		if ((flags & ~IHuffConstants.FLAG_LENGTH) != 0
+				|| (headerFormat != IHuffConstants.STORE_COUNTS && headerFormat != IHuffConstants.STORE_TREE)) {
+			return uncompressOther(data, off, len);
+		}
+		long length = -1;
+		if ((flags & IHuffConstants.FLAG_LENGTH) != 0) {
+			length = myBits.readVarLong();
+			if (length > MAX_CAPACITY) {
+				throw new IOException("too long for a byte array: " + length);
+			}
+		}
+		myTree.read(myBits, headerFormat, IHuffConstants.ALPH_SIZE, myFreq);
+		// every chunk has a code of a bit at least, so a longer length is damaged
+		// and the buffer isn't grown for it.
+		if (length > myBits.getBitsLeft()) {
+			throw new IOException("compressed data ends early");
+		}
+		if (length != -1) {
+			ensureCapacity(length);
+		}
+		// decode every chunk, or up to the pseudoEOF if the length isn't known.
+		while (length == -1 || mySize < length) {
+			int value = myTree.decode(myBits);
+			if (value == -1) {
+				throw new IOException("compressed data ends early");
+			}
+			if (value == IHuffConstants.PSEUDO_EOF) {
+				if (length != -1) {
+					throw new IOException("compressed data ends early");
+				}
+				break;
+			}
+			if (mySize == myBuffer.length) {
+				ensureCapacity((long) mySize * 2);
+			}
+			myBuffer[mySize++] = (byte) value;
+		}
+		return mySize;
+	}
+
+	// helper method uncompresses a file this context doesn't read with the
+	// engine, copying the result to the buffer.
+	private int uncompressOther(byte[] data, int off, int len) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(INITIAL_CAPACITY, 2 * len));
+		FALLBACK.decode(new ByteArrayInputStream(data, off, len), out);
+		reset();
+		ensureCapacity(out.size());
+		byte[] result = out.toByteArray();
+		System.arraycopy(result, 0, myBuffer, 0, result.length);
+		mySize = result.length;
+		return mySize;
+	}
+
+	// helper method makes the buffer hold at least capacity bytes, keeping what
+	// is in it.
+	private void ensureCapacity(long capacity) {
+		if (capacity > myBuffer.length) {
+			if (capacity > MAX_CAPACITY) {
+				throw new IllegalArgumentException("too large for a byte array: " + capacity);
+			}
+			byte[] larger = new byte[(int) Math.max(capacity, Math.min(MAX_CAPACITY, (long) myBuffer.length * 2))];
+			System.arraycopy(myBuffer, 0, larger, 0, mySize);
+			myBuffer = larger;
+			myOutput = ByteBuffer.wrap(myBuffer);
+		}
+	}
+}
@@ -0,0 +1,218 @@
+//import statements:
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+// HuffEngine compresses and uncompresses data without keeping anything between
+// calls, for servers that compress on a pool of threads. analyze counts the
+// data and returns a Compressor, which holds the code book, the blocks and
+// everything the header is written from and never changes. encode and decode
+// only use their arguments. The options are set when the engine is created,
+// so one engine may be shared by every thread without locks:
+//
+// Compressor plan = engine.analyze(new FileInputStream(f), STORE_TREE);
+// engine.encode(plan, new FileInputStream(f), out);
+//
+// SimpleHuffProcessor is the IHuffProcessor over an engine, keeping the
+// Compressor between preprocessCompress and compress.
+public class HuffEngine {
+
+	// instance vars:
+	// the filters applied before counting, null to choose them from a sample of
+	// each input.
+	private final FilterChain myFilters;
+	// the flags, sync interval and listener every Compressor is made with, the
+	// filters are added for each input.
+	private final Compressor.Options myOptions;
+	// true if a sample of unfiltered data is checked before it is counted.
+	private final boolean myCheckSamples;
+	// listener the phases and counts are reported to, or null.
+	private final IHuffMetrics myMetrics;
+
+	// Constructor: the defaults of SimpleHuffProcessor, filters chosen from a
+	// sample, blocks with checksums, the length in the header, sampling on, no
+	// seek table and no listener.
+	public HuffEngine() {
+		this(null, IHuffConstants.FLAG_BLOCKS | IHuffConstants.FLAG_LENGTH | IHuffConstants.FLAG_CHECKSUM, true, 0,
+				null);
+	}
+
+	// Constructor:
+	// filters: the filters applied before counting, null to choose them from a
+	// sample of each input.
+	// flags: FLAG_BLOCKS to allow blocks, FLAG_LENGTH to write the length,
+	// FLAG_CHECKSUM to write every block with its checksums.
+	// checkSamples: true to store data sampled as not compressing instead of
+	// counting it, only used with FLAG_BLOCKS.
+	// syncInterval: number of chunks between sync points, 0 for none.
+	// metrics: listener the phases and counts are reported to, or null. It is
+	// called from every thread using the engine.
+	// pre: syncInterval is 0 or a positive multiple of FilterChain.BLOCK_SIZE
+	public HuffEngine(FilterChain filters, int flags, boolean checkSamples, int syncInterval, IHuffMetrics metrics) {
+		// check precon:
+		if (syncInterval < 0 || syncInterval % FilterChain.BLOCK_SIZE != 0) {
+			throw new IllegalArgumentException("interval must be 0 or a multiple of " + FilterChain.BLOCK_SIZE);
+		}
+		myFilters = filters;
+		myOptions = Compressor.Options.NONE.withFlags(flags).withSyncInterval(syncInterval).withMetrics(metrics);
+		myCheckSamples = checkSamples;
+		myMetrics = metrics;
+	}
+
+	// method chooses the filters, samples the data and counts it.
+	// in: the data, read to the end but not closed.
+	// headerFormat: STORE_COUNTS or STORE_TREE.
+	// pre: in != null
+	// returns the Compressor to encode the same data with.
+	public Compressor analyze(InputStream in, int headerFormat) throws IOException {
+		return analyze(in, headerFormat, null);
+	}
+
+	// method analyzes the data, see above.
+	// op: the operation the bytes read are added to, or null.
+	public Compressor analyze(InputStream in, int headerFormat, HuffOperation op) throws IOException {
+		// check precon:
+		if (in == null) {
+			throw new IllegalArgumentException("InputStream cannot equal null");
+		}
+		long start = IHuffMetrics.startPhase(myMetrics, IHuffMetrics.Phase.SAMPLE);
+		// use BufferedInputStream to make method faster, it also allows the start of
+		// the stream to be sampled and read again. The sampler reads in itself, so
+		// only the buffer is tracked.
+		BufferedInputStream buffered = new BufferedInputStream(op == null ? in : op.track(in),
+				FilterChain.BLOCK_SIZE);
+		byte[] head = new byte[FilterChain.BLOCK_SIZE];
+		int headLength = readHead(buffered, head);
+		FilterChain filters = myFilters;
+		if (filters == null) {
+			filters = FilterChain.select(head, headLength);
+		}
+		int flags = myOptions.getFlags();
+		boolean storeLength = (flags & IHuffConstants.FLAG_LENGTH) != 0;
+		// data that needs no filter is sampled to see if it is worth counting, the
+		// data is stored if it isn't.
+		if (myCheckSamples && (flags & IHuffConstants.FLAG_BLOCKS) != 0 && filters.isEmpty()) {
+			double bitsPerByte = EntropySampler.estimateBitsPerByte(in, head, headLength);
+			IHuffMetrics.endPhase(myMetrics, IHuffMetrics.Phase.SAMPLE, start, 0);
+			if (bitsPerByte > EntropySampler.INCOMPRESSIBLE_BITS) {
+				long length = EntropySampler.remainingLength(in);
+				if (length != -1) {
+					length += headLength;
+				}
+				if (!storeLength) {
+					length = -1;
+				}
+				return Compressor.forStoring(headerFormat, length, myOptions);
+			}
+		} else {
+			IHuffMetrics.endPhase(myMetrics, IHuffMetrics.Phase.SAMPLE, start, 0);
+		}
+		// create a BitInputStream from the filtered stream.
+		BitInputStream reader = new BitInputStream(filters.filter(buffered));
+		Compressor result = new Compressor(reader, headerFormat, myOptions.withFilters(filters));
+		reader.close();
+		return result;
+	}
+
+	// helper method reads the start of the stream into head.
+	// in: stream which supports mark and reset for at least head.length bytes.
+	// post: the stream is reset to where it was.
+	// returns the number of bytes read.
+	private static int readHead(BufferedInputStream in, byte[] head) throws IOException {
+		in.mark(head.length);
+		int len = 0;
+		int n = 0;
+		while (len < head.length && (n = in.read(head, len, head.length - len)) != -1) {
+			len += n;
+		}
+		in.reset();
+		return len;
+	}
+
+	// method writes the compressed data. The data is written whether or not it
+	// gets smaller.
+	// plan: the Compressor analyze returned for the same data.
+	// in: the data, it is closed.
+	// out: where the compressed data is written, it is closed.
+	// pre: plan != null, in != null, out != null
+	// returns the number of bits written.
+	public long encode(Compressor plan, InputStream in, OutputStream out) throws IOException {
+		// check precon:
+		if (plan == null || in == null || out == null) {
+			throw new IllegalArgumentException("plan, in and out cannot equal null");
+		}
+		HuffEvents.Compress event = HuffEvents.isRecording() ? new HuffEvents.Compress() : null;
+		long start = IHuffMetrics.startPhase(myMetrics, IHuffMetrics.Phase.COMPRESS);
+		// use BufferedOutputStream and BufferedInputStream to make method faster.
+		// the data is filtered the same way it was when it was counted.
+		BitOutputStream writer = new BitOutputStream(new BufferedOutputStream(out));
+		BitInputStream reader = new BitInputStream(new BufferedInputStream(plan.getFilterChain().filter(in)));
+		long length = 0;
+		try {
+			// data written as it is may only now know its length.
+			length = plan.compress(writer, reader);
+		} finally {
+			// the streams are closed even if encoding stops, so pipeline stages end.
+			writer.close();
+			reader.close();
+		}
+		long bitsWritten = plan.getNumBitsWritten(length);
+		long bytesWritten = (bitsWritten + IHuffConstants.BITS_PER_WORD - 1) / IHuffConstants.BITS_PER_WORD;
+		IHuffMetrics.endPhase(myMetrics, IHuffMetrics.Phase.COMPRESS, start, length);
+		IHuffMetrics.add(myMetrics, IHuffMetrics.Counter.BYTES_READ, length);
+		IHuffMetrics.add(myMetrics, IHuffMetrics.Counter.BYTES_WRITTEN, bytesWritten);
+		IHuffMetrics.add(myMetrics, IHuffMetrics.Counter.FILES, 1);
+		if (event != null) {
+			event.end();
+			if (event.shouldCommit()) {
+				event.headerFormat = HuffEvents.getFormatName(plan.getHeaderFormat());
+				event.originalSize = length;
+				event.compressedSize = bytesWritten;
+				event.blocks = plan.getNumBlocks();
+				event.stored = plan.isStoreOnly();
+				event.filters = plan.getFilterChain().toString();
+				event.commit();
+			}
+		}
+		return bitsWritten;
+	}
+
+	// method writes the uncompressed data.
+	// in: the compressed data, it is closed.
+	// out: where the uncompressed data is written, it is closed.
+	// pre: in != null, out != null
+	// returns the number of bytes written.
+	// throws an IOException if in is not compressed data or ends early.
+	public long decode(InputStream in, OutputStream out) throws IOException {
+		// check precon:
+		if (in == null || out == null) {
+			throw new IllegalArgumentException("InputStream and OutputStream cannot equal null");
+		}
+		long start = IHuffMetrics.startPhase(myMetrics, IHuffMetrics.Phase.UNCOMPRESS);
+		BitInputStream reader = new BitInputStream(new BufferedInputStream(in));
+		try {
+			// a new Decompressor holds the header of this call only.
+			Decompressor decompressor = new Decompressor();
+			decompressor.setMetrics(myMetrics);
+			if (!decompressor.isCompressedFile(reader)) {
+				throw new IOException("File not compressed");
+			}
+			decompressor.constructTree(reader);
+			BitOutputStream writer = new BitOutputStream(
+					new BufferedOutputStream(decompressor.getFilterChain().unfilter(out)));
+			long length = decompressor.decompress(reader, writer);
+			writer.close();
+			if (length == -1) {
+				throw new IOException("File not compressed properly, it ends early");
+			}
+			IHuffMetrics.endPhase(myMetrics, IHuffMetrics.Phase.UNCOMPRESS, start, length);
+			IHuffMetrics.add(myMetrics, IHuffMetrics.Counter.BYTES_WRITTEN, length);
+			IHuffMetrics.add(myMetrics, IHuffMetrics.Counter.FILES, 1);
+			return length;
+		} finally {
+			reader.close();
+		}
+	}
+}
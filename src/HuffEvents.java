@@ -0,0 +1,277 @@
+//import statements:
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+// HuffEvents holds the JDK Flight Recorder events written by the model, so a
+// recording shows what each thread was compressing and how long each phase
+// took instead of anonymous samples in Compressor and Decompressor. Creating an
+// event loads the flight recorder, so the model only creates one while
+// isRecording is true:
+//
+// HuffEvents.Block event = HuffEvents.isRecording() ? new HuffEvents.Block() : null;
+//
+// Each event begins when it is created. Until a recording is started that
+// costs a read of a flag and none of the event classes are loaded, so short runs start as fast as without them. The
+// fields are only filled in for events that are committed. Stack traces are
+// off since the phases are always called from the same places.
+public class HuffEvents {
+
+	// class constants:
+	private static final String CATEGORY = "Huffman";
+
+	@Name("huff.Compress")
+	@Label("Huffman Compress")
+	@Description("Compressed data written by SimpleHuffProcessor.compress")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	public static class Compress extends Event {
+		@Label("Header Format")
+		public String headerFormat;
+		@Label("Original Size")
+		@DataAmount
+		public long originalSize;
+		@Label("Compressed Size")
+		@DataAmount
+		public long compressedSize;
+		@Label("Blocks")
+		public int blocks;
+		@Label("Stored")
+		@Description("The data was not counted and was written as it is")
+		public boolean stored;
+		@Label("Filters")
+		public String filters;
+
+		// Constructor: begins the event.
+		public Compress() {
+			begin();
+		}
+	}
+
+	@Name("huff.Uncompress")
+	@Label("Huffman Uncompress")
+	@Description("Data uncompressed by SimpleHuffProcessor.uncompress")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	public static class Uncompress extends Event {
+		@Label("Header Format")
+		public String headerFormat;
+		@Label("Compressed Size")
+		@DataAmount
+		public long compressedSize;
+		@Label("Original Size")
+		@DataAmount
+		public long originalSize;
+		@Label("Succeeded")
+		public boolean succeeded;
+
+		// Constructor: begins the event.
+		public Uncompress() {
+			begin();
+		}
+	}
+
+	@Name("huff.FrequencyCount")
+	@Label("Huffman Frequency Count")
+	@Description("The pass over the data counting the frequency of every chunk")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	public static class FrequencyCount extends Event {
+		@Label("Size")
+		@DataAmount
+		public long size;
+		@Label("Distinct Values")
+		public int distinctValues;
+
+		// Constructor: begins the event.
+		public FrequencyCount() {
+			begin();
+		}
+	}
+
+	@Name("huff.TreeBuild")
+	@Label("Huffman Tree Build")
+	@Description("Building the tree and code book, and planning the blocks")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	public static class TreeBuild extends Event {
+		@Label("Symbols")
+		public int symbols;
+		@Label("Min Code Length")
+		public int minCodeLength;
+		@Label("Max Code Length")
+		public int maxCodeLength;
+		@Label("Average Code Length")
+		@Description("Bits per chunk of the data, weighted by frequency")
+		public double averageCodeLength;
+		@Label("Blocks")
+		public int blocks;
+
+		// Constructor: begins the event.
+		public TreeBuild() {
+			begin();
+		}
+	}
+
+	@Name("huff.HeaderEncode")
+	@Label("Huffman Header Encode")
+	@Description("Writing the file header and, for a single tree, the tree header")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	public static class HeaderEncode extends Event {
+		@Label("Header Format")
+		public String headerFormat;
+		@Label("Flags")
+		public int flags;
+		@Label("Header Bits")
+		public long headerBits;
+
+		// Constructor: begins the event.
+		public HeaderEncode() {
+			begin();
+		}
+	}
+
+	@Name("huff.HeaderDecode")
+	@Label("Huffman Header Decode")
+	@Description("Reading the file header and, for a single tree, the tree header")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	public static class HeaderDecode extends Event {
+		@Label("Header Format")
+		public String headerFormat;
+		@Label("Flags")
+		public int flags;
+		@Label("Original Size")
+		@Description("The size recorded in the header, -1 if it isn't")
+		@DataAmount
+		public long originalSize;
+		@Label("Filters")
+		public String filters;
+
+		// Constructor: begins the event.
+		public HeaderDecode() {
+			begin();
+		}
+	}
+
+	// blocks are many and short, so only the slow ones are recorded by default.
+	@Name("huff.Block")
+	@Label("Huffman Block")
+	@Description("One block encoded or decoded in block mode")
+	@Category(CATEGORY)
+	@StackTrace(false)
+	@Threshold("1 ms")
+	public static class Block extends Event {
+		@Label("Encode")
+		@Description("True when the block was written, false when it was read")
+		public boolean encode;
+		@Label("Stored")
+		public boolean stored;
+		@Label("Chunks")
+		@DataAmount
+		public long chunks;
+		@Label("Payload Size")
+		@DataAmount
+		public long payloadSize;
+		@Label("Min Code Length")
+		public int minCodeLength;
+		@Label("Max Code Length")
+		public int maxCodeLength;
+		@Label("Average Code Length")
+		public double averageCodeLength;
+
+		// Constructor: begins the event.
+		public Block() {
+			begin();
+		}
+	}
+
+	// method returns true if a flight recording is running, so events are worth
+	// creating.
+	public static boolean isRecording() {
+		// the recorder is only initialized once a recording has been started.
+		return FlightRecorder.isInitialized() && Recordings.isRunning();
+	}
+
+	// method returns the name of a header format for an event.
+	public static String getFormatName(int headerFormat) {
+		if (headerFormat == IHuffConstants.STORE_COUNTS) {
+			return "counts";
+		}
+		if (headerFormat == IHuffConstants.STORE_TREE) {
+			return "tree";
+		}
+		return "custom";
+	}
+
+	// method returns the shortest and longest code of the values that occur, the
+	// number of bits per chunk weighted by freq and the number of values that
+	// occur.
+	// pre: codes != null, freq != null
+	// returns { min, max, average, symbols }, all 0 if no value occurs.
+	public static double[] getCodeLengths(CodeBook codes, int[] freq) {
+		int min = Integer.MAX_VALUE;
+		int max = 0;
+		long bits = 0;
+		long count = 0;
+		int symbols = 0;
+		for (int i = 0; i < freq.length; i++) {
+			if (freq[i] > 0 && codes.hasCode(i)) {
+				int length = codes.getLength(i);
+				min = Math.min(min, length);
+				max = Math.max(max, length);
+				bits += (long) length * freq[i];
+				count += freq[i];
+				symbols++;
+			}
+		}
+		if (count == 0) {
+			return new double[4];
+		}
+		return new double[] { min, max, (double) bits / count, symbols };
+	}
+
+	// Recordings follows the recordings that are running. It is only loaded by
+	// isRecording once the recorder is initialized, and adding the listener
+	// reports the recordings started before.
+	private static class Recordings implements FlightRecorderListener {
+		// the ids of the recordings running.
+		private static final Set<Long> RUNNING = ConcurrentHashMap.newKeySet();
+
+		static {
+			FlightRecorder.addListener(new Recordings());
+		}
+
+		// method returns true if a recording is running.
+		static boolean isRunning() {
+			return !RUNNING.isEmpty();
+		}
+
+		public void recorderInitialized(FlightRecorder recorder) {
+			for (Recording recording : recorder.getRecordings()) {
+				recordingStateChanged(recording);
+			}
+		}
+
+		public void recordingStateChanged(Recording recording) {
+			if (recording.getState() == RecordingState.RUNNING) {
+				RUNNING.add(recording.getId());
+			} else {
+				RUNNING.remove(recording.getId());
+			}
+		}
+	}
+}
@@ -0,0 +1,471 @@
+//import statements:
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Flow;
+
+// HuffFlowProcessor compresses or uncompresses a stream of ByteBuffers as they
+// arrive, for callers that can't block on an InputStream:
+//
+// publisher.subscribe(HuffFlowProcessor.compressing(IHuffConstants.STORE_TREE));
+//
+// The compressed data is written in blocks, each with its own tree, so no pass
+// over the whole input is needed: the compressing processor writes to a
+// HuffmanOutputStream, which huffs every block as soon as all of it has
+// arrived, and the uncompressing processor decodes each block once all of it
+// has arrived. The files are the same as files written with FLAG_BLOCKS and
+// without the length, so SimpleHuffProcessor can uncompress them too.
+//
+// Backpressure goes both ways: a buffer is only requested from upstream when
+// downstream has asked for one and every buffer made so far has been sent.
+// The buffers received are copied, the buffers sent are never touched again.
+public abstract class HuffFlowProcessor implements Flow.Processor<ByteBuffer, ByteBuffer> {
+
+	// class constants:
+	private static final int BITS_PER_BYTE = 8;
+
+	// instance vars:
+	private Flow.Subscription myUpstream;
+	private Flow.Subscriber<? super ByteBuffer> myDownstream;
+	// buffers made and not yet sent.
+	private final Queue<ByteBuffer> myOutput = new ArrayDeque<>();
+	// buffers downstream asked for and has not been sent.
+	private long myDemand;
+	// true while a buffer asked for from upstream hasn't arrived.
+	private boolean myRequested;
+	// true once upstream has ended or processing failed.
+	private boolean myDone;
+	// why processing failed, or null.
+	private Throwable myError;
+	// true once onComplete or onError has been sent.
+	private boolean myTerminated;
+	private boolean myCancelled;
+	// true while a thread runs drain.
+	private boolean myDraining;
+
+	// method returns a processor that compresses the buffers it receives.
+	// headerFormat: STORE_COUNTS or STORE_TREE.
+	// pre: headerFormat is STORE_COUNTS or STORE_TREE
+	public static HuffFlowProcessor compressing(int headerFormat) {
+		// check precon:
+		if (headerFormat != IHuffConstants.STORE_COUNTS && headerFormat != IHuffConstants.STORE_TREE) {
+			throw new IllegalArgumentException("header format must be STORE_COUNTS or STORE_TREE");
+		}
+		return new Compressing(headerFormat);
+	}
+
+	// method returns a processor that uncompresses the buffers it receives. Only
+	// files written in blocks can be uncompressed as they arrive.
+	public static HuffFlowProcessor uncompressing() {
+		return new Uncompressing();
+	}
+
+	// method processes the bytes of a buffer received.
+	// in: the bytes, read to the end.
+	// out: where the bytes made are put.
+	protected abstract void process(ByteBuffer in, Queue<ByteBuffer> out) throws IOException;
+
+	// method processes the end of the data.
+	// out: where the last bytes made are put.
+	protected abstract void finish(Queue<ByteBuffer> out) throws IOException;
+
+	public void onSubscribe(Flow.Subscription subscription) {
+		synchronized (this) {
+			if (myUpstream != null || myDone) {
+				subscription.cancel();
+				return;
+			}
+			myUpstream = subscription;
+		}
+		drain();
+	}
+
+	public void onNext(ByteBuffer item) {
+		if (item == null) {
+			throw new NullPointerException("item cannot equal null");
+		}
+		boolean failed = false;
+		synchronized (this) {
+			if (myDone) {
+				return;
+			}
+			myRequested = false;
+			try {
+				process(item, myOutput);
+			} catch (IOException | RuntimeException e) {
+				fail(e);
+				failed = true;
+			}
+		}
+		if (failed) {
+			myUpstream.cancel();
+		}
+		drain();
+	}
+
+	public void onError(Throwable throwable) {
+		synchronized (this) {
+			if (myDone) {
+				return;
+			}
+			fail(throwable);
+		}
+		drain();
+	}
+
+	public void onComplete() {
+		synchronized (this) {
+			if (myDone) {
+				return;
+			}
+			myDone = true;
+			try {
+				finish(myOutput);
+			} catch (IOException | RuntimeException e) {
+				fail(e);
+			}
+		}
+		drain();
+	}
+
+	// helper method records why processing stopped, the buffers made are dropped.
+	private void fail(Throwable error) {
+		myDone = true;
+		myError = error;
+		myOutput.clear();
+	}
+
+	public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+		if (subscriber == null) {
+			throw new NullPointerException("subscriber cannot equal null");
+		}
+		synchronized (this) {
+			if (myDownstream != null) {
+				subscriber.onSubscribe(new DownstreamSubscription());
+				subscriber.onError(new IllegalStateException("a HuffFlowProcessor has only one subscriber"));
+				return;
+			}
+			myDownstream = subscriber;
+		}
+		subscriber.onSubscribe(new DownstreamSubscription());
+		drain();
+	}
+
+	// helper method sends what downstream asked for, or asks upstream for more.
+	// Only one thread drains at a time. It looks at the state again after every
+	// call, so it sees what a thread that arrived meanwhile changed. No lock is
+	// held while a subscriber is called.
+	private void drain() {
+		synchronized (this) {
+			if (myDraining) {
+				return;
+			}
+			myDraining = true;
+		}
+		while (true) {
+			ByteBuffer next = null;
+			Throwable error = null;
+			boolean complete = false;
+			boolean request = false;
+			synchronized (this) {
+				if (myCancelled || myDownstream == null || myTerminated) {
+					myDraining = false;
+					return;
+				}
+				if (myDemand > 0 && !myOutput.isEmpty()) {
+					next = myOutput.poll();
+					myDemand--;
+				} else if (myDone && myOutput.isEmpty()) {
+					myTerminated = true;
+					error = myError;
+					complete = error == null;
+				} else if (myDemand > 0 && !myRequested && !myDone && myUpstream != null) {
+					myRequested = true;
+					request = true;
+				} else {
+					myDraining = false;
+					return;
+				}
+			}
+			if (next != null) {
+				myDownstream.onNext(next);
+			} else if (complete) {
+				myDownstream.onComplete();
+			} else if (error != null) {
+				myDownstream.onError(error);
+			} else if (request) {
+				myUpstream.request(1);
+			}
+		}
+	}
+
+	// Subscription downstream asks for buffers through.
+	private class DownstreamSubscription implements Flow.Subscription {
+
+		public void request(long n) {
+			Flow.Subscription upstream = null;
+			synchronized (HuffFlowProcessor.this) {
+				if (n <= 0) {
+					if (!myDone) {
+						upstream = myUpstream;
+						fail(new IllegalArgumentException("request must be positive, was " + n));
+					}
+				} else {
+					// demand is capped at Long.MAX_VALUE, which means unbounded.
+					myDemand = myDemand + n < 0 ? Long.MAX_VALUE : myDemand + n;
+				}
+			}
+			if (upstream != null) {
+				upstream.cancel();
+			}
+			drain();
+		}
+
+		public void cancel() {
+			Flow.Subscription upstream = null;
+			synchronized (HuffFlowProcessor.this) {
+				if (myCancelled) {
+					return;
+				}
+				myCancelled = true;
+				myDone = true;
+				myOutput.clear();
+				upstream = myUpstream;
+			}
+			if (upstream != null) {
+				upstream.cancel();
+			}
+		}
+	}
+
+	// HuffFlowProcessor that writes the buffers to a HuffmanOutputStream and
+	// sends the blocks it has written.
+	private static class Compressing extends HuffFlowProcessor {
+		private final ByteArrayOutputStream myBytes = new ByteArrayOutputStream();
+		private final HuffmanOutputStream myStream;
+		// bytes of buffers that aren't backed by an array are copied through this.
+		private byte[] myCopy;
+
+		Compressing(int headerFormat) {
+			try {
+				myStream = new HuffmanOutputStream(myBytes, headerFormat);
+			} catch (IOException e) {
+				// a ByteArrayOutputStream doesn't throw.
+				throw new IllegalStateException(e);
+			}
+		}
+
+		protected void process(ByteBuffer in, Queue<ByteBuffer> out) throws IOException {
+			if (in.hasArray()) {
+				myStream.write(in.array(), in.arrayOffset() + in.position(), in.remaining());
+				in.position(in.limit());
+			} else {
+				if (myCopy == null) {
+					myCopy = new byte[FilterChain.BLOCK_SIZE];
+				}
+				while (in.hasRemaining()) {
+					int n = Math.min(in.remaining(), myCopy.length);
+					in.get(myCopy, 0, n);
+					myStream.write(myCopy, 0, n);
+				}
+			}
+			send(out);
+		}
+
+		protected void finish(Queue<ByteBuffer> out) throws IOException {
+			myStream.finish();
+			send(out);
+		}
+
+		// helper method puts the bytes written so far in out, if there are any.
+		private void send(Queue<ByteBuffer> out) {
+			if (myBytes.size() > 0) {
+				out.add(ByteBuffer.wrap(myBytes.toByteArray()));
+				myBytes.reset();
+			}
+		}
+	}
+
+	// HuffFlowProcessor that reads the file header, then decodes every block
+	// once all of it has arrived.
+	private static class Uncompressing extends HuffFlowProcessor {
+		// bytes in the file header before the flags say what follows.
+		private static final int HEADER_BYTES = 2 * IHuffConstants.BITS_PER_INT / BITS_PER_BYTE;
+		private static final int BLOCK_HEADER_BYTES = HuffBlock.HEADER_BITS / BITS_PER_BYTE;
+		// the value bits of each byte of a varlong, and the bit set if more follow.
+		private static final int MORE_BYTES = 0x80;
+
+		// bytes received and not yet used, from myStart to myEnd.
+		private byte[] myPending = new byte[FilterChain.BLOCK_SIZE];
+		private int myStart;
+		private int myEnd;
+		// the header value, 0 until it has arrived.
+		private int myHeaderValue;
+		// true once the filters and length after the header value are read.
+		private boolean myHeaderRead;
+		// true once the end marker has arrived, anything after it is a seek table.
+		private boolean myEnded;
+		// the number of chunks the header says there are, -1 if it doesn't.
+		private long myLength = -1;
+		private long myDecoded;
+		private final ByteArrayOutputStream myBytes = new ByteArrayOutputStream();
+		// where the decoded chunks are written, once the filters are known.
+		private OutputStream myUnfilter;
+		private BitOutputStream myWriter;
+
+		protected void process(ByteBuffer in, Queue<ByteBuffer> out) throws IOException {
+			if (myEnded) {
+				return;
+			}
+			append(in);
+			if (!myHeaderRead && !readHeader()) {
+				return;
+			}
+			while (!myEnded && decodeBlock()) {
+				send(out);
+			}
+		}
+
+		protected void finish(Queue<ByteBuffer> out) throws IOException {
+			if (!myEnded) {
+				throw new IOException("compressed data ends early");
+			}
+			if (myLength != -1 && myDecoded != myLength) {
+				throw new IOException("compressed data has " + myDecoded + " chunks, the header says " + myLength);
+			}
+			// the filters write their last partial block when they are closed.
+			myWriter.close();
+			send(out);
+		}
+
+		// helper method adds the bytes of in to the bytes pending.
+		private void append(ByteBuffer in) {
+			int n = in.remaining();
+			if (myEnd + n > myPending.length) {
+				// move what is left to the start, and grow if that isn't enough.
+				int left = myEnd - myStart;
+				byte[] pending = myPending;
+				if (left + n > pending.length) {
+					pending = new byte[Math.max(left + n, 2 * pending.length)];
+				}
+				System.arraycopy(myPending, myStart, pending, 0, left);
+				myPending = pending;
+				myStart = 0;
+				myEnd = left;
+			}
+			in.get(myPending, myEnd, n);
+			myEnd += n;
+		}
+
+		// helper method reads the file header once all of it has arrived.
+		// returns true if it has been read.
+		private boolean readHeader() throws IOException {
+			int available = myEnd - myStart;
+			if (available < HEADER_BYTES) {
+				return false;
+			}
+			int magic = getInt(myStart);
+			myHeaderValue = getInt(myStart + IHuffConstants.BITS_PER_INT / BITS_PER_BYTE);
+			if (magic != IHuffConstants.MAGIC_NUMBER) {
+				throw new IOException("File not compressed");
+			}
+			int headerFormat = myHeaderValue & IHuffConstants.HEADER_FORMAT_MASK;
+			if (headerFormat != IHuffConstants.STORE_COUNTS && headerFormat != IHuffConstants.STORE_TREE) {
+				throw new IOException("unknown header format");
+			}
+			if ((myHeaderValue & IHuffConstants.FLAG_BLOCKS) == 0) {
+				throw new IOException("only files compressed in blocks can be uncompressed as they arrive");
+			}
+			int used = HEADER_BYTES;
+			if ((myHeaderValue & IHuffConstants.FLAG_FILTERED) != 0) {
+				// the chain has a count field then two fields per filter, each as wide as
+				// the header of the empty chain.
+				int field = FilterChain.NONE.getHeaderBitSize() / BITS_PER_BYTE;
+				if (available < used + field) {
+					return false;
+				}
+				used += field * (1 + 2 * (myPending[myStart + used] & 0xff));
+			}
+			int lengthBytes = 0;
+			if ((myHeaderValue & IHuffConstants.FLAG_LENGTH) != 0) {
+				// a varlong ends with the first byte without the high bit.
+				do {
+					if (available < used + lengthBytes + 1) {
+						return false;
+					}
+					lengthBytes++;
+				} while ((myPending[myStart + used + lengthBytes - 1] & MORE_BYTES) != 0);
+			}
+			if (available < used + lengthBytes) {
+				return false;
+			}
+			// everything is here, read it the way Decompressor does.
+			BitInputStream reader = reader(HEADER_BYTES, used + lengthBytes - HEADER_BYTES);
+			FilterChain filters = FilterChain.NONE;
+			if ((myHeaderValue & IHuffConstants.FLAG_FILTERED) != 0) {
+				filters = FilterChain.readHeader(reader);
+			}
+			if (lengthBytes > 0) {
+				myLength = reader.readVarLong();
+			}
+			myStart += used + lengthBytes;
+			myUnfilter = filters.unfilter(myBytes);
+			myWriter = new BitOutputStream(myUnfilter);
+			myHeaderRead = true;
+			return true;
+		}
+
+		// helper method decodes the next block if all of it has arrived.
+		// returns true if a block was decoded or the end marker was read.
+		private boolean decodeBlock() throws IOException {
+			int available = myEnd - myStart;
+			if (available >= 1 && myPending[myStart] == HuffBlock.END) {
+				myStart++;
+				myEnded = true;
+				return true;
+			}
+			if (available < BLOCK_HEADER_BYTES) {
+				return false;
+			}
+			int payload = getInt(myStart + BLOCK_HEADER_BYTES - IHuffConstants.BITS_PER_INT / BITS_PER_BYTE);
+			if (payload < 0) {
+				throw new IOException("invalid block header");
+			}
+			boolean checked = (myHeaderValue & IHuffConstants.FLAG_CHECKSUM) != 0;
+			if (checked) {
+				payload += HuffBlock.CHECKSUM_BITS / BITS_PER_BYTE;
+			}
+			if (available < BLOCK_HEADER_BYTES + payload) {
+				return false;
+			}
+			int chunks = HuffBlock.decode(reader(0, BLOCK_HEADER_BYTES + payload), myWriter,
+					myHeaderValue & IHuffConstants.HEADER_FORMAT_MASK, checked);
+			myStart += BLOCK_HEADER_BYTES + payload;
+			myDecoded += chunks;
+			return true;
+		}
+
+		// helper method returns a reader of length pending bytes, offset bytes after
+		// myStart.
+		private BitInputStream reader(int offset, int length) {
+			return new BitInputStream(new ByteArrayInputStream(myPending, myStart + offset, length));
+		}
+
+		// helper method returns the int written at index of the pending bytes.
+		private int getInt(int index) {
+			return ByteBuffer.wrap(myPending, index, IHuffConstants.BITS_PER_INT / BITS_PER_BYTE).getInt();
+		}
+
+		// helper method puts the bytes decoded so far in out, if there are any.
+		private void send(Queue<ByteBuffer> out) {
+			if (myBytes.size() > 0) {
+				out.add(ByteBuffer.wrap(myBytes.toByteArray()));
+				myBytes.reset();
+			}
+		}
+	}
+}
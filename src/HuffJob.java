@@ -0,0 +1,255 @@
+//import statements:
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.Future;
+
+// HuffJob is one file counted, compressed or uncompressed by a HuffJobQueue.
+// A compress job does both passes itself, so nothing is shared with the job
+// that counted the file before. Every job has its own state and progress,
+// which the display reads while the job runs. A job is cancelled by setting a
+// flag its tracked input checks on every read and by interrupting its thread,
+// which the encode and decode loops check.
+public class HuffJob implements Runnable {
+
+	// the states of a job, in the order they happen.
+	public enum State {
+		QUEUED, RUNNING, DONE, FAILED, CANCELLED
+	}
+
+	// instance vars:
+	// PREPROCESS, COMPRESS or UNCOMPRESS.
+	private final IHuffMetrics.Phase myKind;
+	private final File myInput;
+	// the file written, null for PREPROCESS.
+	private final File myOutput;
+	private final IHuffProcessor myModel;
+	// where the model's messages are passed on to.
+	private final IHuffViewer myViewer;
+	private final HuffOperation myOp;
+	private int myHeaderFormat = IHuffConstants.STORE_COUNTS;
+	private boolean myForce;
+	// true if the input is read into memory once instead of from disk.
+	private boolean myInMemory = true;
+	private volatile State myState = State.QUEUED;
+	// the result, or why the job failed.
+	private volatile String myMessage = "";
+	private volatile Future<?> myFuture;
+
+	// Constructor:
+	// kind: PREPROCESS, COMPRESS or UNCOMPRESS.
+	// input: the file read.
+	// output: the file written, null for PREPROCESS.
+	// model: the model the job runs. A model given to several jobs runs one of
+	// them at a time.
+	// viewer: where the model's messages are passed on to.
+	// pre: input != null, model != null, viewer != null, output != null unless
+	// kind is PREPROCESS
+	public HuffJob(IHuffMetrics.Phase kind, File input, File output, IHuffProcessor model, IHuffViewer viewer) {
+		// check precon:
+		if (input == null || model == null || viewer == null || (output == null && kind != IHuffMetrics.Phase.PREPROCESS)) {
+			throw new IllegalArgumentException("input, model and viewer can't be null, output only for PREPROCESS");
+		}
+		myKind = kind;
+		myInput = input;
+		myOutput = output;
+		myModel = model;
+		myViewer = viewer;
+		// a compress job reads the file twice.
+		long length = input.length();
+		myOp = new HuffOperation(kind, kind == IHuffMetrics.Phase.COMPRESS ? 2 * length : length);
+	}
+
+	// method sets the header format compressed files are written in.
+	public void setHeaderFormat(int headerFormat) {
+		myHeaderFormat = headerFormat;
+	}
+
+	// method sets whether the file is written even when it isn't smaller.
+	public void setForce(boolean force) {
+		myForce = force;
+	}
+
+	// method sets whether the input is read into memory once instead of from
+	// disk for every pass.
+	public void setInMemory(boolean inMemory) {
+		myInMemory = inMemory;
+	}
+
+	// method records the Future the job runs in, so cancel can interrupt it.
+	void setFuture(Future<?> future) {
+		myFuture = future;
+	}
+
+	public void run() {
+		// a job cancelled while it was queued doesn't start.
+		if (myState != State.QUEUED) {
+			return;
+		}
+		myState = State.RUNNING;
+		JobViewer viewer = new JobViewer();
+		long written = -1;
+		try {
+			// a model shared with other jobs is only used by one at a time.
+			synchronized (myModel) {
+				myModel.setViewer(viewer);
+				try {
+					written = runModel();
+				} finally {
+					myModel.setViewer(myViewer);
+				}
+			}
+			if (viewer.myError != null) {
+				fail(viewer.myError);
+			} else if (written == -1) {
+				fail("not written");
+			} else {
+				myMessage = getResult(written);
+				myState = State.DONE;
+			}
+		} catch (InterruptedIOException e) {
+			fail("cancelled");
+		} catch (IOException | RuntimeException e) {
+			fail(myOp.isCancelled() ? "cancelled" : e.toString());
+		} finally {
+			myOp.finish(written, myState == State.DONE);
+		}
+	}
+
+	// helper method runs the model over the input.
+	// returns bits saved for PREPROCESS, bits written otherwise, -1 if nothing
+	// was written.
+	private long runModel() throws IOException {
+		byte[] data = myInMemory ? Files.readAllBytes(myInput.toPath()) : null;
+		if (myKind == IHuffMetrics.Phase.UNCOMPRESS) {
+			try (InputStream in = open(data); OutputStream out = new FileOutputStream(myOutput)) {
+				return myModel.uncompress(in, out);
+			}
+		}
+		int saved = 0;
+		try (InputStream in = open(data)) {
+			saved = myModel.preprocessCompress(in, myHeaderFormat);
+		}
+		if (myKind == IHuffMetrics.Phase.PREPROCESS) {
+			return saved;
+		}
+		try (InputStream in = open(data); OutputStream out = new FileOutputStream(myOutput)) {
+			return myModel.compress(in, out, myForce);
+		}
+	}
+
+	// helper method returns a stream of data if the input was read into memory,
+	// or of the input file otherwise, that adds what it reads to the progress.
+	private InputStream open(byte[] data) throws IOException {
+		return myOp.track(data != null ? new ByteArrayInputStream(data) : new FileInputStream(myInput));
+	}
+
+	// helper method returns the message shown for a job that worked.
+	private String getResult(long bits) {
+		if (myKind == IHuffMetrics.Phase.PREPROCESS) {
+			return "saved: " + bits + " bits";
+		}
+		return myOutput.getName() + ": " + myOutput.length() + " bytes";
+	}
+
+	// helper method records why the job failed and deletes what it wrote.
+	private void fail(String message) {
+		myMessage = message;
+		myState = myOp.isCancelled() ? State.CANCELLED : State.FAILED;
+		if (myOutput != null) {
+			myOutput.delete();
+		}
+	}
+
+	// method stops the job, or keeps it from starting if it is queued.
+	public void cancel() {
+		myOp.cancel();
+		if (myState == State.QUEUED) {
+			myState = State.CANCELLED;
+			myMessage = "cancelled";
+		}
+		Future<?> future = myFuture;
+		if (future != null) {
+			future.cancel(true);
+		}
+	}
+
+	// method returns true if the job is done, failed or was cancelled.
+	public boolean isFinished() {
+		State state = myState;
+		return state != State.QUEUED && state != State.RUNNING;
+	}
+
+	// method returns PREPROCESS, COMPRESS or UNCOMPRESS.
+	public IHuffMetrics.Phase getKind() {
+		return myKind;
+	}
+
+	// method returns the file read.
+	public File getInput() {
+		return myInput;
+	}
+
+	// method returns the file written, null for PREPROCESS.
+	public File getOutput() {
+		return myOutput;
+	}
+
+	public State getState() {
+		return myState;
+	}
+
+	// method returns the result, or why the job failed.
+	public String getMessage() {
+		return myMessage;
+	}
+
+	// method returns the fraction of the input read so far.
+	public double getProgress() {
+		return Math.max(0, myOp.getProgress());
+	}
+
+	// method returns the operation the progress of the job is kept in.
+	public HuffOperation getOperation() {
+		return myOp;
+	}
+
+	public String toString() {
+		String result = myKind.toString().toLowerCase() + " " + myInput.getName() + ": " + myState;
+		if (myState == State.RUNNING) {
+			result += String.format(" %.0f%%", 100 * getProgress());
+		}
+		if (!myMessage.isEmpty()) {
+			result += " (" + myMessage + ")";
+		}
+		return result;
+	}
+
+	// IHuffViewer the model of a running job talks to. It passes the model's
+	// output on and keeps the last error, so a job the model gave up on fails
+	// instead of popping up a dialog for every file.
+	private class JobViewer implements IHuffViewer {
+		private volatile String myError;
+
+		public void setModel(IHuffProcessor model) {
+		}
+
+		public void update(String s) {
+			myViewer.update(myInput.getName() + ": " + s);
+		}
+
+		public void showMessage(String s) {
+			myViewer.showMessage(s);
+		}
+
+		public void showError(String s) {
+			myError = s;
+		}
+	}
+}
@@ -0,0 +1,86 @@
+//import statements:
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// HuffJobQueue runs HuffJobs on a fixed number of threads, in the order they
+// were submitted, and keeps every job until it is cleared so a display can
+// show their states. The threads are daemons, so queued jobs don't keep the
+// program running once the window is closed.
+public class HuffJobQueue implements AutoCloseable {
+
+	// instance vars:
+	private final ExecutorService myExecutor;
+	// every job submitted and not cleared, oldest first. The display reads it
+	// far more often than jobs are added.
+	private final List<HuffJob> myJobs = new CopyOnWriteArrayList<>();
+
+	// Constructor:
+	// threads: number of jobs run at the same time.
+	// pre: threads > 0
+	public HuffJobQueue(int threads) {
+		// check precon:
+		if (threads <= 0) {
+			throw new IllegalArgumentException("need threads > 0");
+		}
+		myExecutor = Executors.newFixedThreadPool(threads, new JobThreadFactory());
+	}
+
+	// method queues job to run once a thread is free.
+	// pre: job != null, job was not submitted before
+	public void submit(HuffJob job) {
+		myJobs.add(job);
+		job.setFuture(myExecutor.submit(job));
+	}
+
+	// method returns the jobs submitted and not cleared, oldest first.
+	public List<HuffJob> getJobs() {
+		return new ArrayList<>(myJobs);
+	}
+
+	// method returns the number of jobs queued or running.
+	public int getActiveCount() {
+		int result = 0;
+		for (HuffJob job : myJobs) {
+			if (!job.isFinished()) {
+				result++;
+			}
+		}
+		return result;
+	}
+
+	// method cancels every job queued or running.
+	public void cancelAll() {
+		for (HuffJob job : myJobs) {
+			if (!job.isFinished()) {
+				job.cancel();
+			}
+		}
+	}
+
+	// method forgets the jobs that are done, failed or were cancelled.
+	public void clearFinished() {
+		myJobs.removeIf(HuffJob::isFinished);
+	}
+
+	// method cancels every job and stops the threads.
+	public void close() {
+		cancelAll();
+		myExecutor.shutdownNow();
+	}
+
+	// ThreadFactory that makes named daemon threads.
+	private static class JobThreadFactory implements ThreadFactory {
+		private final AtomicInteger myCount = new AtomicInteger();
+
+		public Thread newThread(Runnable r) {
+			Thread result = new Thread(r, "huff-job-" + myCount.incrementAndGet());
+			result.setDaemon(true);
+			return result;
+		}
+	}
+}
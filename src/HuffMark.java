@@ -1,76 +1,533 @@
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
 
 import javax.swing.JFileChooser;
 
+// HuffMark times compressing and uncompressing every file it is given. Each
+// file is read into memory, run through a few warmup cycles and then through
+// the measured cycles, every one of them checked to give back the original
+// bytes. Results are printed as text, CSV or JSON.
+//
+// java HuffMark [options] dir|file|glob ...
+// --warmup n   cycles run before measuring (default 2)
+// --reps n     measured cycles (default 5)
+// --format f   text, csv or json (default text)
+// --out file   write the results to file instead of standard out
+// --counts     use the count header format instead of the tree format
+// --keep       write the compressed version of each file next to it
+// --threads n  compress and uncompress all files at once on n threads with a
+//              BatchEngine and report the totals instead of each file
+// --budget mb  megabytes of file data the BatchEngine may hold in memory
+//              (default 256)
+// --context    compress and uncompress with the HuffContext of the thread
+//              instead of a SimpleHuffProcessor
+// --alloc-budget n  fail if a measured cycle allocates more than n bytes,
+//              e.g. --context --alloc-budget 0 checks that the context
+//              doesn't allocate once it is warmed up. The JIT allocates now
+//              and then while it compiles the cycle, so with a budget the
+//              warmup goes on until STABLE_CYCLES cycles in a row allocate
+//              the same (at most MAX_WARMUP cycles), and the allocation is
+//              measured over ALLOC_REPS cycles at least
+//
+// With no arguments a directory is chosen with a dialog, as before.
 public class HuffMark {
-	protected static JFileChooser ourOpenChooser = new JFileChooser(System.getProperties().getProperty("user.dir"));
-	static {
-		ourOpenChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
-	}
+	private static String SUFFIX = ".hf";
+	private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+	private static final double NANOS_PER_MILLI = 1e6;
+	// warmup cycles that must allocate the same before a budget is checked, the
+	// most warmup cycles run for it and the fewest cycles it is measured over.
+	private static final int STABLE_CYCLES = 20;
+	private static final int MAX_WARMUP = 2000;
+	private static final int ALLOC_REPS = 50;
+
+	private IHuffProcessor myHuffer;
+	private int myWarmup = 2;
+	private int myReps = 5;
+	private String myFormat = "text";
+	private int myHeaderFormat = IHuffProcessor.STORE_TREE;
+	private boolean myKeep;
+	private PrintStream myOutput = System.out;
+	private int myThreads;
+	private long myBudget = 256L << 20;
+	private boolean myContext;
+	// bytes a cycle may allocate, -1 for no limit.
+	private long myAllocBudget = -1;
+	// the compressed payload of a context cycle, kept between cycles.
+	private byte[] myPayload = new byte[0];
 
-	private double myTotalCompressTime;
 	private long myTotalUncompressedBytes;
 	private long myTotalCompressedBytes;
+	private long myTotalCompressNanos;
+	private long myTotalUncompressNanos;
+	private boolean myFailed;
+	private boolean myOverBudget;
 
-	private IHuffProcessor myHuffer;
-	private static String SUFFIX = ".hf";
-	private static boolean FAST_READER = true;
-
-	public void compress(File f) throws IOException {
+	// Result holds the measurements of one file.
+	private static class Result {
+		String name;
+		long bytes;
+		long compressedBytes;
+		long[] compressNanos;
+		long[] uncompressNanos;
+		// bytes allocated by one compress and uncompress cycle, -1 if unknown.
+		long allocatedBytes;
+		boolean overBudget;
+		boolean verified;
+	}
 
+	// method runs every cycle for one file.
+	// returns the measurements, or null if the file is skipped.
+	public Result mark(File f) throws IOException {
 		if (f.getName().endsWith(SUFFIX))
-			return; // don't read .hf files!
+			return null; // don't read .hf files!
 		if (f.isDirectory())
-			return; // don't read directories
+			return null; // don't read directories
 
-		double start = System.currentTimeMillis();
-		myHuffer.preprocessCompress(getFastByteReader(f), IHuffProcessor.STORE_COUNTS);
-		File outFile = new File(getCompressedName(f));
-		FileOutputStream out = new FileOutputStream(outFile);
-		System.out.println("compressing to: " + outFile.getCanonicalPath());
-		myHuffer.compress(getFastByteReader(f), out, true);
-		double end = System.currentTimeMillis();
-		double time = (end - start) / 1000.0;
+		if (myHuffer == null) {
+			myHuffer = new SimpleHuffProcessor();
+		}
+		byte[] data = Files.readAllBytes(f.toPath());
+		Result result = new Result();
+		result.name = f.getPath();
+		result.bytes = data.length;
+		result.compressNanos = new long[myReps];
+		result.uncompressNanos = new long[myReps];
+		result.verified = true;
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 2 + 64);
+		ByteArrayOutputStream uncompressed = new ByteArrayOutputStream(data.length + 1);
+		for (int i = 0; i < myWarmup; i++) {
+			result.verified &= cycle(data, compressed, uncompressed, null, 0);
+		}
+		int allocReps = myReps;
+		if (myAllocBudget >= 0) {
+			warmUpAllocation(data, compressed, uncompressed, result);
+			allocReps = Math.max(myReps, ALLOC_REPS);
+		}
+		// reading the counter allocates too, so what one read costs is taken off.
+		long overhead = getAllocatedBytes();
+		overhead = getAllocatedBytes() - overhead;
+		long allocated = getAllocatedBytes();
+		// the cycles past myReps are only measured for the budget.
+		for (int i = 0; i < allocReps; i++) {
+			result.verified &= cycle(data, compressed, uncompressed, i < myReps ? result : null, i);
+		}
+		if (allocated != -1 && allocReps > 0) {
+			result.allocatedBytes = Math.max(0, getAllocatedBytes() - allocated - overhead) / allocReps;
+		} else {
+			result.allocatedBytes = -1;
+		}
+		result.overBudget = myAllocBudget >= 0 && result.allocatedBytes > myAllocBudget;
+		myOverBudget |= result.overBudget;
+		result.compressedBytes = compressed.size();
+		if (myKeep) {
+			try (FileOutputStream out = new FileOutputStream(getCompressedName(f))) {
+				compressed.writeTo(out);
+			}
+		}
 
-		myTotalUncompressedBytes += f.length();
-		myTotalCompressedBytes += outFile.length();
-		myTotalCompressTime += time;
-		System.out.println("ratio: " + (double) outFile.length() / (double) f.length() * 100);
-		System.out.printf("%s from\t %d to\t %d in\t %.3f\n", f.getName(), f.length(), outFile.length(), time);
+		myTotalUncompressedBytes += result.bytes;
+		myTotalCompressedBytes += result.compressedBytes;
+		myTotalCompressNanos += median(result.compressNanos);
+		myTotalUncompressNanos += median(result.uncompressNanos);
+		myFailed |= !result.verified;
+		return result;
+	}
 
+	// helper method runs more warmup cycles until STABLE_CYCLES in a row
+	// allocate the same number of bytes, or MAX_WARMUP cycles were run in all.
+	private void warmUpAllocation(byte[] data, ByteArrayOutputStream compressed, ByteArrayOutputStream uncompressed,
+			Result result) throws IOException {
+		long last = -1;
+		int stable = 0;
+		for (int i = myWarmup; i < MAX_WARMUP && stable < STABLE_CYCLES; i++) {
+			long before = getAllocatedBytes();
+			result.verified &= cycle(data, compressed, uncompressed, null, 0);
+			long bytes = getAllocatedBytes() - before;
+			stable = bytes == last ? stable + 1 : 0;
+			last = bytes;
+		}
 	}
 
-	public void doMark() throws IOException {
-		if (myHuffer == null) {
-			myHuffer = new SimpleHuffProcessor();
+	// helper method compresses and uncompresses data once.
+	// result: where the times are stored at index rep, null for a warmup cycle.
+	// returns true if the uncompressed bytes are the original bytes.
+	private boolean cycle(byte[] data, ByteArrayOutputStream compressed, ByteArrayOutputStream uncompressed,
+			Result result, int rep) throws IOException {
+		compressed.reset();
+		uncompressed.reset();
+		if (myContext) {
+			return contextCycle(data, compressed, result, rep);
 		}
-		int action = ourOpenChooser.showOpenDialog(null);
-		if (action == JFileChooser.APPROVE_OPTION) {
-			File dir = ourOpenChooser.getSelectedFile();
-			File[] list = dir.listFiles();
-			for (File f : list) {
-				compress(f);
+		long start = System.nanoTime();
+		myHuffer.preprocessCompress(new ByteArrayInputStream(data), myHeaderFormat);
+		myHuffer.compress(new ByteArrayInputStream(data), compressed, true);
+		long middle = System.nanoTime();
+		myHuffer.uncompress(new ByteArrayInputStream(compressed.toByteArray()), uncompressed);
+		long end = System.nanoTime();
+		if (result != null) {
+			result.compressNanos[rep] = middle - start;
+			result.uncompressNanos[rep] = end - middle;
+		}
+		return Arrays.equals(data, uncompressed.toByteArray());
+	}
+
+	// helper method compresses and uncompresses data once with the HuffContext
+	// of this thread. Once warmed up nothing is allocated: compressed and
+	// myPayload keep their capacity and the data is compared in place.
+	private boolean contextCycle(byte[] data, ByteArrayOutputStream compressed, Result result, int rep)
+			throws IOException {
+		HuffContext context = HuffContext.get();
+		long start = System.nanoTime();
+		int size = context.compress(data, 0, data.length, myHeaderFormat);
+		long middle = System.nanoTime();
+		// the buffer is reused by uncompress, so the payload is copied out first.
+		if (myPayload.length < size) {
+			myPayload = new byte[size];
+		}
+		System.arraycopy(context.getBuffer(), 0, myPayload, 0, size);
+		compressed.write(myPayload, 0, size);
+		long copied = System.nanoTime();
+		int back = context.uncompress(myPayload, 0, size);
+		long end = System.nanoTime();
+		if (result != null) {
+			result.compressNanos[rep] = middle - start;
+			result.uncompressNanos[rep] = end - copied;
+		}
+		return Arrays.equals(data, 0, data.length, context.getBuffer(), 0, back);
+	}
+
+	// method marks every file named by the arguments and prints the results.
+	// returns true if every file was given back unchanged.
+	public boolean doMark(List<File> files) throws IOException {
+		List<Result> results = new ArrayList<>();
+		for (File f : files) {
+			Result r = mark(f);
+			if (r != null) {
+				results.add(r);
+				if (myFormat.equals("text")) {
+					printText(r);
+				}
 			}
-			System.out.println("--------");
-			System.out.printf("total bytes read: %d\n", myTotalUncompressedBytes);
-			System.out.printf("total compressed bytes %d\n", myTotalCompressedBytes);
-			System.out.printf("total percent compression %.3f\n",
+		}
+		if (myFormat.equals("csv")) {
+			printCsv(results);
+		} else if (myFormat.equals("json")) {
+			printJson(results);
+		} else {
+			myOutput.println("--------");
+			myOutput.printf("total bytes read: %d\n", myTotalUncompressedBytes);
+			myOutput.printf("total compressed bytes %d\n", myTotalCompressedBytes);
+			myOutput.printf("total percent compression %.3f\n",
 					100.0 * (1.0 - 1.0 * myTotalCompressedBytes / myTotalUncompressedBytes));
-			System.out.printf("compression time: %.3f\n", myTotalCompressTime);
+			myOutput.printf("compression time: %.3f\n", myTotalCompressNanos / 1e9);
+			myOutput.printf("uncompression time: %.3f\n", myTotalUncompressNanos / 1e9);
+		}
+		myOutput.flush();
+		return !myFailed;
+	}
+
+	// method compresses and uncompresses the files all at once with a
+	// BatchEngine, writing to temporary directories, then checks that every file
+	// came back unchanged. Files with the same name as an earlier one are
+	// skipped, since they would be written to the same place.
+	// returns true if every file was given back unchanged.
+	public boolean doBatch(List<File> files) throws IOException {
+		Map<String, File> byName = new LinkedHashMap<>();
+		for (File f : files) {
+			if (f.isFile() && !f.getName().endsWith(SUFFIX) && byName.putIfAbsent(f.getName(), f) != null) {
+				System.err.println("skipping " + f + ", same name as " + byName.get(f.getName()));
+			}
+		}
+		File compressedDir = Files.createTempDirectory("huffmark").toFile();
+		File uncompressedDir = Files.createTempDirectory("huffmark").toFile();
+		long compressNanos = 0;
+		long uncompressNanos = 0;
+		List<String> errors = new ArrayList<>();
+		try (BatchEngine compressor = new BatchEngine(myThreads, myBudget);
+				BatchEngine uncompressor = new BatchEngine(myThreads, myBudget)) {
+			compressor.setHeaderFormat(myHeaderFormat);
+			compressor.setForce(true);
+			compressor.setOutputDirectory(compressedDir);
+			uncompressor.setOutputDirectory(uncompressedDir);
+			long start = System.nanoTime();
+			compressor.compressAll(byName.values());
+			long middle = System.nanoTime();
+			uncompressor.uncompressAll(Arrays.asList(compressedDir.listFiles()));
+			long end = System.nanoTime();
+			compressNanos = middle - start;
+			uncompressNanos = end - middle;
+			errors.addAll(compressor.getErrors());
+			errors.addAll(uncompressor.getErrors());
+			myTotalUncompressedBytes = compressor.getBytesRead();
+			myTotalCompressedBytes = compressor.getBytesWritten();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			errors.add("interrupted");
+		}
+		for (File f : byName.values()) {
+			File back = new File(uncompressedDir, f.getName() + BatchEngine.UNHUFF_SUFFIX);
+			if (!back.exists() || !Arrays.equals(Files.readAllBytes(f.toPath()), Files.readAllBytes(back.toPath()))) {
+				errors.add(f + ": not given back unchanged");
+			}
+		}
+		for (File dir : new File[] { compressedDir, uncompressedDir }) {
+			for (File f : dir.listFiles()) {
+				f.delete();
+			}
+			dir.delete();
+		}
+		for (String error : errors) {
+			System.err.println(error);
+		}
+		double compressMBps = myTotalUncompressedBytes / BYTES_PER_MB / (compressNanos / 1e9);
+		double uncompressMBps = myTotalUncompressedBytes / BYTES_PER_MB / (uncompressNanos / 1e9);
+		if (myFormat.equals("csv")) {
+			myOutput.println("files,threads,bytes,compressed_bytes,compress_seconds,compress_mb_s,"
+					+ "uncompress_seconds,uncompress_mb_s,verified");
+			myOutput.printf(Locale.ROOT, "%d,%d,%d,%d,%.4f,%.3f,%.4f,%.3f,%b\n", byName.size(), myThreads,
+					myTotalUncompressedBytes, myTotalCompressedBytes, compressNanos / 1e9, compressMBps,
+					uncompressNanos / 1e9, uncompressMBps, errors.isEmpty());
+		} else if (myFormat.equals("json")) {
+			myOutput.printf(Locale.ROOT, "{\"files\":%d,\"threads\":%d,\"bytes\":%d,\"compressedBytes\":%d,"
+					+ "\"compressSeconds\":%.4f,\"compressMBps\":%.3f,\"uncompressSeconds\":%.4f,"
+					+ "\"uncompressMBps\":%.3f,\"verified\":%b}\n", byName.size(), myThreads, myTotalUncompressedBytes,
+					myTotalCompressedBytes, compressNanos / 1e9, compressMBps, uncompressNanos / 1e9, uncompressMBps,
+					errors.isEmpty());
+		} else {
+			myOutput.printf("%d files on %d threads\n", byName.size(), myThreads);
+			myOutput.printf("total bytes read: %d\n", myTotalUncompressedBytes);
+			myOutput.printf("total compressed bytes %d\n", myTotalCompressedBytes);
+			myOutput.printf("compression time: %.3f (%.2f MB/s)\n", compressNanos / 1e9, compressMBps);
+			myOutput.printf("uncompression time: %.3f (%.2f MB/s)\n", uncompressNanos / 1e9, uncompressMBps);
+		}
+		myOutput.flush();
+		return errors.isEmpty();
+	}
+
+	public void doMark() throws IOException {
+		JFileChooser chooser = new JFileChooser(System.getProperties().getProperty("user.dir"));
+		chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+		int action = chooser.showOpenDialog(null);
+		if (action == JFileChooser.APPROVE_OPTION) {
+			File dir = chooser.getSelectedFile();
+			doMark(Arrays.asList(dir.listFiles()));
 		}
 	}
 
 	public static void main(String[] args) throws IOException {
 		HuffMark hf = new HuffMark();
-		hf.doMark();
+		if (args.length == 0) {
+			hf.doMark();
+			return;
+		}
+		List<File> files = new ArrayList<>();
+		try {
+			for (int i = 0; i < args.length; i++) {
+				String arg = args[i];
+				if (arg.equals("--warmup")) {
+					hf.myWarmup = Integer.parseInt(args[++i]);
+				} else if (arg.equals("--reps")) {
+					hf.myReps = Integer.parseInt(args[++i]);
+				} else if (arg.equals("--format")) {
+					hf.myFormat = args[++i];
+					if (!Arrays.asList("text", "csv", "json").contains(hf.myFormat)) {
+						throw new IllegalArgumentException("unknown format " + hf.myFormat);
+					}
+				} else if (arg.equals("--out")) {
+					hf.myOutput = new PrintStream(new FileOutputStream(args[++i]), false, "UTF-8");
+				} else if (arg.equals("--counts")) {
+					hf.myHeaderFormat = IHuffProcessor.STORE_COUNTS;
+				} else if (arg.equals("--keep")) {
+					hf.myKeep = true;
+				} else if (arg.equals("--threads")) {
+					hf.myThreads = Integer.parseInt(args[++i]);
+				} else if (arg.equals("--budget")) {
+					hf.myBudget = Long.parseLong(args[++i]) << 20;
+				} else if (arg.equals("--context")) {
+					hf.myContext = true;
+				} else if (arg.equals("--alloc-budget")) {
+					hf.myAllocBudget = Long.parseLong(args[++i]);
+				} else if (arg.startsWith("--")) {
+					throw new IllegalArgumentException("unknown option " + arg);
+				} else {
+					files.addAll(expand(arg));
+				}
+			}
+			if (hf.myWarmup < 0 || hf.myReps < 1 || hf.myThreads < 0 || hf.myBudget < 0) {
+				throw new IllegalArgumentException("need warmup >= 0, reps >= 1, threads >= 0 and budget >= 0");
+			}
+		} catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+			System.err.println("HuffMark: " + e.getMessage());
+			System.err.println("usage: java HuffMark [--warmup n] [--reps n] [--format text|csv|json] "
+					+ "[--out file] [--counts] [--keep] [--threads n] [--budget mb] [--context] [--alloc-budget n] "
+					+ "dir|file|glob ...");
+			System.exit(2);
+		}
+		boolean ok = hf.myThreads > 0 ? hf.doBatch(files) : hf.doMark(files);
+		if (hf.myOutput != System.out) {
+			hf.myOutput.close();
+		}
+		if (!ok) {
+			System.err.println("HuffMark: a round trip did not give back the original file");
+			System.exit(1);
+		}
+		if (hf.myOverBudget) {
+			System.err.println("HuffMark: a cycle allocated more than " + hf.myAllocBudget + " bytes");
+			System.exit(1);
+		}
+	}
+
+	// helper method returns the files named by an argument: the file itself, the
+	// files in a directory or the files matching a glob such as data/*.txt or
+	// corpus/**.
+	private static List<File> expand(String arg) throws IOException {
+		List<File> files = new ArrayList<>();
+		File f = new File(arg);
+		if (f.isDirectory()) {
+			File[] list = f.listFiles();
+			Arrays.sort(list);
+			files.addAll(Arrays.asList(list));
+		} else if (f.exists()) {
+			files.add(f);
+		} else {
+			// walk from the part of the path before the first wildcard.
+			String pattern = arg.replace(File.separatorChar, '/');
+			int wildcard = 0;
+			while (wildcard < pattern.length() && "*?[{".indexOf(pattern.charAt(wildcard)) == -1) {
+				wildcard++;
+			}
+			if (wildcard == pattern.length()) {
+				throw new IllegalArgumentException("no such file " + arg);
+			}
+			int slash = pattern.lastIndexOf('/', wildcard);
+			Path root = Paths.get(slash == -1 ? "." : pattern.substring(0, slash + 1));
+			// a pattern without a directory matches paths relative to the current one.
+			boolean relative = slash == -1;
+			PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+			try (Stream<Path> paths = Files.walk(root)) {
+				paths.map(p -> relative ? root.relativize(p) : p)
+						.filter(p -> Files.isRegularFile(p) && matcher.matches(p)).sorted()
+						.forEach(p -> files.add(p.toFile()));
+			}
+		}
+		return files;
+	}
+
+	private void printText(Result r) {
+		myOutput.printf(Locale.ROOT, "%s from\t %d to\t %d ratio %.3f compress %.2f MB/s p50 %.3f p99 %.3f ms"
+				+ " uncompress %.2f MB/s p50 %.3f p99 %.3f ms alloc %d%s\n", r.name, r.bytes, r.compressedBytes,
+				ratio(r), mbPerSecond(r.bytes, r.compressNanos), median(r.compressNanos) / NANOS_PER_MILLI,
+				percentile(r.compressNanos, 0.99) / NANOS_PER_MILLI, mbPerSecond(r.bytes, r.uncompressNanos),
+				median(r.uncompressNanos) / NANOS_PER_MILLI, percentile(r.uncompressNanos, 0.99) / NANOS_PER_MILLI,
+				r.allocatedBytes, (r.overBudget ? " OVER ALLOC BUDGET" : "") + (r.verified ? "" : " VERIFY FAILED"));
+	}
+
+	private void printCsv(List<Result> results) {
+		myOutput.println("file,bytes,compressed_bytes,ratio,compress_mb_s,compress_p50_ms,compress_p99_ms,"
+				+ "uncompress_mb_s,uncompress_p50_ms,uncompress_p99_ms,allocated_bytes,verified");
+		for (Result r : results) {
+			String name = r.name;
+			if (name.indexOf(',') != -1 || name.indexOf('"') != -1 || name.indexOf('\n') != -1) {
+				name = '"' + name.replace("\"", "\"\"") + '"';
+			}
+			myOutput.printf(Locale.ROOT, "%s,%d,%d,%.5f,%.3f,%.4f,%.4f,%.3f,%.4f,%.4f,%d,%b\n", name, r.bytes,
+					r.compressedBytes, ratio(r), mbPerSecond(r.bytes, r.compressNanos),
+					median(r.compressNanos) / NANOS_PER_MILLI, percentile(r.compressNanos, 0.99) / NANOS_PER_MILLI,
+					mbPerSecond(r.bytes, r.uncompressNanos), median(r.uncompressNanos) / NANOS_PER_MILLI,
+					percentile(r.uncompressNanos, 0.99) / NANOS_PER_MILLI, r.allocatedBytes, r.verified);
+		}
+	}
+
+	private void printJson(List<Result> results) {
+		myOutput.printf(Locale.ROOT, "{\"warmup\":%d,\"reps\":%d,\"files\":[", myWarmup, myReps);
+		for (int i = 0; i < results.size(); i++) {
+			Result r = results.get(i);
+			myOutput.printf(Locale.ROOT,
+					"%s\n{\"file\":%s,\"bytes\":%d,\"compressedBytes\":%d,\"ratio\":%.5f,"
+							+ "\"compressMBps\":%.3f,\"compressP50Ms\":%.4f,\"compressP99Ms\":%.4f,"
+							+ "\"uncompressMBps\":%.3f,\"uncompressP50Ms\":%.4f,\"uncompressP99Ms\":%.4f,"
+							+ "\"allocatedBytes\":%d,\"verified\":%b}",
+					i == 0 ? "" : ",", jsonString(r.name), r.bytes, r.compressedBytes, ratio(r),
+					mbPerSecond(r.bytes, r.compressNanos), median(r.compressNanos) / NANOS_PER_MILLI,
+					percentile(r.compressNanos, 0.99) / NANOS_PER_MILLI, mbPerSecond(r.bytes, r.uncompressNanos),
+					median(r.uncompressNanos) / NANOS_PER_MILLI, percentile(r.uncompressNanos, 0.99) / NANOS_PER_MILLI,
+					r.allocatedBytes, r.verified);
+		}
+		myOutput.printf(Locale.ROOT, "],\n\"total\":{\"bytes\":%d,\"compressedBytes\":%d,\"compressSeconds\":%.4f,"
+				+ "\"uncompressSeconds\":%.4f,\"verified\":%b}}\n", myTotalUncompressedBytes, myTotalCompressedBytes,
+				myTotalCompressNanos / 1e9, myTotalUncompressNanos / 1e9, !myFailed);
+	}
+
+	// helper method returns s as a JSON string literal.
+	private static String jsonString(String s) {
+		StringBuilder sb = new StringBuilder("\"");
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20) {
+				sb.append(String.format("\\u%04x", (int) c));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+
+	private static double ratio(Result r) {
+		return r.bytes == 0 ? 0 : (double) r.compressedBytes / r.bytes;
+	}
+
+	// helper method returns the throughput at the median time.
+	private static double mbPerSecond(long bytes, long[] nanos) {
+		long median = median(nanos);
+		return median == 0 ? 0 : bytes / BYTES_PER_MB / (median / 1e9);
+	}
+
+	private static long median(long[] nanos) {
+		return percentile(nanos, 0.5);
+	}
+
+	// helper method returns the nearest-rank percentile p of the times.
+	private static long percentile(long[] nanos, double p) {
+		if (nanos.length == 0) {
+			return 0;
+		}
+		long[] sorted = nanos.clone();
+		Arrays.sort(sorted);
+		int rank = (int) Math.ceil(p * sorted.length);
+		return sorted[Math.max(0, rank - 1)];
+	}
+
+	// helper method returns the bytes allocated by this thread so far, or -1 if
+	// the JVM can't tell.
+	private static long getAllocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+			if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+				return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1;
 	}
 
 	private String getCompressedName(File f) {
@@ -87,28 +544,4 @@ public class HuffMark {
 		return newName;
 	}
 
-	private InputStream getFastByteReader(File f) throws FileNotFoundException {
-
-		if (!FAST_READER) {
-			return new FileInputStream(f);
-		}
-
-		ByteBuffer buffer = null;
-		try {
-			FileChannel channel = new FileInputStream(f).getChannel();
-			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
-			byte[] barray = new byte[buffer.limit()];
-
-			if (barray.length != channel.size()) {
-				System.err.println(String.format("Reading %s error: lengths differ %d %ld\n", f.getName(),
-						barray.length, channel.size()));
-			}
-			buffer.get(barray);
-			return new ByteArrayInputStream(barray);
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
-		return null;
-	}
-
 }
@@ -0,0 +1,193 @@
+//import statements:
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// HuffOperation is one call to the model that is being watched: what it is,
+// the thread running it and how much of its input it has read. The thread
+// running the operation adds to the count once per buffer it reads, and any
+// other thread may read it at any time, e.g. a UI timer showing the progress.
+// The other thread may also cancel the operation, the next read of a tracked
+// stream then throws an InterruptedIOException.
+public class HuffOperation {
+
+	// class constants:
+	private static final AtomicLong NEXT_ID = new AtomicLong();
+	private static final double BYTES_PER_MB = 1 << 20;
+	// the encode and decode loops check for an interrupt once every this many
+	// chunks, a power of 2.
+	public static final int CHECK_CHUNKS = 1 << 16;
+
+	// instance vars:
+	private final long myId;
+	// PREPROCESS, COMPRESS or UNCOMPRESS.
+	private final IHuffMetrics.Phase myKind;
+	private final String myThread;
+	private final long myStart;
+	// bytes of input the operation will read, -1 if that isn't known.
+	private final long myTotal;
+	private final AtomicLong myDone = new AtomicLong();
+	private volatile long myOutput;
+	private volatile boolean mySucceeded;
+	private volatile boolean myFinished;
+	private volatile boolean myCancelled;
+
+	// Constructor:
+	// kind: the call, PREPROCESS, COMPRESS or UNCOMPRESS.
+	// total: bytes of input the operation will read, -1 if unknown.
+	public HuffOperation(IHuffMetrics.Phase kind, long total) {
+		myId = NEXT_ID.incrementAndGet();
+		myKind = kind;
+		myThread = Thread.currentThread().getName();
+		myStart = System.nanoTime();
+		myTotal = total;
+	}
+
+	// method returns a stream that reads in and adds what it reads to the
+	// progress of this operation.
+	// pre: in != null
+	public InputStream track(InputStream in) {
+		return new ProgressInputStream(in);
+	}
+
+	// method adds bytes of input read to the progress.
+	public void addDone(long bytes) {
+		myDone.addAndGet(bytes);
+	}
+
+	// method records the bytes written and whether the operation worked.
+	public void finish(long output, boolean succeeded) {
+		myOutput = output;
+		mySucceeded = succeeded;
+		myFinished = true;
+	}
+
+	// method asks the operation to stop. Streams made by track throw on their
+	// next read.
+	public void cancel() {
+		myCancelled = true;
+	}
+
+	// method returns true if cancel was called.
+	public boolean isCancelled() {
+		return myCancelled;
+	}
+
+	// method returns true once finish was called.
+	public boolean isFinished() {
+		return myFinished;
+	}
+
+	// method throws an InterruptedIOException if the current thread was
+	// interrupted, e.g. by cancelling the Future of a job running it. The
+	// encode and decode loops call it once per block or every CHECK_CHUNKS
+	// chunks, so a cancelled job stops even when its input is in memory.
+	public static void checkInterrupted() throws InterruptedIOException {
+		if (Thread.currentThread().isInterrupted()) {
+			throw new InterruptedIOException("interrupted");
+		}
+	}
+
+	// method returns a number that is different for every operation.
+	public long getId() {
+		return myId;
+	}
+
+	// method returns the call this operation is.
+	public IHuffMetrics.Phase getKind() {
+		return myKind;
+	}
+
+	// method returns the name of the thread that started the operation.
+	public String getThreadName() {
+		return myThread;
+	}
+
+	// method returns the bytes of input the operation will read, -1 if unknown.
+	public long getTotal() {
+		return myTotal;
+	}
+
+	// method returns the bytes of input read so far.
+	public long getDone() {
+		return myDone.get();
+	}
+
+	// method returns the fraction of the input read so far, -1 if the size of
+	// the input isn't known.
+	public double getProgress() {
+		if (myTotal <= 0) {
+			return myTotal == 0 ? 1 : -1;
+		}
+		return Math.min(1, (double) getDone() / myTotal);
+	}
+
+	// method returns the bytes written, once finished.
+	public long getOutput() {
+		return myOutput;
+	}
+
+	// method returns true if the operation finished and worked.
+	public boolean isSucceeded() {
+		return mySucceeded;
+	}
+
+	// method returns the time since the operation started.
+	public long getElapsedNanos() {
+		return System.nanoTime() - myStart;
+	}
+
+	public String toString() {
+		String result = "#" + myId + " " + myKind + " on " + myThread + ": "
+				+ String.format("%.1f", getDone() / BYTES_PER_MB);
+		if (myTotal >= 0) {
+			result += String.format(" of %.1f MB (%.0f%%)", myTotal / BYTES_PER_MB, 100 * getProgress());
+		} else {
+			result += " MB";
+		}
+		return result + String.format(", %.1f s", getElapsedNanos() / 1e9);
+	}
+
+	// InputStream that adds the bytes read through it to the progress. It sits
+	// under a buffer, so it is called once per buffer filled.
+	private class ProgressInputStream extends FilterInputStream {
+
+		public ProgressInputStream(InputStream in) {
+			super(in);
+		}
+
+		public int read() throws IOException {
+			checkCancelled();
+			int b = super.read();
+			if (b != -1) {
+				addDone(1);
+			}
+			return b;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			checkCancelled();
+			int n = super.read(b, off, len);
+			if (n > 0) {
+				addDone(n);
+			}
+			return n;
+		}
+
+		public long skip(long n) throws IOException {
+			checkCancelled();
+			long skipped = super.skip(n);
+			addDone(skipped);
+			return skipped;
+		}
+
+		// helper method throws if the operation was cancelled.
+		private void checkCancelled() throws InterruptedIOException {
+			if (myCancelled) {
+				throw new InterruptedIOException("cancelled");
+			}
+		}
+	}
+}
@@ -0,0 +1,402 @@
+//import statements:
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// HuffPipeline moves the reading and writing of a compress call onto threads
+// of their own, so the disk is read ahead and written behind while the
+// encoder runs:
+//
+// huffer.compress(HuffPipeline.reading(in), HuffPipeline.writing(out), force);
+//
+// Each stage passes BUFFERS direct buffers of BUFFER_SIZE bytes to and from
+// the encoder over two bounded queues, one of buffers to fill and one of
+// buffers filled. While the encoder works through one buffer the stage fills
+// or empties the others, and a stage that gets BUFFERS ahead waits for the
+// encoder. Files are read with positional reads on their channel. A stage's
+// thread starts on the first read or write and ends when the stream is
+// closed, and its buffers are kept for the next stage.
+public class HuffPipeline {
+
+	// class constants:
+	public static final int BUFFER_SIZE = 1 << 16;
+	// buffers each stage has, at least two so one is filled while another is
+	// used.
+	public static final int BUFFERS = 4;
+	// the most buffers kept between stages.
+	private static final int MAX_POOLED = 16 * BUFFERS;
+	// how long close waits for a read stage's thread to end before giving up its
+	// buffers. A write stage's thread is waited for until it ends, since the
+	// sink can't be closed before everything is written.
+	private static final long JOIN_MILLIS = 1000;
+	// buffer put on the filled queue after the last one.
+	private static final ByteBuffer END = ByteBuffer.allocate(0);
+	// direct buffers left by stages that ended.
+	private static final BlockingQueue<ByteBuffer> POOL = new ArrayBlockingQueue<>(MAX_POOLED);
+
+	// the class is never instantiated.
+	private HuffPipeline() {
+	}
+
+	// method returns a stream of the data in in, read ahead by a stage of its own.
+	// pre: in != null
+	// post: closing the result closes in.
+	public static InputStream reading(InputStream in) {
+		// check precon:
+		if (in == null) {
+			throw new IllegalArgumentException("InputStream cannot equal null");
+		}
+		return new ReadStage(in);
+	}
+
+	// method returns a stream whose data is written to out by a stage of its own.
+	// flush and close wait until everything written before is in out.
+	// pre: out != null
+	// post: closing the result closes out.
+	public static OutputStream writing(OutputStream out) {
+		// check precon:
+		if (out == null) {
+			throw new IllegalArgumentException("OutputStream cannot equal null");
+		}
+		return new WriteStage(out);
+	}
+
+	// helper method returns a cleared direct buffer, one left by an earlier stage
+	// if there is one.
+	private static ByteBuffer takeBuffer() {
+		ByteBuffer result = POOL.poll();
+		if (result == null) {
+			result = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		}
+		result.clear();
+		return result;
+	}
+
+	// helper method waits for the thread of a stage to end, then keeps its
+	// buffers for later stages. Buffers of a thread that doesn't end, like one
+	// stuck reading a terminal, are left to it.
+	// millis: how long to wait, 0 to wait until the thread ends.
+	private static void recycle(Thread thread, ByteBuffer[] buffers, long millis) throws InterruptedIOException {
+		if (thread != null) {
+			try {
+				thread.join(millis);
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException("interrupted");
+			}
+			if (thread.isAlive()) {
+				return;
+			}
+		}
+		for (ByteBuffer buffer : buffers) {
+			POOL.offer(buffer);
+		}
+	}
+
+	// helper method puts buffer on queue, which never waits since a queue holds
+	// every buffer of its stage.
+	private static void put(BlockingQueue<ByteBuffer> queue, ByteBuffer buffer) {
+		queue.offer(buffer);
+	}
+
+	// InputStream of the buffers a reader thread fills.
+	private static class ReadStage extends InputStream implements Runnable {
+		private final InputStream mySource;
+		// the channel read, positionally if it is a file.
+		private final ReadableByteChannel myChannel;
+		private final FileChannel myFile;
+		private long myPosition;
+		private final ByteBuffer[] myBuffers = new ByteBuffer[BUFFERS];
+		// buffers to fill, and buffers filled in the order they were read. Each can
+		// hold every buffer and END.
+		private final BlockingQueue<ByteBuffer> myEmpty = new ArrayBlockingQueue<>(BUFFERS + 1);
+		private final BlockingQueue<ByteBuffer> myFull = new ArrayBlockingQueue<>(BUFFERS + 1);
+		// the buffer being read from, null before the first read.
+		private ByteBuffer myCurrent;
+		private Thread myThread;
+		// what went wrong reading, passed on once the buffers before it are read.
+		private volatile IOException myError;
+		private boolean myClosed;
+
+		ReadStage(InputStream in) {
+			mySource = in;
+			if (in instanceof FileInputStream) {
+				myFile = ((FileInputStream) in).getChannel();
+				myChannel = myFile;
+			} else {
+				myFile = null;
+				myChannel = Channels.newChannel(in);
+			}
+			for (int i = 0; i < BUFFERS; i++) {
+				myBuffers[i] = takeBuffer();
+				put(myEmpty, myBuffers[i]);
+			}
+		}
+
+		// method fills buffers until the source ends, runs on the stage's thread.
+		public void run() {
+			try {
+				boolean more = true;
+				while (more) {
+					ByteBuffer buffer = myEmpty.take();
+					buffer.clear();
+					more = fill(buffer);
+					buffer.flip();
+					if (buffer.hasRemaining()) {
+						put(myFull, buffer);
+					}
+				}
+			} catch (IOException e) {
+				myError = e;
+			} catch (InterruptedException e) {
+				// closed before the end, nobody reads what is left.
+			}
+			put(myFull, END);
+		}
+
+		// helper method reads into buffer until it is full or the source ends.
+		// returns false once the source has ended.
+		private boolean fill(ByteBuffer buffer) throws IOException {
+			while (buffer.hasRemaining()) {
+				int n = myFile != null ? myFile.read(buffer, myPosition) : myChannel.read(buffer);
+				if (n == -1) {
+					return false;
+				}
+				myPosition += n;
+			}
+			return true;
+		}
+
+		public int read() throws IOException {
+			if (!next()) {
+				return -1;
+			}
+			return myCurrent.get() & 0xff;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (!next()) {
+				return -1;
+			}
+			int n = Math.min(len, myCurrent.remaining());
+			myCurrent.get(b, off, n);
+			return n;
+		}
+
+		public int available() {
+			return myCurrent == null || myCurrent == END ? 0 : myCurrent.remaining();
+		}
+
+		// helper method makes sure myCurrent has bytes left, giving the buffers
+		// read back to the reader thread.
+		// returns false at the end of the data.
+		private boolean next() throws IOException {
+			if (myClosed) {
+				throw new IOException("Stream closed");
+			}
+			if (myCurrent == null) {
+				myPosition = myFile != null ? myFile.position() : 0;
+				myThread = new Thread(this, "huff-read");
+				myThread.setDaemon(true);
+				myThread.start();
+			} else if (myCurrent.hasRemaining()) {
+				return true;
+			} else if (myCurrent == END) {
+				return false;
+			} else {
+				put(myEmpty, myCurrent);
+			}
+			try {
+				myCurrent = myFull.take();
+			} catch (InterruptedException e) {
+				close();
+				throw new InterruptedIOException("interrupted");
+			}
+			if (myCurrent == END && myError != null) {
+				throw myError;
+			}
+			return myCurrent != END;
+		}
+
+		public void close() throws IOException {
+			if (myClosed) {
+				return;
+			}
+			myClosed = true;
+			if (myThread != null) {
+				myThread.interrupt();
+			}
+			try {
+				recycle(myThread, myBuffers, JOIN_MILLIS);
+			} finally {
+				mySource.close();
+			}
+		}
+	}
+
+	// OutputStream that fills buffers a writer thread empties.
+	private static class WriteStage extends OutputStream implements Runnable {
+		private final OutputStream mySink;
+		private final WritableByteChannel myChannel;
+		private final ByteBuffer[] myBuffers = new ByteBuffer[BUFFERS];
+		// buffers to fill, and buffers filled in the order they were written. Each
+		// can hold every buffer and END.
+		private final BlockingQueue<ByteBuffer> myEmpty = new ArrayBlockingQueue<>(BUFFERS + 1);
+		private final BlockingQueue<ByteBuffer> myFull = new ArrayBlockingQueue<>(BUFFERS + 1);
+		// the buffer being filled, null if none is.
+		private ByteBuffer myCurrent;
+		private Thread myThread;
+		// what went wrong writing, thrown by the next call.
+		private volatile IOException myError;
+		private boolean myClosed;
+
+		WriteStage(OutputStream out) {
+			mySink = out;
+			if (out instanceof FileOutputStream) {
+				myChannel = ((FileOutputStream) out).getChannel();
+			} else {
+				myChannel = Channels.newChannel(out);
+			}
+			for (int i = 0; i < BUFFERS; i++) {
+				myBuffers[i] = takeBuffer();
+				put(myEmpty, myBuffers[i]);
+			}
+		}
+
+		// method writes buffers until END, runs on the stage's thread. After an
+		// error the buffers are still given back, so the encoder doesn't wait
+		// for ever, and the error is thrown by its next call.
+		public void run() {
+			try {
+				ByteBuffer buffer = null;
+				while ((buffer = myFull.take()) != END) {
+					buffer.flip();
+					try {
+						while (myError == null && buffer.hasRemaining()) {
+							myChannel.write(buffer);
+						}
+					} catch (IOException e) {
+						myError = e;
+					}
+					buffer.clear();
+					put(myEmpty, buffer);
+				}
+			} catch (InterruptedException e) {
+				// closed without the rest of the data.
+			}
+		}
+
+		public void write(int b) throws IOException {
+			current().put((byte) b);
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				ByteBuffer buffer = current();
+				int n = Math.min(len, buffer.remaining());
+				buffer.put(b, off, n);
+				off += n;
+				len -= n;
+			}
+		}
+
+		// helper method returns a buffer with room left, handing a full one to the
+		// writer thread.
+		private ByteBuffer current() throws IOException {
+			check();
+			if (myCurrent != null && !myCurrent.hasRemaining()) {
+				handOff();
+			}
+			if (myCurrent == null) {
+				if (myThread == null) {
+					myThread = new Thread(this, "huff-write");
+					myThread.setDaemon(true);
+					myThread.start();
+				}
+				myCurrent = take();
+			}
+			return myCurrent;
+		}
+
+		// helper method hands the buffer being filled to the writer thread.
+		private void handOff() {
+			if (myCurrent != null && myCurrent.position() > 0) {
+				put(myFull, myCurrent);
+				myCurrent = null;
+			}
+		}
+
+		// helper method waits for a buffer to fill.
+		private ByteBuffer take() throws IOException {
+			try {
+				return myEmpty.take();
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException("interrupted");
+			}
+		}
+
+		// helper method throws the error the writer thread had, if it had one.
+		private void check() throws IOException {
+			if (myClosed) {
+				throw new IOException("Stream closed");
+			}
+			if (myError != null) {
+				throw myError;
+			}
+		}
+
+		// method waits until everything written is in the sink, then flushes it.
+		public void flush() throws IOException {
+			check();
+			if (myThread != null) {
+				handOff();
+				// every buffer is back once the writer thread has emptied them.
+				ByteBuffer keep = myCurrent;
+				int held = keep == null ? 0 : 1;
+				ByteBuffer[] taken = new ByteBuffer[BUFFERS - held];
+				for (int i = 0; i < taken.length; i++) {
+					taken[i] = take();
+				}
+				for (ByteBuffer buffer : taken) {
+					put(myEmpty, buffer);
+				}
+				check();
+			}
+			mySink.flush();
+		}
+
+		public void close() throws IOException {
+			if (myClosed) {
+				return;
+			}
+			try {
+				if (myThread != null) {
+					handOff();
+					put(myFull, END);
+				}
+				// the writer thread ends after the last buffer, however slow the sink.
+				recycle(myThread, myBuffers, 0);
+				myClosed = true;
+				if (myError != null) {
+					throw myError;
+				}
+				mySink.flush();
+			} finally {
+				myClosed = true;
+				mySink.close();
+			}
+		}
+	}
+}
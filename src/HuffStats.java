@@ -0,0 +1,267 @@
+//import statements:
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// HuffStats is an IHuffMetrics that shows what the models attached to it are
+// doing through JMX, for a service that runs many SimpleHuffProcessors at once.
+// Attach the shared instance to every processor:
+//
+// huffer.setMetrics(HuffStats.getInstance());
+//
+// It keeps totals since the start, the same values over the last
+// WINDOW_SECONDS seconds, and the calls running now with their progress. Every
+// value is kept in LongAdders, so workers finishing at the same time don't
+// contend on them. The recent values are kept per second, a second's values
+// are replaced by the first worker to report in the same slot a window later.
+public class HuffStats implements IHuffMetrics, HuffStatsMBean {
+
+	// class constants:
+	public static final String OBJECT_NAME = "huff:type=HuffStats";
+	public static final int WINDOW_SECONDS = 60;
+	private static final double BYTES_PER_MB = 1 << 20;
+	private static final double NANOS_PER_SECOND = 1e9;
+	// the values kept per second.
+	private static final int ENCODE_BYTES = 0;
+	private static final int ENCODE_NANOS = 1;
+	private static final int DECODE_BYTES = 2;
+	private static final int DECODE_NANOS = 3;
+	private static final int FILES = 4;
+	private static final int ERRORS = 5;
+	private static final int FIELDS = 6;
+
+	// the instance registered with the platform MBean server.
+	private static HuffStats theInstance;
+
+	// instance vars:
+	private final LongAdder myBytesIn = new LongAdder();
+	private final LongAdder myBytesOut = new LongAdder();
+	private final LongAdder myFiles = new LongAdder();
+	private final LongAdder myErrors = new LongAdder();
+	// original and compressed bytes of the files compressed.
+	private final LongAdder myOriginalBytes = new LongAdder();
+	private final LongAdder myCompressedBytes = new LongAdder();
+	private final LongAdder myEncodeBytes = new LongAdder();
+	private final LongAdder myEncodeNanos = new LongAdder();
+	private final LongAdder myDecodeBytes = new LongAdder();
+	private final LongAdder myDecodeNanos = new LongAdder();
+	private final Window myWindow = new Window(WINDOW_SECONDS);
+	// the operations running now, by id.
+	private final Map<Long, HuffOperation> myActive = new ConcurrentHashMap<>();
+
+	// method returns the instance registered with the platform MBean server as
+	// OBJECT_NAME, registering it the first time.
+	public static synchronized HuffStats getInstance() {
+		if (theInstance == null) {
+			HuffStats stats = new HuffStats();
+			try {
+				stats.register(ManagementFactory.getPlatformMBeanServer(), new ObjectName(OBJECT_NAME));
+			} catch (JMException e) {
+				throw new IllegalStateException("can't register " + OBJECT_NAME + ": " + e);
+			}
+			theInstance = stats;
+		}
+		return theInstance;
+	}
+
+	// method registers this with server under name.
+	// pre: server != null, name != null
+	public void register(MBeanServer server, ObjectName name) throws JMException {
+		server.registerMBean(this, name);
+	}
+
+	public void operationStarted(HuffOperation op) {
+		myActive.put(op.getId(), op);
+	}
+
+	public void operationEnded(HuffOperation op) {
+		myActive.remove(op.getId());
+		if (!op.isSucceeded()) {
+			myErrors.increment();
+			myWindow.add(ERRORS, 1);
+		} else if (op.getKind() == Phase.COMPRESS) {
+			myOriginalBytes.add(op.getDone());
+			myCompressedBytes.add(op.getOutput());
+		}
+	}
+
+	public void phaseStarted(Phase phase) {
+	}
+
+	public void phaseEnded(Phase phase, long nanos, long bytes) {
+		if (phase == Phase.COMPRESS) {
+			myEncodeBytes.add(bytes);
+			myEncodeNanos.add(nanos);
+			myWindow.add(ENCODE_BYTES, bytes);
+			myWindow.add(ENCODE_NANOS, nanos);
+		} else if (phase == Phase.UNCOMPRESS) {
+			myDecodeBytes.add(bytes);
+			myDecodeNanos.add(nanos);
+			myWindow.add(DECODE_BYTES, bytes);
+			myWindow.add(DECODE_NANOS, nanos);
+		}
+	}
+
+	public void count(Counter counter, long amount) {
+		if (counter == Counter.BYTES_READ) {
+			myBytesIn.add(amount);
+		} else if (counter == Counter.BYTES_WRITTEN) {
+			myBytesOut.add(amount);
+		} else if (counter == Counter.FILES) {
+			myFiles.add(amount);
+			myWindow.add(FILES, amount);
+		}
+	}
+
+	public long getBytesIn() {
+		return myBytesIn.sum();
+	}
+
+	public long getBytesOut() {
+		return myBytesOut.sum();
+	}
+
+	public long getFilesProcessed() {
+		return myFiles.sum();
+	}
+
+	public long getErrors() {
+		return myErrors.sum();
+	}
+
+	public double getAverageRatio() {
+		long original = myOriginalBytes.sum();
+		return original == 0 ? 0 : (double) myCompressedBytes.sum() / original;
+	}
+
+	public double getEncodeMBPerSecond() {
+		return getRate(myEncodeBytes.sum(), myEncodeNanos.sum());
+	}
+
+	public double getDecodeMBPerSecond() {
+		return getRate(myDecodeBytes.sum(), myDecodeNanos.sum());
+	}
+
+	public int getWindowSeconds() {
+		return WINDOW_SECONDS;
+	}
+
+	public double getRecentEncodeMBPerSecond() {
+		return getRate(myWindow.sum(ENCODE_BYTES), myWindow.sum(ENCODE_NANOS));
+	}
+
+	public double getRecentDecodeMBPerSecond() {
+		return getRate(myWindow.sum(DECODE_BYTES), myWindow.sum(DECODE_NANOS));
+	}
+
+	public long getRecentFilesProcessed() {
+		return myWindow.sum(FILES);
+	}
+
+	public long getRecentErrors() {
+		return myWindow.sum(ERRORS);
+	}
+
+	public int getInFlightOperations() {
+		return myActive.size();
+	}
+
+	public String[] getActiveOperations() {
+		List<String> result = new ArrayList<>();
+		for (HuffOperation op : myActive.values()) {
+			result.add(op.toString());
+		}
+		return result.toArray(new String[result.size()]);
+	}
+
+	public void reset() {
+		LongAdder[] totals = { myBytesIn, myBytesOut, myFiles, myErrors, myOriginalBytes, myCompressedBytes,
+				myEncodeBytes, myEncodeNanos, myDecodeBytes, myDecodeNanos };
+		for (LongAdder total : totals) {
+			total.reset();
+		}
+		myWindow.reset();
+	}
+
+	// helper method returns MB per second, 0 if no time was spent.
+	private static double getRate(long bytes, long nanos) {
+		return nanos == 0 ? 0 : bytes / BYTES_PER_MB / (nanos / NANOS_PER_SECOND);
+	}
+
+	// FIELDS values for each of the last few seconds. Each second has a slot,
+	// reused a window later by swapping in a new Second, so nothing added to the
+	// new second is cleared.
+	private static class Window {
+		private final int mySeconds;
+		// the second each slot holds, null if it has none yet.
+		private final AtomicReferenceArray<Second> mySlots;
+
+		private Window(int seconds) {
+			mySeconds = seconds;
+			mySlots = new AtomicReferenceArray<>(seconds);
+		}
+
+		// helper method returns the current second.
+		private static long now() {
+			return (long) (System.nanoTime() / NANOS_PER_SECOND);
+		}
+
+		// method adds amount to field of the current second.
+		private void add(int field, long amount) {
+			long now = now();
+			int slot = (int) Math.floorMod(now, (long) mySeconds);
+			Second second = mySlots.get(slot);
+			// the first to report in a new second swaps in a cleared one, the others
+			// add to it.
+			while (second == null || second.myStamp < now) {
+				Second next = new Second(now);
+				if (mySlots.compareAndSet(slot, second, next)) {
+					second = next;
+				} else {
+					second = mySlots.get(slot);
+				}
+			}
+			second.myValues[field].add(amount);
+		}
+
+		// method returns the total of field over the window.
+		private long sum(int field) {
+			long now = now();
+			long total = 0;
+			for (int slot = 0; slot < mySeconds; slot++) {
+				Second second = mySlots.get(slot);
+				if (second != null && now - second.myStamp < mySeconds) {
+					total += second.myValues[field].sum();
+				}
+			}
+			return total;
+		}
+
+		// method clears every slot.
+		private void reset() {
+			for (int slot = 0; slot < mySeconds; slot++) {
+				mySlots.set(slot, null);
+			}
+		}
+	}
+
+	// the FIELDS values of one second.
+	private static class Second {
+		private final long myStamp;
+		private final LongAdder[] myValues = new LongAdder[FIELDS];
+
+		private Second(long stamp) {
+			myStamp = stamp;
+			for (int i = 0; i < FIELDS; i++) {
+				myValues[i] = new LongAdder();
+			}
+		}
+	}
+}
@@ -0,0 +1,85 @@
+/**
+ * The management interface of <code>HuffStats</code>, seen through JMX
+ * as <tt>huff:type=HuffStats</tt>. Totals are since the start or the
+ * last <code>reset</code>; the recent values cover the last
+ * <code>getWindowSeconds</code> seconds.
+ */
+public interface HuffStatsMBean {
+
+    /**
+     * @return the bytes read by compress and uncompress calls that worked
+     */
+    public long getBytesIn();
+
+    /**
+     * @return the bytes written by compress and uncompress calls that worked
+     */
+    public long getBytesOut();
+
+    /**
+     * @return the number of files compressed or uncompressed
+     */
+    public long getFilesProcessed();
+
+    /**
+     * @return the number of calls that failed or threw, including
+     * compress calls that wrote nothing because the file didn't get smaller
+     */
+    public long getErrors();
+
+    /**
+     * @return compressed size over original size of every file compressed,
+     * 0 if none has been
+     */
+    public double getAverageRatio();
+
+    /**
+     * @return MB of original data compressed per second spent compressing
+     */
+    public double getEncodeMBPerSecond();
+
+    /**
+     * @return MB of original data uncompressed per second spent uncompressing
+     */
+    public double getDecodeMBPerSecond();
+
+    /**
+     * @return the length of the window of the recent values, in seconds
+     */
+    public int getWindowSeconds();
+
+    /**
+     * @return MB compressed per second spent compressing, in the window
+     */
+    public double getRecentEncodeMBPerSecond();
+
+    /**
+     * @return MB uncompressed per second spent uncompressing, in the window
+     */
+    public double getRecentDecodeMBPerSecond();
+
+    /**
+     * @return the number of files compressed or uncompressed in the window
+     */
+    public long getRecentFilesProcessed();
+
+    /**
+     * @return the number of errors in the window
+     */
+    public long getRecentErrors();
+
+    /**
+     * @return the number of calls running now
+     */
+    public int getInFlightOperations();
+
+    /**
+     * @return one line per call running now, with its progress
+     */
+    public String[] getActiveOperations();
+
+    /**
+     * Sets every total and recent value back to 0.
+     */
+    public void reset();
+}
@@ -1,26 +1,72 @@
-
 //import statments:
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.util.Arrays;
 
-// represents the Huffman tree used for compression and decompression. 
+// represents the Huffman tree used for compression and decompression.
+// The nodes are kept in arrays, node i is a leaf if left[i] is NONE. A tree
+// can be built again in place with build or read, which only allocate when
+// the tree is larger than any before it, so callers that make a tree for
+// every payload can keep one tree and one CodeBook (see HuffContext).
 public class HuffTree {
 
 	// instance vars:
-	private TreeNode root;
-	private TreeNode current;
-	private String treeRepresentation;
+	// the children and the value of each node, the value of an internal node is
+	// INTERNAL_NODE_VALUE.
+	private int[] left;
+	private int[] right;
+	private int[] value;
+	private int nodes;
+	private int root;
+	private int current;
+	// number of bits used for a value in the tree representation.
+	private int valueBits;
+	// the weight of each node and the heap of nodes, only used by build.
+	private int[] weight;
+	private int[] heap;
+	private int heapSize;
+	// the bits of the tree header read so far, only used by read.
+	private long bitsRead;
 	// class constants:
 	private static final int INTERNAL_NODE_VALUE = -1;
+	// child of a leaf, and root of an empty tree.
+	private static final int NONE = -1;
 	private static final char ZERO = '0';
 	private static final char ONE = '1';
+	private static final int INITIAL_NODES = 16;
+	// bits used for a value in the tree representation of a tree of BITS_PER_WORD
+	// chunks (and the pseudoEOF value).
+	private static final int WORD_VALUE_BITS = IHuffConstants.BITS_PER_WORD + 1;
 
 	// constructor:
 	// "default" constructor
 	public HuffTree() {
-		root = null;
-		current = null;
-		treeRepresentation = "";
+		left = new int[INITIAL_NODES];
+		right = new int[INITIAL_NODES];
+		value = new int[INITIAL_NODES];
+		root = NONE;
+		current = NONE;
+		valueBits = WORD_VALUE_BITS;
+	}
+
+	// Constructor: creates an empty tree with room for the tree of any
+	// frequencies of values below eofValue, for a caller that builds it again and
+	// again with build or read.
+	// eofValue: value of the end of file leaf, larger than any other value.
+	// pre: eofValue >= 0
+	public HuffTree(int eofValue) {
+		// check precon:
+		if (eofValue < 0) {
+			throw new IllegalArgumentException("eofValue can't be negative");
+		}
+		int capacity = Math.max(INITIAL_NODES, 2 * eofValue + 1);
+		left = new int[capacity];
+		right = new int[capacity];
+		value = new int[capacity];
+		weight = new int[capacity];
+		heap = new int[capacity];
+		root = NONE;
+		current = NONE;
+		valueBits = getValueBits(eofValue);
 	}
 
 	// Constructor:
@@ -28,10 +74,21 @@ public class HuffTree {
 	// pre: data!=null
 	// be constructed.
 	public HuffTree(CustomPriorityQueue<TreeNode> data) {
+		this(data, WORD_VALUE_BITS);
+	}
+
+	// Constructor:
+	// data: CustomPriorityQueue containing all the nodes from which the tree is to
+	// be constructed.
+	// valueBits: number of bits used for a value in the tree representation.
+	// pre: data!=null, data.size() > 0, every value fits in valueBits bits.
+	public HuffTree(CustomPriorityQueue<TreeNode> data, int valueBits) {
+		this();
 		// check precon:
 		if (data == null) {
 			throw new IllegalArgumentException("data can't be null");
 		}
+		this.valueBits = valueBits;
 		// loop runs until the queue has 2 or more elements.
 		while (data.size() >= 2) {
 			// leftSubTree = first element in queue, rightSubTree = second element in queue.
@@ -43,10 +100,8 @@ public class HuffTree {
 			// add the new node to the queue.
 			data.enqueue(toInsert);
 		}
-		// the root of the tree is the last remaining node.
-		root = data.dequeue();
-		// get the treeRepresentation.
-		treeRepresentation = createTreeRepresentation(root);
+		// the root of the tree is the last remaining node, copied into the arrays.
+		root = copyNodes(data.dequeue());
 	}
 
 	// Constructor
@@ -55,50 +110,342 @@ public class HuffTree {
 	// post: the tree is rebuilt.
 	// rebuilds the tree from the tree format.
 	public HuffTree(String tree) {
-		// set the treeRepresentation to the param.
-		treeRepresentation = tree;
-		// A mutable string is used to reconstruct the tree.
-		MutableString treeRep = new MutableString(treeRepresentation);
-		// set root to the TreeNode returned by the helper method.
-		root = constructTree(treeRep);
+		this(tree, WORD_VALUE_BITS);
+	}
+
+	// Constructor
+	// tree: String form of the tree (tree format header data)
+	// valueBits: number of bits used for a value in the tree representation.
+	// pre: tree != null, tree is a whole tree representation.
+	// post: the tree is rebuilt.
+	public HuffTree(String tree, int valueBits) {
+		this();
+		this.valueBits = valueBits;
+		if (!tree.isEmpty()) {
+			// a cursor into the string is used to reconstruct the tree.
+			TreeCursor treeRep = new TreeCursor(tree);
+			root = constructTree(treeRep);
+			if (treeRep.hasMore()) {
+				throw new IllegalArgumentException("characters after the tree representation");
+			}
+		}
+	}
+
+	// method creates the tree for the given frequencies, adding a leaf with
+	// frequency 1 for eofValue. This is how both the compressor and the
+	// decompressor (from a count format header) build the tree.
+	// freq: freq[i] is the number of times value i occurs.
+	// eofValue: value of the end of file leaf, larger than any other value.
+	// pre: freq != null, eofValue >= freq.length
+	public static HuffTree fromFrequencies(int[] freq, int eofValue) {
+		HuffTree tree = new HuffTree();
+		tree.build(freq, eofValue);
+		return tree;
+	}
+
+	// method returns the number of bits used for a value in the tree
+	// representation of a tree whose largest value is maxValue.
+	public static int getValueBits(int maxValue) {
+		return Math.max(1, Integer.SIZE - Integer.numberOfLeadingZeros(maxValue));
+	}
+
+	// method builds this tree again for the given frequencies, the same tree
+	// fromFrequencies returns: a leaf for every value that occurs, in order, then
+	// the end of file leaf, and the two lightest nodes joined until one is left.
+	// Ties go to the node added first, the same order as a CustomPriorityQueue.
+	// freq: freq[i] is the number of times value i occurs.
+	// eofValue: value of the end of file leaf, larger than any other value.
+	// pre: freq != null, eofValue >= freq.length
+	public void build(int[] freq, int eofValue) {
+		// check precon:
+		if (freq == null || eofValue < freq.length) {
+			throw new IllegalArgumentException("freq can't be null and eofValue must be at least freq.length");
+		}
+		clear(getValueBits(eofValue));
+		// a leaf for every value that occurs and the end of file value, and a node
+		// joining every two.
+		int leaves = 1;
+		for (int i = 0; i < freq.length; i++) {
+			if (freq[i] != 0) {
+				leaves++;
+			}
+		}
+		ensureCapacity(2 * leaves - 1);
+		if (weight == null || weight.length < left.length) {
+			weight = new int[left.length];
+			heap = new int[left.length];
+		}
+		for (int i = 0; i < freq.length; i++) {
+			if (freq[i] != 0) {
+				push(addLeaf(i, freq[i]));
+			}
+		}
+		push(addLeaf(eofValue, 1));
+		while (heapSize >= 2) {
+			int leftSubTree = pop();
+			int rightSubTree = pop();
+			push(addInternal(leftSubTree, rightSubTree, weight[leftSubTree] + weight[rightSubTree]));
+		}
+		root = pop();
+	}
+
+	// method writes the header data needed to rebuild this tree.
+	// writer: where the header is written.
+	// headerFormat: STORE_COUNTS or STORE_TREE.
+	// freq: the frequencies the tree was built from, used by STORE_COUNTS.
+	// pre: writer != null, freq != null
+	public void writeHeader(BitSink writer, int headerFormat, int[] freq) {
+		if (headerFormat == IHuffConstants.STORE_COUNTS) {
+			// write the frequencies of each possible value.
+			for (int i = 0; i < freq.length; i++) {
+				writer.writeBits(IHuffConstants.BITS_PER_INT, freq[i]);
+			}
+		} else {
+			// write the size of the tree, then the tree.
+			writer.writeBits(IHuffConstants.BITS_PER_INT, getTreeBitSize());
+			if (root != NONE) {
+				writeTree(writer, root);
+			}
+		}
+	}
+
+	// method returns the number of bits writeHeader writes.
+	// alphabetSize: number of frequencies written by STORE_COUNTS.
+	public int getHeaderBitSize(int headerFormat, int alphabetSize) {
+		if (headerFormat == IHuffConstants.STORE_COUNTS) {
+			// the bits required would be number of possible values * BITS_PER_INT.
+			return alphabetSize * IHuffConstants.BITS_PER_INT;
+		} else {
+			// the bits required would be the size of the tree representation +
+			// BITS_PER_INT number of bits to write the size of the tree.
+			return getTreeBitSize() + IHuffConstants.BITS_PER_INT;
+		}
+	}
+
+	// method reads header data written by writeHeader and rebuilds the tree.
+	// reader: where the header is read from.
+	// headerFormat: STORE_COUNTS or STORE_TREE.
+	// alphabetSize: number of values, the end of file value is alphabetSize.
+	// pre: reader != null
+	public static HuffTree readHeader(BitSource reader, int headerFormat, int alphabetSize) throws IOException {
+		HuffTree tree = new HuffTree();
+		tree.read(reader, headerFormat, alphabetSize,
+				headerFormat == IHuffConstants.STORE_COUNTS ? new int[alphabetSize] : null);
+		return tree;
+	}
+
+	// method reads header data written by writeHeader and builds this tree again
+	// from it.
+	// reader: where the header is read from.
+	// headerFormat: STORE_COUNTS or STORE_TREE.
+	// alphabetSize: number of values, the end of file value is alphabetSize.
+	// freq: where the frequencies of a STORE_COUNTS header are read to.
+	// pre: reader != null, freq.length == alphabetSize for STORE_COUNTS
+	// throws an IOException if the header ends early or isn't a tree of the
+	// alphabet.
+	public void read(BitSource reader, int headerFormat, int alphabetSize, int[] freq) throws IOException {
+		if (headerFormat == IHuffConstants.STORE_COUNTS) {
+			// read alphabetSize number of BITS_PER_INT
+			for (int i = 0; i < alphabetSize; i++) {
+				freq[i] = reader.readBits(IHuffConstants.BITS_PER_INT);
+				// a count is never negative, -1 is also the end of the header.
+				if (freq[i] < 0) {
+					throw new IOException("invalid count header");
+				}
+			}
+			build(freq, alphabetSize);
+		} else {
+			// get the size of the tree.
+			int sizeOfTree = reader.readBits(IHuffConstants.BITS_PER_INT);
+			if (sizeOfTree < 0) {
+				throw new IOException("invalid tree header");
+			}
+			clear(getValueBits(alphabetSize));
+			bitsRead = 0;
+			root = readTree(reader, alphabetSize, 0);
+			if (bitsRead != sizeOfTree) {
+				throw new IOException("invalid tree header");
+			}
+			// a tree of one leaf only makes sense for the end of file value, any other
+			// would decode forever without reading a bit.
+			if (left[root] == NONE && value[root] != alphabetSize) {
+				throw new IOException("invalid tree header");
+			}
+		}
 	}
 
 	// helper method which creates the tree from the tree representation.
-	// treeRepresentation: MutableString version of the tree.
-	private TreeNode constructTree(MutableString treeRepresentation) {
+	// treeRepresentation: cursor into the string version of the tree.
+	// returns the index of the root of the subtree.
+	private int constructTree(TreeCursor treeRepresentation) {
 		final int RADIX = 2;
-		// create a new TreeNode set to null.
-		TreeNode n = null;
 		// check if the treeRepresenation has anymore characters.
-		if (treeRepresentation.getString().length() > 0) {
-			// check if the first char in the string is 1 or 0.
-			if (treeRepresentation.getString().charAt(0) == ONE) {
-				// if the char was one, the next BITS_PER_WORD + 1 chars represent a value.
-				String binaryOfValue = treeRepresentation.getString().substring(1,
-						1 + (IHuffConstants.BITS_PER_WORD + 1));
-				// get the integer value from the binary representation.
-				int value = Integer.valueOf(binaryOfValue, RADIX);
-				// create a new TreeNode with the value and frequency set to 0.
-				n = new TreeNode(value, 0);
-				// update the treeRepresentation
-				treeRepresentation
-						.setString(treeRepresentation.getString().substring(1 + (IHuffConstants.BITS_PER_WORD + 1)));
-			} else {
-				// create a new node with internal node value and frequency set to 0.
-				n = new TreeNode(INTERNAL_NODE_VALUE, 0);
-				// get the remaining portion of the tree representation.
-				String remainingTree = treeRepresentation.getString().substring(1);
-				// update the tree representation.
-				treeRepresentation.setString(remainingTree);
-				// update the left and right subtree.
-				n.setLeft(constructTree(treeRepresentation));
-				n.setRight(constructTree(treeRepresentation));
-			}
-		}
-		// return the node.
+		if (!treeRepresentation.hasMore()) {
+			throw new IllegalArgumentException("tree representation ends early");
+		}
+		// check if the first char in the string is 1 or 0.
+		if (treeRepresentation.next() == ONE) {
+			// if the char was one, the next valueBits chars represent a value.
+			String binaryOfValue = treeRepresentation.take(valueBits);
+			// get the integer value from the binary representation.
+			return addLeaf(Integer.parseInt(binaryOfValue, RADIX), 0);
+		}
+		// an internal node, then its left and right subtree.
+		int leftSubTree = constructTree(treeRepresentation);
+		return addInternal(leftSubTree, constructTree(treeRepresentation), 0);
+	}
+
+	// helper method reads the tree representation of a subtree.
+	// depth: the depth of the subtree's root, the length of its code.
+	// returns the index of the root of the subtree.
+	private int readTree(BitSource reader, int alphabetSize, int depth) throws IOException {
+		// a tree of the alphabet has a leaf for every value and the end of file
+		// value at most, and a CodeBook can't hold a longer code than
+		// MAX_CODE_LENGTH. Trees built from counts never get that deep.
+		if (nodes >= 2 * alphabetSize + 1 || depth > CodeBook.MAX_CODE_LENGTH) {
+			throw new IOException("invalid tree header");
+		}
+		if (readBit(reader) == 1) {
+			int leafValue = reader.readBits(valueBits);
+			if (leafValue == -1) {
+				throw new IOException("tree header ends early");
+			}
+			bitsRead += valueBits;
+			if (leafValue > alphabetSize) {
+				throw new IOException("invalid tree header");
+			}
+			return addLeaf(leafValue, 0);
+		}
+		int leftSubTree = readTree(reader, alphabetSize, depth + 1);
+		return addInternal(leftSubTree, readTree(reader, alphabetSize, depth + 1), 0);
+	}
+
+	// helper method reads one bit of the tree header.
+	private int readBit(BitSource reader) throws IOException {
+		int currentBit = reader.readBits(1);
+		if (currentBit == -1) {
+			throw new IOException("tree header ends early");
+		}
+		bitsRead++;
+		return currentBit;
+	}
+
+	// helper method writes the tree representation of the subtree at n.
+	private void writeTree(BitSink writer, int n) {
+		if (left[n] == NONE) {
+			writer.writeBits(1, 1);
+			writer.writeBits(valueBits, value[n]);
+		} else {
+			writer.writeBits(1, 0);
+			writeTree(writer, left[n]);
+			writeTree(writer, right[n]);
+		}
+	}
+
+	// helper method copies the nodes under n into the arrays.
+	// returns the index of the copy of n.
+	private int copyNodes(TreeNode n) {
+		if (n.isLeaf()) {
+			return addLeaf(n.getValue(), n.getFrequency());
+		}
+		int leftSubTree = copyNodes(n.getLeft());
+		return addInternal(leftSubTree, copyNodes(n.getRight()), n.getFrequency());
+	}
+
+	// helper method empties the tree, keeping the arrays.
+	private void clear(int valueBits) {
+		this.valueBits = valueBits;
+		nodes = 0;
+		heapSize = 0;
+		root = NONE;
+		current = NONE;
+	}
+
+	// helper method makes the arrays hold at least capacity nodes, keeping the
+	// nodes in them.
+	private void ensureCapacity(int capacity) {
+		if (capacity > left.length) {
+			left = Arrays.copyOf(left, capacity);
+			right = Arrays.copyOf(right, capacity);
+			value = Arrays.copyOf(value, capacity);
+			if (weight != null) {
+				weight = Arrays.copyOf(weight, capacity);
+				heap = Arrays.copyOf(heap, capacity);
+			}
+		}
+	}
+
+	// helper method adds a leaf.
+	// returns the index of the leaf.
+	private int addLeaf(int leafValue, int leafWeight) {
+		return addNode(NONE, NONE, leafValue, leafWeight);
+	}
+
+	// helper method adds an internal node.
+	// returns the index of the node.
+	private int addInternal(int leftSubTree, int rightSubTree, int nodeWeight) {
+		return addNode(leftSubTree, rightSubTree, INTERNAL_NODE_VALUE, nodeWeight);
+	}
+
+	// helper method adds a node, making the arrays larger if they are full. The
+	// index of a node is the order it was added in.
+	// returns the index of the node.
+	private int addNode(int leftSubTree, int rightSubTree, int nodeValue, int nodeWeight) {
+		if (nodes == left.length) {
+			ensureCapacity(2 * nodes);
+		}
+		int n = nodes++;
+		left[n] = leftSubTree;
+		right[n] = rightSubTree;
+		value[n] = nodeValue;
+		if (weight != null) {
+			weight[n] = nodeWeight;
+		}
 		return n;
 	}
 
+	// helper method returns true if node a comes out of the heap before node b:
+	// the lighter first, then the one added first.
+	private boolean less(int a, int b) {
+		return weight[a] < weight[b] || (weight[a] == weight[b] && a < b);
+	}
+
+	// helper method adds node n to the heap.
+	private void push(int n) {
+		int index = heapSize++;
+		while (index > 0) {
+			int parent = (index - 1) / 2;
+			if (!less(n, heap[parent])) {
+				break;
+			}
+			heap[index] = heap[parent];
+			index = parent;
+		}
+		heap[index] = n;
+	}
+
+	// helper method removes the first node of the heap.
+	// pre: the heap is not empty.
+	private int pop() {
+		int result = heap[0];
+		int n = heap[--heapSize];
+		int index = 0;
+		int child = 1;
+		while (child < heapSize) {
+			if (child + 1 < heapSize && less(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!less(heap[child], n)) {
+				break;
+			}
+			heap[index] = heap[child];
+			index = child;
+			child = 2 * index + 1;
+		}
+		heap[index] = n;
+		return result;
+	}
+
 	// method used to start traversals of the tree (used for decompression)
 	// pre: none
 	// post: the current node is the root of the tree.
@@ -112,19 +459,19 @@ public class HuffTree {
 	// returns the value held by the current node.
 	public int updateCurrent(int dir) {
 		// check precon:
-		if ((dir != 1 && dir != 0) || current == null || (current.getLeft() == null && current.getRight() == null)) {
+		if ((dir != 1 && dir != 0) || current == NONE || left[current] == NONE) {
 			throw new IllegalStateException("invalid direction or current is equal to null or current is a leaf");
 		}
 
 		// if dir = 1, move to the right subtree
 		// if dir = 0, move to the left subtree.
 		if (dir == 1) {
-			current = current.getRight();
+			current = right[current];
 		} else {
-			current = current.getLeft();
+			current = left[current];
 		}
 		// return the value of current.
-		return current.getValue();
+		return value[current];
 	}
 
 	// method used to reset traversal.
@@ -135,115 +482,141 @@ public class HuffTree {
 		current = root;
 	}
 
-	// Mutable representation of the String.
-	private static class MutableString {
+	// method reads one code and returns the value of the leaf it leads to.
+	// Unlike startTraversal/updateCurrent this keeps no state in the tree.
+	// reader: where the code is read from.
+	// pre: reader != null, the tree is not empty.
+	// returns the value, or -1 if the bits ran out before a leaf was reached.
+	public int decode(BitSource reader) throws IOException {
+		int n = root;
+		while (left[n] != NONE) {
+			int bit = reader.readBits(1);
+			if (bit == -1) {
+				return -1;
+			}
+			n = bit == 1 ? right[n] : left[n];
+		}
+		return value[n];
+	}
+
+	// cursor over the String representation of the tree.
+	private static class TreeCursor {
 		// instance vars
-		private String myString;
+		private final String myString;
+		private int myPosition;
 
 		// constructor.
-		// sets myString to input.
-		public MutableString(String input) {
+		public TreeCursor(String input) {
 			myString = input;
 		}
 
-		// method returns myString
-		// pre: none
-		// post: myString's value is returned.
-		public String getString() {
-			return myString;
+		// method returns true if there are characters left.
+		public boolean hasMore() {
+			return myPosition < myString.length();
+		}
+
+		// method returns the next character.
+		// pre: hasMore()
+		public char next() {
+			return myString.charAt(myPosition++);
 		}
 
-		// method sets myString to a new value.
-		// pre: none
-		// post: myString's value is altered.
-		public void setString(String newString) {
-			myString = newString;
+		// method returns the next count characters.
+		// pre: at least count characters left.
+		public String take(int count) {
+			if (myPosition + count > myString.length()) {
+				throw new IllegalArgumentException("tree representation ends early");
+			}
+			String result = myString.substring(myPosition, myPosition + count);
+			myPosition += count;
+			return result;
 		}
 	}
 
-	// method finds the codes for each chunk value.
+	// method finds the codes for each value.
+	// alphabetSize: number of values the CodeBook covers, every value in the tree
+	// must be less than alphabetSize.
 	// pre: none
-	// post: map containing the codes is returned.
-	public Map<Integer, String> getCodes() {
-		final String EMPTY_STRING = "";
-		// create the map.
-		Map<Integer, String> codes = new HashMap<>();
-		// call recursive helper method to populate the map.
-		findTreeCodings(root, EMPTY_STRING, codes);
+	// post: CodeBook containing the codes is returned.
+	public CodeBook getCodeBook(int alphabetSize) {
+		CodeBook codes = new CodeBook(alphabetSize);
+		fillCodeBook(codes);
 		return codes;
 	}
 
+	// method replaces the codes in codes with the codes of this tree, so a caller
+	// can keep one CodeBook for every tree it builds.
+	// pre: codes != null, every value in the tree is less than
+	// codes.getAlphabetSize()
+	public void fillCodeBook(CodeBook codes) {
+		codes.clear();
+		// call recursive helper method to populate the CodeBook.
+		if (root != NONE) {
+			findTreeCodings(root, 0, 0, codes);
+		}
+	}
+
 	// recursive helper method
 	// n = current node
-	// path = current path to get to n.
-	// codeMap = map to populate.
-	private void findTreeCodings(TreeNode n, String path, Map<Integer, String> codeMap) {
-		// base case: if a leaf is reached, put the value and the path into the map.
-		if (n.isLeaf()) {
-			codeMap.put(n.getValue(), path);
+	// path = current path to get to n, length = number of bits in path.
+	// codes = CodeBook to populate.
+	private void findTreeCodings(int n, long path, int length, CodeBook codes) {
+		// base case: if a leaf is reached, put the value and the path into the
+		// CodeBook.
+		if (left[n] == NONE) {
+			codes.setCode(value[n], path, length);
 		} else {
-			// move to the node on the left and update path (+"0")
-			findTreeCodings(n.getLeft(), path + ZERO, codeMap);
-			// move to the node on the right and update path (+"1")
-			findTreeCodings(n.getRight(), path + ONE, codeMap);
+			// move to the node on the left and update path (+0)
+			findTreeCodings(left[n], path << 1, length + 1, codes);
+			// move to the node on the right and update path (+1)
+			findTreeCodings(right[n], (path << 1) | 1, length + 1, codes);
 		}
 	}
 
 	// method creates the string representation of the tree (tree header format).
 	// n = current node
+	// output = where the representation is appended.
 	// pre: none
-	// post: the entire string representation is returned.
-	private String createTreeRepresentation(TreeNode n) {
-		// create string builder to make method more efficient
-		StringBuilder output = new StringBuilder();
+	// post: the representation of the subtree at n is appended.
+	private void createTreeRepresentation(int n, StringBuilder output) {
 		// check if n is a leaf.
-		if (n.isLeaf()) {
+		if (left[n] == NONE) {
 			// add '1' to the representation.
 			output.append(ONE);
 			// get the binary representation of the value
-			String binaryFormOfValue = Integer.toBinaryString(n.getValue());
-			// BITS_PER_WORD +1 bits must be used to represent the value
-			// adjust the binary form to add leading zeroes.
-			String adjuster = getBitsAdjuster(binaryFormOfValue.length());
-			binaryFormOfValue = adjuster + binaryFormOfValue;
+			String binaryFormOfValue = Integer.toBinaryString(value[n]);
+			// valueBits bits must be used to represent the value
+			// add leading zeroes.
+			for (int i = binaryFormOfValue.length(); i < valueBits; i++) {
+				output.append(ZERO);
+			}
 			// add the binary form of the value to the representation.
 			output.append(binaryFormOfValue);
 		} else {
 			// add '0' to the representation (internal node)
 			output.append(ZERO);
 			// create the left subtree.
-			output.append(createTreeRepresentation(n.getLeft()));
+			createTreeRepresentation(left[n], output);
 			// create the right subtree.
-			output.append(createTreeRepresentation(n.getRight()));
+			createTreeRepresentation(right[n], output);
 		}
-		return output.toString();
 	}
 
 	// method returns the string representation of the tree.
 	// pre: none
 	public String getTreeRepresentaion() {
-		return treeRepresentation;
+		StringBuilder sb = new StringBuilder(getTreeBitSize());
+		if (root != NONE) {
+			createTreeRepresentation(root, sb);
+		}
+		return sb.toString();
 	}
 
-	// method returns the size of the string representation.
+	// method returns the size of the string representation: a bit for every
+	// node and the value of every leaf.
 	// pre: none
 	public int getTreeBitSize() {
-		return treeRepresentation.length();
-	}
-
-	// helper method used to create the tree representation
-	// length = length of the binary form of the value.
-	// pre: none
-	// post: returns a string with a certain number of leading zeroes.
-	private String getBitsAdjuster(int length) {
-		// string builder used to make method more efficient.
-		StringBuilder sb = new StringBuilder();
-		// find the number of leading zeroes required.
-		int bitsRequired = (IHuffConstants.BITS_PER_WORD + 1) - length;
-		// add bitsRequired number of zeroes to the string builder.
-		for (int i = 0; i < bitsRequired; i++) {
-			sb.append("0");
-		}
-		return sb.toString();
+		int leaves = (nodes + 1) / 2;
+		return nodes + leaves * valueBits;
 	}
 }
@@ -0,0 +1,370 @@
+//import statements:
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// HuffVerifier checks compressed data while it is written. The compressed
+// bytes are handed to a decoder on a thread of its own, and the decoded bytes
+// are matched against the input bytes the encoder read, which are kept in a
+// ring buffer until they are matched:
+//
+// HuffVerifier verifier = new HuffVerifier();
+// engine.encode(plan, verifier.input(in), verifier.output(out));
+// verifier.finish();
+//
+// So the data is checked without reading the original or the compressed file
+// again. The ring only holds the input the decoder hasn't reached yet, and the
+// encoder waits when CHUNKS chunks of compressed data are waiting for the
+// decoder. A mismatch fails the next read or write of the encoder and is
+// thrown by finish.
+public class HuffVerifier {
+
+	// class constants:
+	// bytes of compressed data handed to the decoder at a time, and the most
+	// chunks waiting.
+	private static final int CHUNK_SIZE = 1 << 16;
+	private static final int CHUNKS = 8;
+	private static final int INITIAL_RING = 1 << 20;
+	// chunk put on the queue after the last one.
+	private static final byte[] END = new byte[0];
+
+	// instance vars:
+	private final BlockingQueue<byte[]> myChunks = new ArrayBlockingQueue<>(CHUNKS);
+	// the input read and not matched yet, myCount bytes from myHead, wrapping
+	// around the end of myRing.
+	private byte[] myRing = new byte[INITIAL_RING];
+	private int myHead;
+	private int myCount;
+	// the number of bytes matched.
+	private long myVerified;
+	private Thread myDecoder;
+	// the first error the decoder found, null if none.
+	private volatile IOException myError;
+
+	// method returns a stream of the bytes of in that keeps every byte read until
+	// the decoder matches it.
+	// pre: in != null
+	public InputStream input(InputStream in) {
+		// check precon:
+		if (in == null) {
+			throw new IllegalArgumentException("InputStream cannot equal null");
+		}
+		return new InputTee(in);
+	}
+
+	// method returns a stream that writes to out and hands what it writes to the
+	// decoder, which starts now. Closing it ends the compressed data.
+	// pre: out != null, output hasn't been called before
+	public OutputStream output(OutputStream out) {
+		// check precon:
+		if (out == null) {
+			throw new IllegalArgumentException("OutputStream cannot equal null");
+		}
+		if (myDecoder != null) {
+			throw new IllegalStateException("output already called");
+		}
+		myDecoder = new Thread(this::decode, "huff-verify");
+		myDecoder.setDaemon(true);
+		myDecoder.start();
+		return new OutputTee(out);
+	}
+
+	// method waits for the decoder to finish the data.
+	// pre: the stream output returned has been closed
+	// returns the number of bytes matched.
+	// throws an IOException if the decoded data isn't the input.
+	public long finish() throws IOException {
+		try {
+			myDecoder.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while verifying");
+		}
+		if (myError != null) {
+			throw new IOException("verify failed: " + myError.getMessage(), myError);
+		}
+		return myVerified;
+	}
+
+	// helper method decodes the compressed chunks and matches the bytes decoded,
+	// run by the decoder thread.
+	private void decode() {
+		ChunkInputStream chunks = new ChunkInputStream();
+		try {
+			BitInputStream reader = new BitInputStream(new BufferedInputStream(chunks, CHUNK_SIZE));
+			Decompressor decompressor = new Decompressor();
+			if (!decompressor.isCompressedFile(reader)) {
+				throw new IOException("compressed data has no header");
+			}
+			decompressor.constructTree(reader);
+			BitOutputStream writer = new BitOutputStream(new BufferedOutputStream(
+					decompressor.getFilterChain().unfilter(new MatchOutputStream()), CHUNK_SIZE));
+			if (decompressor.decompress(reader, writer) == -1) {
+				throw new IOException("compressed data ends early");
+			}
+			// the filters write their last partial block when they are closed.
+			writer.close();
+			synchronized (this) {
+				if (myCount != 0) {
+					throw new IOException(myCount + " bytes of input not in the compressed data");
+				}
+			}
+		} catch (IOException e) {
+			fail(e);
+		} catch (RuntimeException e) {
+			// the bit streams throw RuntimeExceptions, a mismatch under them has
+			// already been kept.
+			fail(new IOException(e.toString(), e));
+		} finally {
+			// the encoder may still be writing, so the chunks are taken to the end.
+			try {
+				chunks.skipToEnd();
+			} catch (InterruptedIOException e) {
+				fail(e);
+			}
+		}
+	}
+
+	// helper method keeps len bytes of b in the ring, making it larger if it is
+	// full.
+	private synchronized void keep(byte[] b, int off, int len) {
+		if (myCount + len > myRing.length) {
+			byte[] ring = new byte[Math.max(myCount + len, 2 * myRing.length)];
+			int first = Math.min(myCount, myRing.length - myHead);
+			System.arraycopy(myRing, myHead, ring, 0, first);
+			System.arraycopy(myRing, 0, ring, first, myCount - first);
+			myRing = ring;
+			myHead = 0;
+		}
+		int tail = (myHead + myCount) % myRing.length;
+		int first = Math.min(len, myRing.length - tail);
+		System.arraycopy(b, off, myRing, tail, first);
+		System.arraycopy(b, off + first, myRing, 0, len - first);
+		myCount += len;
+	}
+
+	// helper method matches len decoded bytes of b against the oldest bytes in
+	// the ring and takes them out of it.
+	private synchronized void match(byte[] b, int off, int len) throws IOException {
+		if (len > myCount) {
+			throw fail(new IOException("decoded more bytes than were read"));
+		}
+		while (len > 0) {
+			int n = Math.min(len, myRing.length - myHead);
+			int i = Arrays.mismatch(b, off, off + n, myRing, myHead, myHead + n);
+			if (i != -1) {
+				throw fail(new IOException("byte " + (myVerified + i) + " decoded wrong"));
+			}
+			myHead = (myHead + n) % myRing.length;
+			myCount -= n;
+			myVerified += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	// helper method keeps e if it is the first error found.
+	// returns e.
+	private IOException fail(IOException e) {
+		if (myError == null) {
+			myError = e;
+		}
+		return e;
+	}
+
+	// helper method throws if the decoder has failed, so the encoder stops.
+	private void checkError() throws IOException {
+		if (myError != null) {
+			throw new IOException("verify failed: " + myError.getMessage(), myError);
+		}
+	}
+
+	// InputStream that keeps the bytes the encoder reads.
+	private class InputTee extends FilterInputStream {
+
+		private InputTee(InputStream in) {
+			super(in);
+		}
+
+		public int read() throws IOException {
+			checkError();
+			int b = in.read();
+			if (b != -1) {
+				keep(new byte[] { (byte) b }, 0, 1);
+			}
+			return b;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			checkError();
+			int n = in.read(b, off, len);
+			if (n > 0) {
+				keep(b, off, n);
+			}
+			return n;
+		}
+
+		// skipped bytes would be missing from the ring, so they are read.
+		public long skip(long n) throws IOException {
+			byte[] buffer = new byte[(int) Math.min(n, CHUNK_SIZE)];
+			long skipped = 0;
+			int got = 0;
+			while (skipped < n && (got = read(buffer, 0, (int) Math.min(n - skipped, buffer.length))) != -1) {
+				skipped += got;
+			}
+			return skipped;
+		}
+
+		public boolean markSupported() {
+			return false;
+		}
+
+		public void mark(int readlimit) {
+		}
+
+		public void reset() throws IOException {
+			throw new IOException("mark/reset not supported");
+		}
+	}
+
+	// OutputStream that writes to out and collects what it writes into chunks for
+	// the decoder.
+	private class OutputTee extends FilterOutputStream {
+		private byte[] myChunk = new byte[CHUNK_SIZE];
+		private int myLength;
+		private boolean myClosed;
+
+		private OutputTee(OutputStream out) {
+			super(out);
+		}
+
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException {
+			checkError();
+			out.write(b, off, len);
+			while (len > 0) {
+				int n = Math.min(len, myChunk.length - myLength);
+				System.arraycopy(b, off, myChunk, myLength, n);
+				myLength += n;
+				off += n;
+				len -= n;
+				if (myLength == myChunk.length) {
+					send();
+				}
+			}
+		}
+
+		public void flush() throws IOException {
+			send();
+			out.flush();
+		}
+
+		// method ends the compressed data and closes out.
+		public void close() throws IOException {
+			if (myClosed) {
+				return;
+			}
+			myClosed = true;
+			try {
+				send();
+				put(END);
+			} finally {
+				out.close();
+			}
+		}
+
+		// helper method hands the bytes collected to the decoder.
+		private void send() throws IOException {
+			if (myLength > 0) {
+				put(Arrays.copyOf(myChunk, myLength));
+				myLength = 0;
+			}
+		}
+
+		// helper method waits for room on the queue.
+		private void put(byte[] chunk) throws IOException {
+			try {
+				myChunks.put(chunk);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("interrupted while verifying");
+			}
+		}
+	}
+
+	// InputStream of the chunks handed to the decoder.
+	private class ChunkInputStream extends InputStream {
+		private byte[] myChunk = new byte[0];
+		private int myPosition;
+		private boolean myEnded;
+
+		public int read() throws IOException {
+			if (!fill()) {
+				return -1;
+			}
+			return myChunk[myPosition++] & 0xff;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+			if (!fill()) {
+				return -1;
+			}
+			int n = Math.min(len, myChunk.length - myPosition);
+			System.arraycopy(myChunk, myPosition, b, off, n);
+			myPosition += n;
+			return n;
+		}
+
+		// method takes the chunks left, up to the end of the data.
+		public void skipToEnd() throws InterruptedIOException {
+			while (fill()) {
+				myPosition = myChunk.length;
+			}
+		}
+
+		// helper method waits for the next chunk if this one has been read.
+		// returns false at the end of the data.
+		private boolean fill() throws InterruptedIOException {
+			while (myPosition == myChunk.length) {
+				if (myEnded) {
+					return false;
+				}
+				try {
+					myChunk = myChunks.take();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("interrupted while verifying");
+				}
+				myPosition = 0;
+				myEnded = myChunk == END;
+			}
+			return true;
+		}
+	}
+
+	// OutputStream that matches what the decoder writes against the input.
+	private class MatchOutputStream extends OutputStream {
+
+		public void write(int b) throws IOException {
+			match(new byte[] { (byte) b }, 0, 1);
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException {
+			match(b, off, len);
+		}
+	}
+}
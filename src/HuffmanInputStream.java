@@ -0,0 +1,229 @@
+//import statements:
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+// HuffmanInputStream uncompresses data written in blocks as it is read, like a
+// GZIPInputStream:
+//
+// ObjectInputStream in = new ObjectInputStream(new HuffmanInputStream(file));
+//
+// The file header is read when the stream is created. Each block is then read
+// whole and decoded into memory the first time a read needs it, and reads
+// copy from the decoded block. Files from HuffmanOutputStream, and files
+// SimpleHuffProcessor wrote in blocks, with or without filters and the length,
+// can be read. Block headers are checked against HuffBlock.MAX_LENGTH before
+// the block is read, so a damaged header can't make the stream allocate more
+// than that. Reading stops at the end marker, so bytes after the compressed
+// data are left in the underlying stream.
+public class HuffmanInputStream extends FilterInputStream {
+
+	// class constants:
+	private static final int BITS_PER_BYTE = 8;
+	private static final int BLOCK_HEADER_BYTES = HuffBlock.HEADER_BITS / BITS_PER_BYTE;
+
+	// instance vars:
+	private final DataInputStream myInput;
+	private final int myHeaderFormat;
+	// the bytes of checksums after each block, 0 if the blocks have none.
+	private final int myChecksumBytes;
+	// the number of chunks the header says there are, -1 if it doesn't.
+	private final long myLength;
+	private long myDecoded;
+	// the bytes decoded and not yet read, from myPosition to myCount.
+	private byte[] myBuffer = new byte[HuffmanOutputStream.BLOCK_LENGTH];
+	private int myPosition;
+	private int myCount;
+	// the header and payload of the block being decoded.
+	private byte[] myBlock = new byte[BLOCK_HEADER_BYTES];
+	// where blocks are decoded to through the filters of the file, null if the
+	// file isn't filtered and blocks are decoded straight into myBuffer.
+	private final OutputStream myUnfilter;
+	// true once the end marker has been read.
+	private boolean myEnded;
+
+	// Constructor: reads the file header.
+	// in: the compressed data.
+	// pre: in != null
+	// throws an IOException if in isn't compressed data written in blocks.
+	public HuffmanInputStream(InputStream in) throws IOException {
+		super(in);
+		// check precon:
+		if (in == null) {
+			throw new IllegalArgumentException("InputStream cannot equal null");
+		}
+		myInput = new DataInputStream(in);
+		try {
+			if (myInput.readInt() != IHuffConstants.MAGIC_NUMBER) {
+				throw new IOException("File not compressed");
+			}
+			int headerValue = myInput.readInt();
+			myHeaderFormat = headerValue & IHuffConstants.HEADER_FORMAT_MASK;
+			if (myHeaderFormat != IHuffConstants.STORE_COUNTS && myHeaderFormat != IHuffConstants.STORE_TREE) {
+				throw new IOException("unknown header format");
+			}
+			if ((headerValue & IHuffConstants.FLAG_BLOCKS) == 0) {
+				throw new IOException("only files compressed in blocks can be read as a stream");
+			}
+			myChecksumBytes = (headerValue & IHuffConstants.FLAG_CHECKSUM) != 0 ? HuffBlock.CHECKSUM_BITS / BITS_PER_BYTE
+					: 0;
+			// the filters and the length are read a byte at a time, so nothing after
+			// them is read from in.
+			BitInputStream reader = new BitInputStream(in);
+			FilterChain filters = FilterChain.NONE;
+			if ((headerValue & IHuffConstants.FLAG_FILTERED) != 0) {
+				filters = FilterChain.readHeader(reader);
+			}
+			myLength = (headerValue & IHuffConstants.FLAG_LENGTH) != 0 ? reader.readVarLong() : -1;
+			myUnfilter = filters.isEmpty() ? null : filters.unfilter(new DecodedOutputStream());
+		} catch (EOFException e) {
+			throw new IOException("File not compressed");
+		}
+	}
+
+	public int read() throws IOException {
+		if (!fill()) {
+			return -1;
+		}
+		return myBuffer[myPosition++] & 0xff;
+	}
+
+	public int read(byte[] b, int off, int len) throws IOException {
+		// check precon:
+		if (off < 0 || len < 0 || off + len > b.length) {
+			throw new IndexOutOfBoundsException("off " + off + " len " + len + " for " + b.length + " bytes");
+		}
+		if (len == 0) {
+			return 0;
+		}
+		if (!fill()) {
+			return -1;
+		}
+		int n = Math.min(len, myCount - myPosition);
+		System.arraycopy(myBuffer, myPosition, b, off, n);
+		myPosition += n;
+		return n;
+	}
+
+	public long skip(long n) throws IOException {
+		long skipped = 0;
+		while (skipped < n && fill()) {
+			int step = (int) Math.min(n - skipped, myCount - myPosition);
+			myPosition += step;
+			skipped += step;
+		}
+		return skipped;
+	}
+
+	// method returns the number of decoded bytes that can be read without
+	// decoding another block.
+	public int available() {
+		return myCount - myPosition;
+	}
+
+	public boolean markSupported() {
+		return false;
+	}
+
+	public void mark(int readlimit) {
+	}
+
+	public void reset() throws IOException {
+		throw new IOException("mark/reset not supported");
+	}
+
+	// helper method decodes blocks until there are bytes to read.
+	// returns false at the end of the data.
+	private boolean fill() throws IOException {
+		while (myPosition == myCount) {
+			if (myEnded) {
+				return false;
+			}
+			myPosition = 0;
+			myCount = 0;
+			decodeBlock();
+		}
+		return true;
+	}
+
+	// helper method reads and decodes the next block, or the end marker.
+	private void decodeBlock() throws IOException {
+		int length = 0;
+		int payload = 0;
+		try {
+			myInput.readFully(myBlock, 0, 1);
+			if (myBlock[0] == HuffBlock.END) {
+				myEnded = true;
+				if (myLength != -1 && myDecoded != myLength) {
+					throw new IOException("compressed data has " + myDecoded + " chunks, the header says " + myLength);
+				}
+				// the filters write their last partial block when they are closed.
+				if (myUnfilter != null) {
+					myUnfilter.close();
+				}
+				return;
+			}
+			myInput.readFully(myBlock, 1, BLOCK_HEADER_BYTES - 1);
+			// the length and payload size follow the type, and are checked before
+			// anything is allocated for them.
+			ByteBuffer header = ByteBuffer.wrap(myBlock, 1, 2 * Integer.BYTES);
+			length = header.getInt();
+			payload = header.getInt();
+			HuffBlock.checkHeader(myBlock[0], length, payload);
+			// the checksums are read with the block.
+			payload += myChecksumBytes;
+			if (myBlock.length < BLOCK_HEADER_BYTES + payload) {
+				byte[] block = new byte[BLOCK_HEADER_BYTES + payload];
+				System.arraycopy(myBlock, 0, block, 0, BLOCK_HEADER_BYTES);
+				myBlock = block;
+			}
+			myInput.readFully(myBlock, BLOCK_HEADER_BYTES, payload);
+		} catch (EOFException e) {
+			throw new IOException("compressed data ends early");
+		}
+		ByteBuffer block = ByteBuffer.wrap(myBlock, 0, BLOCK_HEADER_BYTES + payload);
+		if (myUnfilter == null) {
+			// myBuffer was read to the end, so the block goes at its start.
+			if (myBuffer.length < length) {
+				myBuffer = new byte[length];
+			}
+			HuffBlock.decode(block, ByteBuffer.wrap(myBuffer), myHeaderFormat, myChecksumBytes != 0);
+			myCount = length;
+		} else {
+			byte[] chunks = new byte[length];
+			HuffBlock.decode(block, ByteBuffer.wrap(chunks), myHeaderFormat, myChecksumBytes != 0);
+			myUnfilter.write(chunks);
+		}
+		myDecoded += length;
+	}
+
+	// OutputStream that appends the decoded bytes to myBuffer.
+	private class DecodedOutputStream extends OutputStream {
+
+		public void write(int b) {
+			if (myCount == myBuffer.length) {
+				grow(1);
+			}
+			myBuffer[myCount++] = (byte) b;
+		}
+
+		public void write(byte[] b, int off, int len) {
+			if (myCount + len > myBuffer.length) {
+				grow(len);
+			}
+			System.arraycopy(b, off, myBuffer, myCount, len);
+			myCount += len;
+		}
+
+		// helper method makes room for len more bytes.
+		private void grow(int len) {
+			byte[] buffer = new byte[Math.max(myCount + len, 2 * myBuffer.length)];
+			System.arraycopy(myBuffer, 0, buffer, 0, myCount);
+			myBuffer = buffer;
+		}
+	}
+}
@@ -0,0 +1,163 @@
+//import statements:
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// HuffmanOutputStream compresses the bytes written to it as they are written,
+// like a GZIPOutputStream, so it can be put in any stack of streams:
+//
+// ObjectOutputStream out = new ObjectOutputStream(new HuffmanOutputStream(file));
+//
+// The bytes are collected into blocks of BLOCK_LENGTH bytes, and every block is
+// huffed with its own tree, or stored if that is smaller, once it is full. The
+// data is written with FLAG_BLOCKS and FLAG_CHECKSUM and without the length, so
+// the result can be read by HuffmanInputStream or uncompressed by
+// SimpleHuffProcessor.
+// finish or close must be called, or the last block and the end marker are
+// never written.
+public class HuffmanOutputStream extends FilterOutputStream {
+
+	// class constants:
+	// the number of bytes compressed in each block.
+	public static final int BLOCK_LENGTH = 4 * FilterChain.BLOCK_SIZE;
+	private static final int BITS_PER_BYTE = 8;
+
+	// instance vars:
+	private final int myHeaderFormat;
+	// true if flush writes the bytes collected as a block of their own.
+	private final boolean mySyncFlush;
+	// the bytes of the block being collected.
+	private final byte[] myBlock = new byte[BLOCK_LENGTH];
+	private int myLength;
+	private final int[] myFreq = new int[IHuffConstants.ALPH_SIZE];
+	// each block is encoded here first, then written to out in one call. A block
+	// is never larger than its chunks stored, the rest is room for the file header
+	// or the end marker.
+	private final ByteBuffer myBytes = ByteBuffer.allocate(BLOCK_LENGTH
+			+ (HuffBlock.HEADER_BITS + HuffBlock.CHECKSUM_BITS) / BITS_PER_BYTE + 2 * Integer.BYTES);
+	// true once the end marker is written.
+	private boolean myFinished;
+
+	// Constructor: writes the tree format.
+	// out: where the compressed data is written.
+	// pre: out != null
+	public HuffmanOutputStream(OutputStream out) throws IOException {
+		this(out, IHuffConstants.STORE_TREE, false);
+	}
+
+	// Constructor:
+	// out: where the compressed data is written.
+	// headerFormat: STORE_COUNTS or STORE_TREE.
+	// pre: out != null
+	public HuffmanOutputStream(OutputStream out, int headerFormat) throws IOException {
+		this(out, headerFormat, false);
+	}
+
+	// Constructor: writes the file header.
+	// out: where the compressed data is written.
+	// headerFormat: STORE_COUNTS or STORE_TREE.
+	// syncFlush: true if flush writes the bytes collected so far as a short block,
+	// so everything written can be read back from out right away. This costs a
+	// tree for every flush.
+	// pre: out != null, headerFormat is STORE_COUNTS or STORE_TREE
+	public HuffmanOutputStream(OutputStream out, int headerFormat, boolean syncFlush) throws IOException {
+		super(out);
+		// check precon:
+		if (out == null) {
+			throw new IllegalArgumentException("OutputStream cannot equal null");
+		}
+		if (headerFormat != IHuffConstants.STORE_COUNTS && headerFormat != IHuffConstants.STORE_TREE) {
+			throw new IllegalArgumentException("header format must be STORE_COUNTS or STORE_TREE");
+		}
+		myHeaderFormat = headerFormat;
+		mySyncFlush = syncFlush;
+		myBytes.putInt(IHuffConstants.MAGIC_NUMBER);
+		myBytes.putInt(headerFormat | IHuffConstants.FLAG_BLOCKS | IHuffConstants.FLAG_CHECKSUM);
+		send();
+	}
+
+	public void write(int b) throws IOException {
+		checkOpen();
+		myBlock[myLength++] = (byte) b;
+		if (myLength == myBlock.length) {
+			writeBlock();
+		}
+	}
+
+	public void write(byte[] b, int off, int len) throws IOException {
+		// check precon:
+		if (off < 0 || len < 0 || off + len > b.length) {
+			throw new IndexOutOfBoundsException("off " + off + " len " + len + " for " + b.length + " bytes");
+		}
+		checkOpen();
+		while (len > 0) {
+			int n = Math.min(len, myBlock.length - myLength);
+			System.arraycopy(b, off, myBlock, myLength, n);
+			myLength += n;
+			off += n;
+			len -= n;
+			if (myLength == myBlock.length) {
+				writeBlock();
+			}
+		}
+	}
+
+	// method flushes out. With syncFlush the bytes collected are written first,
+	// otherwise they wait for the block to fill.
+	public void flush() throws IOException {
+		if (mySyncFlush && !myFinished && myLength > 0) {
+			writeBlock();
+		}
+		out.flush();
+	}
+
+	// method writes the last block and the end marker without closing out, so
+	// more can be written after the compressed data.
+	public void finish() throws IOException {
+		if (myFinished) {
+			return;
+		}
+		if (myLength > 0) {
+			writeBlock();
+		}
+		myBytes.put((byte) HuffBlock.END);
+		send();
+		myFinished = true;
+	}
+
+	public void close() throws IOException {
+		try {
+			finish();
+		} finally {
+			out.close();
+		}
+	}
+
+	// helper method counts the block collected and writes it.
+	private void writeBlock() throws IOException {
+		Arrays.fill(myFreq, 0);
+		for (int i = 0; i < myLength; i++) {
+			myFreq[myBlock[i] & 0xff]++;
+		}
+		// HuffBlock keeps the frequencies, so it gets a copy.
+		HuffBlock block = new HuffBlock(myFreq.clone(), myHeaderFormat, true);
+		block.write(ByteBuffer.wrap(myBlock, 0, myLength), myBytes);
+		myLength = 0;
+		send();
+	}
+
+	// helper method writes the bytes encoded so far to out.
+	private void send() throws IOException {
+		out.write(myBytes.array(), 0, myBytes.position());
+		myBytes.clear();
+	}
+
+	// helper method throws if the end marker has been written.
+	private void checkOpen() throws IOException {
+		if (myFinished) {
+			throw new IOException("write after finish");
+		}
+	}
+}
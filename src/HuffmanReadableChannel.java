@@ -0,0 +1,251 @@
+//import statements:
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+
+// HuffmanReadableChannel uncompresses data written in blocks as it is read,
+// the channel version of HuffmanInputStream. The compressed data is read into
+// a direct buffer and each block is decoded from it into another, or straight
+// into the buffer read into when that has room for the whole block:
+//
+// try (HuffmanReadableChannel in = new HuffmanReadableChannel(source)) {
+//     target.transferFrom(in, 0, Long.MAX_VALUE);
+// }
+//
+// Files written in blocks, with or without filters and the length, can be
+// read. The blocks of a filtered file are always decoded into myChunks through
+// the filters. Block headers are checked against HuffBlock.MAX_LENGTH before
+// anything is allocated for the block. The channel reads ahead, so bytes after
+// the end marker may be read from the channel it reads.
+public class HuffmanReadableChannel implements ReadableByteChannel {
+
+	// class constants:
+	private static final int BITS_PER_BYTE = 8;
+	private static final int HEADER_BYTES = 2 * IHuffConstants.BITS_PER_INT / BITS_PER_BYTE;
+	private static final int BLOCK_HEADER_BYTES = HuffBlock.HEADER_BITS / BITS_PER_BYTE;
+
+	// instance vars:
+	private final ReadableByteChannel myIn;
+	private final int myHeaderFormat;
+	// the bytes of checksums after each block, 0 if the blocks have none.
+	private final int myChecksumBytes;
+	// the number of chunks the header says there are, -1 if it doesn't.
+	private final long myLength;
+	private long myDecoded;
+	// the compressed bytes read and not used yet, from position to limit.
+	private ByteBuffer myInput = ByteBuffer.allocateDirect(2 * HuffmanOutputStream.BLOCK_LENGTH);
+	// the chunks decoded and not read yet, from position to limit.
+	private ByteBuffer myChunks = ByteBuffer.allocateDirect(HuffmanOutputStream.BLOCK_LENGTH);
+	// where the blocks of a filtered file are decoded to and the filters that
+	// undo them into myChunks, null if the file isn't filtered.
+	private ByteBuffer myFiltered;
+	private final OutputStream myUnfilter;
+	// true once the end marker has been read, and once the channel is closed.
+	private boolean myEnded;
+	private boolean myClosed;
+
+	// Constructor: reads the file header.
+	// in: the compressed data.
+	// pre: in != null
+	// throws an IOException if in isn't compressed data written in blocks.
+	public HuffmanReadableChannel(ReadableByteChannel in) throws IOException {
+		// check precon:
+		if (in == null) {
+			throw new IllegalArgumentException("channel cannot equal null");
+		}
+		myIn = in;
+		myInput.flip();
+		myChunks.flip();
+		if (!fill(HEADER_BYTES) || myInput.getInt() != IHuffConstants.MAGIC_NUMBER) {
+			throw new IOException("File not compressed");
+		}
+		int headerValue = myInput.getInt();
+		myHeaderFormat = headerValue & IHuffConstants.HEADER_FORMAT_MASK;
+		if (myHeaderFormat != IHuffConstants.STORE_COUNTS && myHeaderFormat != IHuffConstants.STORE_TREE) {
+			throw new IOException("unknown header format");
+		}
+		if ((headerValue & IHuffConstants.FLAG_BLOCKS) == 0) {
+			throw new IOException("only files compressed in blocks can be read as a channel");
+		}
+		myChecksumBytes = (headerValue & IHuffConstants.FLAG_CHECKSUM) != 0 ? HuffBlock.CHECKSUM_BITS / BITS_PER_BYTE : 0;
+		// the filters and the length are read a byte at a time from myInput.
+		BitInputStream reader = new BitInputStream(new InputBytes());
+		FilterChain filters = FilterChain.NONE;
+		if ((headerValue & IHuffConstants.FLAG_FILTERED) != 0) {
+			filters = FilterChain.readHeader(reader);
+		}
+		myLength = (headerValue & IHuffConstants.FLAG_LENGTH) != 0 ? reader.readVarLong() : -1;
+		if (filters.isEmpty()) {
+			myUnfilter = null;
+		} else {
+			myFiltered = ByteBuffer.allocate(HuffmanOutputStream.BLOCK_LENGTH);
+			myUnfilter = filters.unfilter(new ChunksOutputStream());
+		}
+	}
+
+	// method puts decoded bytes in dst.
+	// returns the number of bytes put, or -1 at the end of the data.
+	public int read(ByteBuffer dst) throws IOException {
+		if (myClosed) {
+			throw new ClosedChannelException();
+		}
+		if (!dst.hasRemaining()) {
+			return 0;
+		}
+		while (!myChunks.hasRemaining()) {
+			if (myEnded) {
+				return -1;
+			}
+			int direct = decodeBlock(dst);
+			if (direct != 0) {
+				return direct;
+			}
+		}
+		int n = Math.min(dst.remaining(), myChunks.remaining());
+		ByteBuffer part = myChunks.duplicate();
+		part.limit(part.position() + n);
+		dst.put(part);
+		myChunks.position(part.position());
+		return n;
+	}
+
+	public boolean isOpen() {
+		return !myClosed;
+	}
+
+	public void close() throws IOException {
+		myClosed = true;
+		myIn.close();
+	}
+
+	// helper method reads the next block or the end marker. A block is decoded
+	// into dst if all of it fits, into myChunks otherwise.
+	// returns the number of chunks put in dst, 0 if they were put in myChunks,
+	// -1 at the end marker.
+	private int decodeBlock(ByteBuffer dst) throws IOException {
+		if (!fill(1)) {
+			throw new IOException("compressed data ends early");
+		}
+		int start = myInput.position();
+		if (myInput.get(start) == HuffBlock.END) {
+			myInput.position(start + 1);
+			myEnded = true;
+			if (myLength != -1 && myDecoded != myLength) {
+				throw new IOException("compressed data has " + myDecoded + " chunks, the header says " + myLength);
+			}
+			// the filters write their last partial block when they are closed.
+			if (myUnfilter != null) {
+				myChunks.clear();
+				myUnfilter.close();
+				myChunks.flip();
+			}
+			return myChunks.hasRemaining() ? 0 : -1;
+		}
+		if (!fill(BLOCK_HEADER_BYTES)) {
+			throw new IOException("compressed data ends early");
+		}
+		start = myInput.position();
+		int length = myInput.getInt(start + 1);
+		int payload = myInput.getInt(start + 1 + Integer.BYTES);
+		HuffBlock.checkHeader(myInput.get(start), length, payload);
+		// the checksums are read with the block.
+		payload += myChecksumBytes;
+		if (!fill(BLOCK_HEADER_BYTES + payload)) {
+			throw new IOException("compressed data ends early");
+		}
+		ByteBuffer block = myInput.duplicate();
+		block.limit(myInput.position() + BLOCK_HEADER_BYTES + payload);
+		ByteBuffer target = dst;
+		if (myUnfilter != null) {
+			if (myFiltered.capacity() < length) {
+				myFiltered = ByteBuffer.allocate(length);
+			}
+			myFiltered.clear();
+			target = myFiltered;
+		} else if (dst.remaining() < length) {
+			if (myChunks.capacity() < length) {
+				myChunks = ByteBuffer.allocateDirect(length);
+			}
+			myChunks.clear();
+			target = myChunks;
+		}
+		HuffBlock.decode(block, target, myHeaderFormat, myChecksumBytes != 0);
+		myInput.position(block.position());
+		myDecoded += length;
+		if (target == myFiltered) {
+			myChunks.clear();
+			myUnfilter.write(myFiltered.array(), 0, length);
+			myChunks.flip();
+			return 0;
+		}
+		if (target == myChunks) {
+			myChunks.flip();
+			return 0;
+		}
+		return length;
+	}
+
+	// helper method reads from the channel until at least count bytes are
+	// waiting, making room in myInput if it is too small.
+	// returns false if the channel ends first.
+	private boolean fill(int count) throws IOException {
+		if (myInput.remaining() >= count) {
+			return true;
+		}
+		if (myInput.capacity() < count) {
+			ByteBuffer input = ByteBuffer.allocateDirect(Math.max(count, 2 * myInput.capacity()));
+			input.put(myInput);
+			myInput = input;
+		} else {
+			myInput.compact();
+		}
+		try {
+			while (myInput.position() < count) {
+				if (myIn.read(myInput) == -1) {
+					return false;
+				}
+			}
+			return true;
+		} finally {
+			myInput.flip();
+		}
+	}
+
+	// InputStream over the bytes waiting in myInput, reading more from the
+	// channel when they run out.
+	private class InputBytes extends InputStream {
+
+		public int read() throws IOException {
+			return fill(1) ? myInput.get() & 0xff : -1;
+		}
+	}
+
+	// OutputStream that appends the unfiltered bytes to myChunks.
+	private class ChunksOutputStream extends OutputStream {
+
+		public void write(int b) {
+			if (!myChunks.hasRemaining()) {
+				grow(1);
+			}
+			myChunks.put((byte) b);
+		}
+
+		public void write(byte[] b, int off, int len) {
+			if (myChunks.remaining() < len) {
+				grow(len);
+			}
+			myChunks.put(b, off, len);
+		}
+
+		// helper method makes room for len more bytes.
+		private void grow(int len) {
+			ByteBuffer chunks = ByteBuffer.allocateDirect(Math.max(myChunks.position() + len, 2 * myChunks.capacity()));
+			myChunks.flip();
+			chunks.put(myChunks);
+			myChunks = chunks;
+		}
+	}
+}
@@ -0,0 +1,161 @@
+//import statements:
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+// HuffmanWritableChannel compresses the buffers written to it, the channel
+// version of HuffmanOutputStream. The blocks are collected in a direct buffer
+// and encoded straight into another, and a file can be sent through it without
+// any stream in between:
+//
+// try (HuffmanWritableChannel out = new HuffmanWritableChannel(target)) {
+//     source.transferTo(0, source.size(), out);
+// }
+//
+// The files written are the same as HuffmanOutputStream's, blocks of
+// HuffmanOutputStream.BLOCK_LENGTH bytes each with its own tree and checksums.
+public class HuffmanWritableChannel implements WritableByteChannel {
+
+	// class constants:
+	private static final int BITS_PER_BYTE = 8;
+	// room for the file header or the end marker next to a block.
+	private static final int EXTRA_BYTES = 2 * IHuffConstants.BITS_PER_INT / BITS_PER_BYTE;
+
+	// instance vars:
+	private final WritableByteChannel myOut;
+	private final int myHeaderFormat;
+	// the chunks of the block being collected.
+	private final ByteBuffer myBlock = ByteBuffer.allocateDirect(HuffmanOutputStream.BLOCK_LENGTH);
+	// the encoded block, a block is never larger than its chunks stored.
+	private final ByteBuffer myBytes = ByteBuffer.allocateDirect(HuffmanOutputStream.BLOCK_LENGTH
+			+ (HuffBlock.HEADER_BITS + HuffBlock.CHECKSUM_BITS) / BITS_PER_BYTE + EXTRA_BYTES);
+	private final int[] myFreq = new int[IHuffConstants.ALPH_SIZE];
+	// true once the end marker is written, and once the channel is closed.
+	private boolean myFinished;
+	private boolean myClosed;
+
+	// Constructor: writes the tree format.
+	// out: where the compressed data is written.
+	// pre: out != null
+	public HuffmanWritableChannel(WritableByteChannel out) throws IOException {
+		this(out, IHuffConstants.STORE_TREE);
+	}
+
+	// Constructor: writes the file header.
+	// out: where the compressed data is written.
+	// headerFormat: STORE_COUNTS or STORE_TREE.
+	// pre: out != null, headerFormat is STORE_COUNTS or STORE_TREE
+	public HuffmanWritableChannel(WritableByteChannel out, int headerFormat) throws IOException {
+		// check precon:
+		if (out == null) {
+			throw new IllegalArgumentException("channel cannot equal null");
+		}
+		if (headerFormat != IHuffConstants.STORE_COUNTS && headerFormat != IHuffConstants.STORE_TREE) {
+			throw new IllegalArgumentException("header format must be STORE_COUNTS or STORE_TREE");
+		}
+		myOut = out;
+		myHeaderFormat = headerFormat;
+		myBytes.putInt(IHuffConstants.MAGIC_NUMBER);
+		myBytes.putInt(headerFormat | IHuffConstants.FLAG_BLOCKS | IHuffConstants.FLAG_CHECKSUM);
+		send();
+	}
+
+	// method takes every byte left in src. Whole blocks of a large buffer are
+	// encoded from it without being copied first.
+	// returns the number of bytes taken.
+	public int write(ByteBuffer src) throws IOException {
+		if (myClosed || myFinished) {
+			throw new ClosedChannelException();
+		}
+		int result = src.remaining();
+		while (src.hasRemaining()) {
+			if (myBlock.position() == 0 && src.remaining() >= myBlock.capacity()) {
+				ByteBuffer chunks = src.duplicate();
+				chunks.limit(chunks.position() + myBlock.capacity());
+				writeBlock(chunks);
+				src.position(chunks.position());
+			} else {
+				int n = Math.min(src.remaining(), myBlock.remaining());
+				ByteBuffer part = src.duplicate();
+				part.limit(part.position() + n);
+				myBlock.put(part);
+				src.position(part.position());
+				if (!myBlock.hasRemaining()) {
+					flushBlock();
+				}
+			}
+		}
+		return result;
+	}
+
+	// method writes the last block and the end marker without closing the
+	// channel written to.
+	public void finish() throws IOException {
+		if (myFinished) {
+			return;
+		}
+		if (myBlock.position() > 0) {
+			flushBlock();
+		}
+		myBytes.put((byte) HuffBlock.END);
+		send();
+		myFinished = true;
+	}
+
+	public boolean isOpen() {
+		return !myClosed;
+	}
+
+	public void close() throws IOException {
+		if (myClosed) {
+			return;
+		}
+		try {
+			finish();
+		} finally {
+			myClosed = true;
+			myOut.close();
+		}
+	}
+
+	// helper method writes the chunks collected in myBlock.
+	private void flushBlock() throws IOException {
+		myBlock.flip();
+		writeBlock(myBlock);
+		myBlock.clear();
+	}
+
+	// helper method counts the chunks from the position of chunks to its limit,
+	// then writes them as a block.
+	private void writeBlock(ByteBuffer chunks) throws IOException {
+		Arrays.fill(myFreq, 0);
+		int start = chunks.position();
+		int end = chunks.limit();
+		int i = start;
+		// the chunks are counted a long at a time.
+		for (; i + Long.BYTES <= end; i += Long.BYTES) {
+			long word = chunks.getLong(i);
+			for (int shift = Long.SIZE - BITS_PER_BYTE; shift >= 0; shift -= BITS_PER_BYTE) {
+				myFreq[(int) (word >>> shift) & 0xff]++;
+			}
+		}
+		for (; i < end; i++) {
+			myFreq[chunks.get(i) & 0xff]++;
+		}
+		// HuffBlock keeps the frequencies, so it gets a copy.
+		HuffBlock block = new HuffBlock(myFreq.clone(), myHeaderFormat, true);
+		block.write(chunks, myBytes);
+		send();
+	}
+
+	// helper method writes the bytes encoded so far to the channel.
+	private void send() throws IOException {
+		myBytes.flip();
+		while (myBytes.hasRemaining()) {
+			myOut.write(myBytes);
+		}
+		myBytes.clear();
+	}
+}
@@ -60,4 +60,51 @@ public interface IHuffConstants {
      * besides Standard Count Format or Standard Tree Format.
      */      
     public static final int STORE_CUSTOM = MAGIC_NUMBER | 4;
+
+    /**
+     * Mask that isolates the header format (<tt>STORE_COUNTS</tt>,
+     * <tt>STORE_TREE</tt> or <tt>STORE_CUSTOM</tt>) from the value written
+     * after the magic number. The remaining low bits are flags that
+     * describe optional parts of the header.
+     */
+    public static final int HEADER_FORMAT_MASK = MAGIC_NUMBER | 0x0f;
+
+    /**
+     * Flag or-ed into the header format indicating that a filter chain
+     * follows the header format value. The filters are undone on the
+     * uncompressed data.
+     */
+    public static final int FLAG_FILTERED = 0x10;
+
+    /**
+     * Flag or-ed into the header format indicating that the data is
+     * stored in blocks, each with its own tree, instead of a single
+     * tree header followed by the codes. See <code>HuffBlock</code>.
+     */
+    public static final int FLAG_BLOCKS = 0x20;
+
+    /**
+     * Flag or-ed into the header format indicating that the number of
+     * chunks in the original file follows the header format value (after
+     * any filter chain) as a variable-length integer. Data written with
+     * a single tree then has no <tt>PSEUDO_EOF</tt> code at its end.
+     */
+    public static final int FLAG_LENGTH = 0x40;
+
+    /**
+     * Flag or-ed into the header format indicating that a seek table
+     * follows the end marker of the blocks, so decoding can start at a
+     * sync point instead of the start of the data. Only used together
+     * with <tt>FLAG_BLOCKS</tt>. See <code>SeekTable</code>.
+     */
+    public static final int FLAG_SYNC = 0x80;
+
+    /**
+     * Flag or-ed into the header format indicating that every block is
+     * followed by two CRC32C checksums (<tt>BITS_PER_INT</tt> bits each),
+     * one of the payload as it is written and one of the chunks of the
+     * block, so damaged data is found without a full decode. Only used
+     * together with <tt>FLAG_BLOCKS</tt>. See <code>HuffBlock</code>.
+     */
+    public static final int FLAG_CHECKSUM = 0x100;
 }
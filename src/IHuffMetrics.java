@@ -0,0 +1,126 @@
+/**
+ * A listener the model reports timings and counts to, as typed events
+ * instead of the strings sent to an <code>IHuffViewer</code>. Attach
+ * one with <code>SimpleHuffProcessor.setMetrics</code>; with none
+ * attached the model doesn't read the clock at all.
+ * <P>
+ * Implementations may be shared by models running on several threads
+ * at once, so they must be thread safe. <code>MetricsRecorder</code>
+ * is the default implementation.
+ */
+public interface IHuffMetrics {
+
+    /**
+     * The timed phases. <tt>PREPROCESS</tt>, <tt>COMPRESS</tt> and
+     * <tt>UNCOMPRESS</tt> are the calls to the model, the others are
+     * the parts of those calls.
+     */
+    public enum Phase {
+        PREPROCESS, COMPRESS, UNCOMPRESS,
+        SAMPLE, COUNT, TREE, WRITE_HEADER, ENCODE, READ_HEADER, DECODE
+    }
+
+    /**
+     * The counted events.
+     */
+    public enum Counter {
+        BYTES_READ, BYTES_WRITTEN, FILES, BLOCKS, STORED_BLOCKS, ERRORS
+    }
+
+    /**
+     * Called when a phase starts, on the thread that runs it.
+     * @param phase is the phase starting
+     */
+    public void phaseStarted(Phase phase);
+
+    /**
+     * Called when a phase ends, on the thread that ran it.
+     * @param phase is the phase that ended
+     * @param nanos is how long the phase took
+     * @param bytes is the number of bytes of original data the phase
+     * went through, 0 if it doesn't go through the data
+     */
+    public void phaseEnded(Phase phase, long nanos, long bytes);
+
+    /**
+     * Called when something counted happens.
+     * @param counter is what happened
+     * @param amount is how many times, or how many bytes
+     */
+    public void count(Counter counter, long amount);
+
+    /**
+     * Called when a call to the model starts, on the thread that runs
+     * it. The operation's progress is updated as its input is read.
+     * @param op is the operation starting
+     */
+    public void operationStarted(HuffOperation op);
+
+    /**
+     * Called when a call to the model ends, whether it worked or not.
+     * @param op is the operation that ended
+     */
+    public void operationEnded(HuffOperation op);
+
+    /**
+     * Tells metrics that a phase starts, if it isn't null.
+     * @param metrics is the listener, or null
+     * @param phase is the phase starting
+     * @return the time to pass to <code>endPhase</code>
+     */
+    public static long startPhase(IHuffMetrics metrics, Phase phase) {
+        if (metrics == null) {
+            return 0;
+        }
+        metrics.phaseStarted(phase);
+        return System.nanoTime();
+    }
+
+    /**
+     * Tells metrics that a phase ended, if it isn't null.
+     * @param metrics is the listener, or null
+     * @param phase is the phase that ended
+     * @param start is the time returned by <code>startPhase</code>
+     * @param bytes is the number of bytes of original data the phase
+     * went through
+     */
+    public static void endPhase(IHuffMetrics metrics, Phase phase, long start, long bytes) {
+        if (metrics != null) {
+            metrics.phaseEnded(phase, System.nanoTime() - start, bytes);
+        }
+    }
+
+    /**
+     * Tells metrics that an operation started, if neither is null.
+     * @param metrics is the listener, or null
+     * @param op is the operation, or null
+     */
+    public static void startOperation(IHuffMetrics metrics, HuffOperation op) {
+        if (metrics != null && op != null) {
+            metrics.operationStarted(op);
+        }
+    }
+
+    /**
+     * Tells metrics that an operation ended, if neither is null.
+     * @param metrics is the listener, or null
+     * @param op is the operation, or null
+     */
+    public static void endOperation(IHuffMetrics metrics, HuffOperation op) {
+        if (metrics != null && op != null) {
+            metrics.operationEnded(op);
+        }
+    }
+
+    /**
+     * Counts an event, if metrics isn't null.
+     * @param metrics is the listener, or null
+     * @param counter is what happened
+     * @param amount is how many times, or how many bytes
+     */
+    public static void add(IHuffMetrics metrics, Counter counter, long amount) {
+        if (metrics != null) {
+            metrics.count(counter, amount);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+//import statements:
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+// IntHuffmanCodec huffs streams of int symbols from an alphabet of any size,
+// e.g. dictionary ids or enum codes, into a bitstream held in a long[] or a
+// ByteBuffer. It builds the tree and writes the header the same way Compressor
+// does for files, the end of file value is alphabetSize. Symbols are never
+// boxed.
+//
+// Layout of the bitstream:
+// MAGIC_NUMBER, header format, alphabet size, number of symbols (BITS_PER_INT
+// each), the header data for the tree and then the code of every symbol.
+public class IntHuffmanCodec {
+
+	// class constants:
+	// the largest alphabet that can be coded, the end of file value must fit in
+	// an int tree value.
+	public static final int MAX_ALPHABET_SIZE = 1 << 30;
+
+	// this class only has static methods.
+	private IntHuffmanCodec() {
+	}
+
+	// method huffs symbols into a bitstream.
+	// symbols: the symbols to huff.
+	// alphabetSize: every symbol must be in [0, alphabetSize).
+	// headerFormat: STORE_COUNTS or STORE_TREE.
+	// pre: symbols != null, 1 <= alphabetSize <= MAX_ALPHABET_SIZE
+	// returns the bits, the last long is padded with zeroes.
+	public static long[] encode(int[] symbols, int alphabetSize, int headerFormat) {
+		// check precon:
+		if (symbols == null) {
+			throw new IllegalArgumentException("symbols can't be null");
+		}
+		return encodeToBuffer(IntBuffer.wrap(symbols), alphabetSize, headerFormat).toLongArray();
+	}
+
+	// method huffs the symbols from the position to the limit of symbols into a
+	// bitstream. The position of symbols is not changed.
+	// pre: symbols != null, 1 <= alphabetSize <= MAX_ALPHABET_SIZE
+	// returns the bits, the last long is padded with zeroes.
+	public static long[] encode(IntBuffer symbols, int alphabetSize, int headerFormat) {
+		// check precon:
+		if (symbols == null) {
+			throw new IllegalArgumentException("symbols can't be null");
+		}
+		return encodeToBuffer(symbols, alphabetSize, headerFormat).toLongArray();
+	}
+
+	// method huffs the symbols from the position to the limit of symbols and puts
+	// the bitstream into out. The position of symbols is not changed.
+	// pre: symbols != null, out != null, 1 <= alphabetSize <= MAX_ALPHABET_SIZE,
+	// out has room for the bitstream.
+	// returns the number of bytes put into out, the last byte is padded with
+	// zeroes.
+	public static int encode(IntBuffer symbols, int alphabetSize, int headerFormat, ByteBuffer out) {
+		// check precon:
+		if (symbols == null || out == null) {
+			throw new IllegalArgumentException("symbols and out can't be null");
+		}
+		BitBuffer bits = encodeToBuffer(symbols, alphabetSize, headerFormat);
+		if (out.remaining() < bits.getByteLength()) {
+			throw new IllegalArgumentException("out needs " + bits.getByteLength() + " bytes");
+		}
+		return bits.writeTo(out);
+	}
+
+	// method returns the symbols huffed into stream by encode.
+	// pre: stream != null
+	public static int[] decode(long[] stream) throws IOException {
+		// check precon:
+		if (stream == null) {
+			throw new IllegalArgumentException("stream can't be null");
+		}
+		return decode(new BitBuffer(stream, (long) stream.length * Long.SIZE));
+	}
+
+	// method returns the symbols huffed into the remaining bytes of in by encode.
+	// pre: in != null
+	// post: in's position is moved to its limit.
+	public static int[] decode(ByteBuffer in) throws IOException {
+		// check precon:
+		if (in == null) {
+			throw new IllegalArgumentException("in can't be null");
+		}
+		return decode(BitBuffer.wrap(in));
+	}
+
+	// helper method counts the symbols, builds the tree and writes the bitstream.
+	private static BitBuffer encodeToBuffer(IntBuffer symbols, int alphabetSize, int headerFormat) {
+		// check precon:
+		if (alphabetSize < 1 || alphabetSize > MAX_ALPHABET_SIZE) {
+			throw new IllegalArgumentException("invalid alphabet size: " + alphabetSize);
+		}
+		// anything but the count format is written in the tree format.
+		headerFormat = headerFormat == IHuffConstants.STORE_COUNTS ? IHuffConstants.STORE_COUNTS
+				: IHuffConstants.STORE_TREE;
+		int start = symbols.position();
+		int end = symbols.limit();
+		// find the frequency of each symbol.
+		int[] freq = new int[alphabetSize];
+		for (int i = start; i < end; i++) {
+			int symbol = symbols.get(i);
+			if (symbol < 0 || symbol >= alphabetSize) {
+				throw new IllegalArgumentException("symbol out of range: " + symbol);
+			}
+			freq[symbol]++;
+		}
+		HuffTree tree = HuffTree.fromFrequencies(freq, alphabetSize);
+		CodeBook codes = tree.getCodeBook(alphabetSize + 1);
+		// write the header.
+		BitBuffer bits = new BitBuffer();
+		bits.writeBits(IHuffConstants.BITS_PER_INT, IHuffConstants.MAGIC_NUMBER);
+		bits.writeBits(IHuffConstants.BITS_PER_INT, headerFormat);
+		bits.writeBits(IHuffConstants.BITS_PER_INT, alphabetSize);
+		bits.writeBits(IHuffConstants.BITS_PER_INT, end - start);
+		tree.writeHeader(bits, headerFormat, freq);
+		// write the code of every symbol.
+		for (int i = start; i < end; i++) {
+			codes.write(bits, symbols.get(i));
+		}
+		return bits;
+	}
+
+	// helper method reads the header and decodes the symbols.
+	private static int[] decode(BitBuffer bits) throws IOException {
+		if (bits.readBits(IHuffConstants.BITS_PER_INT) != IHuffConstants.MAGIC_NUMBER) {
+			throw new IOException("not a huffed symbol stream");
+		}
+		int headerFormat = bits.readBits(IHuffConstants.BITS_PER_INT);
+		int alphabetSize = bits.readBits(IHuffConstants.BITS_PER_INT);
+		int count = bits.readBits(IHuffConstants.BITS_PER_INT);
+		if ((headerFormat != IHuffConstants.STORE_COUNTS && headerFormat != IHuffConstants.STORE_TREE)
+				|| alphabetSize < 1 || alphabetSize > MAX_ALPHABET_SIZE || count < 0) {
+			throw new IOException("invalid symbol stream header");
+		}
+		// a STORE_COUNTS header has BITS_PER_INT bits for every value and every
+		// symbol has a code of a bit at least, so nothing is allocated for more
+		// than the stream holds.
+		if (headerFormat == IHuffConstants.STORE_COUNTS
+				&& (long) alphabetSize * IHuffConstants.BITS_PER_INT > bits.getBitsLeft()) {
+			throw new IOException("symbol stream ends early or is corrupt");
+		}
+		HuffTree tree = HuffTree.readHeader(bits, headerFormat, alphabetSize);
+		if (count > bits.getBitsLeft()) {
+			throw new IOException("symbol stream ends early or is corrupt");
+		}
+		int[] symbols = new int[count];
+		for (int i = 0; i < count; i++) {
+			int symbol = tree.decode(bits);
+			if (symbol < 0 || symbol >= alphabetSize) {
+				throw new IOException("symbol stream ends early or is corrupt");
+			}
+			symbols[i] = symbol;
+		}
+		return symbols;
+	}
+}
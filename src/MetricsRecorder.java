@@ -0,0 +1,172 @@
+//import statements:
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// MetricsRecorder is the default IHuffMetrics. It keeps a histogram of the
+// durations of every phase, the bytes each phase went through and the total of
+// every counter. The histograms have one bucket per power of two nanoseconds,
+// so percentiles are within a factor of two. Everything is kept in LongAdders,
+// so one recorder can be shared by models running on many threads.
+public class MetricsRecorder implements IHuffMetrics {
+
+	// class constants:
+	// one bucket for every bit of a long.
+	private static final int BUCKETS = Long.SIZE;
+	private static final double NANOS_PER_MILLI = 1e6;
+	private static final double BYTES_PER_MB = 1 << 20;
+
+	// instance vars:
+	private final Map<Phase, PhaseStats> myPhases = new EnumMap<>(Phase.class);
+	private final Map<Counter, LongAdder> myCounters = new EnumMap<>(Counter.class);
+
+	// Constructor:
+	public MetricsRecorder() {
+		// every entry is made up front so the maps are only ever read.
+		for (Phase phase : Phase.values()) {
+			myPhases.put(phase, new PhaseStats());
+		}
+		for (Counter counter : Counter.values()) {
+			myCounters.put(counter, new LongAdder());
+		}
+	}
+
+	// the durations of one phase.
+	private static class PhaseStats {
+		private final LongAdder myCount = new LongAdder();
+		private final LongAdder myNanos = new LongAdder();
+		private final LongAdder myBytes = new LongAdder();
+		// myBuckets[i] counts the durations d with 2^i <= d < 2^(i + 1), and
+		// myBuckets[0] also counts 0.
+		private final LongAdder[] myBuckets = new LongAdder[BUCKETS];
+
+		private PhaseStats() {
+			for (int i = 0; i < BUCKETS; i++) {
+				myBuckets[i] = new LongAdder();
+			}
+		}
+	}
+
+	public void operationStarted(HuffOperation op) {
+	}
+
+	public void operationEnded(HuffOperation op) {
+	}
+
+	public void phaseStarted(Phase phase) {
+	}
+
+	public void phaseEnded(Phase phase, long nanos, long bytes) {
+		PhaseStats stats = myPhases.get(phase);
+		nanos = Math.max(0, nanos);
+		stats.myCount.increment();
+		stats.myNanos.add(nanos);
+		stats.myBytes.add(bytes);
+		stats.myBuckets[Math.max(0, BUCKETS - 1 - Long.numberOfLeadingZeros(nanos))].increment();
+	}
+
+	public void count(Counter counter, long amount) {
+		myCounters.get(counter).add(amount);
+	}
+
+	// method returns the number of times phase ended.
+	public long getCount(Phase phase) {
+		return myPhases.get(phase).myCount.sum();
+	}
+
+	// method returns the total time spent in phase.
+	public long getNanos(Phase phase) {
+		return myPhases.get(phase).myNanos.sum();
+	}
+
+	// method returns the bytes of original data phase went through.
+	public long getBytes(Phase phase) {
+		return myPhases.get(phase).myBytes.sum();
+	}
+
+	// method returns the total of counter.
+	public long getCounter(Counter counter) {
+		return myCounters.get(counter).sum();
+	}
+
+	// method returns the MB of original data phase went through per second, 0
+	// if it took no time.
+	public double getThroughput(Phase phase) {
+		long nanos = getNanos(phase);
+		if (nanos == 0) {
+			return 0;
+		}
+		return getBytes(phase) / BYTES_PER_MB / (nanos / 1e9);
+	}
+
+	// method returns a duration at least as long as the fraction p of the
+	// durations of phase, and less than twice the one that is exactly.
+	// pre: 0 <= p <= 1
+	// returns 0 if the phase never ended.
+	public long getPercentile(Phase phase, double p) {
+		// check precon:
+		if (p < 0 || p > 1) {
+			throw new IllegalArgumentException("p must be in [0, 1]");
+		}
+		PhaseStats stats = myPhases.get(phase);
+		long[] counts = new long[BUCKETS];
+		long total = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] = stats.myBuckets[i].sum();
+			total += counts[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		// the rank of the duration wanted, at least the first one.
+		long rank = Math.max(1, (long) Math.ceil(p * total));
+		long seen = 0;
+		int i = 0;
+		while (seen + counts[i] < rank) {
+			seen += counts[i];
+			i++;
+		}
+		// the top of the bucket.
+		return i == BUCKETS - 1 ? Long.MAX_VALUE : (2L << i) - 1;
+	}
+
+	// method forgets everything recorded so far.
+	public void reset() {
+		for (PhaseStats stats : myPhases.values()) {
+			stats.myCount.reset();
+			stats.myNanos.reset();
+			stats.myBytes.reset();
+			for (LongAdder bucket : stats.myBuckets) {
+				bucket.reset();
+			}
+		}
+		for (LongAdder counter : myCounters.values()) {
+			counter.reset();
+		}
+	}
+
+	// method returns one line for every phase that ended and every counter that
+	// isn't 0.
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		for (Phase phase : Phase.values()) {
+			long count = getCount(phase);
+			if (count > 0) {
+				result.append(String.format("%-14s n=%d total=%.3fms p50<=%.3fms p99<=%.3fms", phase, count,
+						getNanos(phase) / NANOS_PER_MILLI, getPercentile(phase, 0.5) / NANOS_PER_MILLI,
+						getPercentile(phase, 0.99) / NANOS_PER_MILLI));
+				if (getBytes(phase) > 0) {
+					result.append(String.format(" %.1fMB/s", getThroughput(phase)));
+				}
+				result.append("\n");
+			}
+		}
+		for (Counter counter : Counter.values()) {
+			long total = getCounter(counter);
+			if (total != 0) {
+				result.append(String.format("%-14s %d", counter, total)).append("\n");
+			}
+		}
+		return result.toString();
+	}
+}
@@ -0,0 +1,180 @@
+//import statements:
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Arrays;
+
+// SeekTable lists the sync points of a file compressed in blocks, one every
+// interval chunks of the original data. A sync point records where in the
+// compressed file decoding can start: the byte offset of the block the chunk
+// is in, the bit offset of its code from the start of the block's payload and
+// its index in the block. The table is written after the end marker of the
+// blocks, followed by the byte offset at which the table starts, so it is
+// found from the end of the file.
+//
+// All values are written with a fixed width so the size of the table only
+// depends on the length of the data: the interval and the number of entries
+// (BITS_PER_INT bits each), the length of the data (2 * BITS_PER_INT bits),
+// then per entry the block offset and the bit offset (2 * BITS_PER_INT bits
+// each) and the index (BITS_PER_INT bits), and last the offset of the table
+// (2 * BITS_PER_INT bits).
+public class SeekTable {
+
+	// class constants:
+	private static final int BITS_PER_BYTE = 8;
+	private static final int BITS_PER_ENTRY = 5 * IHuffConstants.BITS_PER_INT;
+	private static final int BITS_PER_LONG = 2 * IHuffConstants.BITS_PER_INT;
+	// bits written before and after the entries.
+	private static final int HEADER_BITS = 2 * IHuffConstants.BITS_PER_INT + BITS_PER_LONG;
+	private static final int TRAILER_BITS = BITS_PER_LONG;
+	private static final int INITIAL_ENTRIES = 16;
+
+	// instance vars:
+	// number of chunks between sync points.
+	private final int interval;
+	// number of chunks in the original data.
+	private long length;
+	private int size;
+	private long[] blockOffsets;
+	private long[] bitOffsets;
+	private int[] indexes;
+
+	// Constructor:
+	// interval: number of chunks between sync points.
+	// pre: interval > 0 and a multiple of FilterChain.BLOCK_SIZE, so decoding
+	// from a sync point starts at the start of a filtered block.
+	public SeekTable(int interval) {
+		// check precon:
+		if (interval <= 0 || interval % FilterChain.BLOCK_SIZE != 0) {
+			throw new IllegalArgumentException("interval must be a positive multiple of " + FilterChain.BLOCK_SIZE);
+		}
+		this.interval = interval;
+		blockOffsets = new long[INITIAL_ENTRIES];
+		bitOffsets = new long[INITIAL_ENTRIES];
+		indexes = new int[INITIAL_ENTRIES];
+	}
+
+	// method adds the next sync point.
+	// blockOffset: byte offset of the header of the block in the compressed file.
+	// bitOffset: bit offset of the code of the chunk from the start of the
+	// payload of the block.
+	// index: index of the chunk in the block.
+	public void add(long blockOffset, long bitOffset, int index) {
+		if (size == blockOffsets.length) {
+			blockOffsets = Arrays.copyOf(blockOffsets, size * 2);
+			bitOffsets = Arrays.copyOf(bitOffsets, size * 2);
+			indexes = Arrays.copyOf(indexes, size * 2);
+		}
+		blockOffsets[size] = blockOffset;
+		bitOffsets[size] = bitOffset;
+		indexes[size] = index;
+		size++;
+	}
+
+	// method sets the number of chunks in the original data.
+	public void setLength(long length) {
+		this.length = length;
+	}
+
+	// method returns the number of chunks between sync points.
+	public int getInterval() {
+		return interval;
+	}
+
+	// method returns the number of chunks in the original data.
+	public long getLength() {
+		return length;
+	}
+
+	// method returns the number of sync points.
+	public int size() {
+		return size;
+	}
+
+	// method returns the byte offset of the block of sync point i.
+	public long getBlockOffset(int i) {
+		return blockOffsets[i];
+	}
+
+	// method returns the bit offset in the payload of its block of sync point i.
+	public long getBitOffset(int i) {
+		return bitOffsets[i];
+	}
+
+	// method returns the index in its block of sync point i.
+	public int getIndex(int i) {
+		return indexes[i];
+	}
+
+	// method writes the table.
+	// writer: BitOutputStream connected to the compressed file, at a byte
+	// boundary.
+	// offset: the byte offset in the compressed file the table starts at.
+	// pre: writer != null
+	public void write(BitOutputStream writer, long offset) {
+		writer.writeBits(IHuffConstants.BITS_PER_INT, interval);
+		writer.writeBits(IHuffConstants.BITS_PER_INT, size);
+		writeLong(writer, length);
+		for (int i = 0; i < size; i++) {
+			writeLong(writer, blockOffsets[i]);
+			writeLong(writer, bitOffsets[i]);
+			writer.writeBits(IHuffConstants.BITS_PER_INT, indexes[i]);
+		}
+		writeLong(writer, offset);
+	}
+
+	// method returns the number of bits write writes for length chunks.
+	public static long getBitSize(long length, int interval) {
+		long entries = (length + interval - 1) / interval;
+		return HEADER_BITS + entries * BITS_PER_ENTRY + TRAILER_BITS;
+	}
+
+	// method reads the table at the end of a compressed file.
+	// in: the compressed file, its position is changed.
+	// pre: in != null
+	public static SeekTable read(SeekableByteChannel in) throws IOException {
+		long end = in.size();
+		if (end < (HEADER_BITS + TRAILER_BITS) / BITS_PER_BYTE) {
+			throw new IOException("file too short for a seek table");
+		}
+		ByteBuffer trailer = readFully(in, end - TRAILER_BITS / BITS_PER_BYTE, TRAILER_BITS / BITS_PER_BYTE);
+		long offset = trailer.getLong();
+		long tableBytes = end - TRAILER_BITS / BITS_PER_BYTE - offset;
+		if (offset < 0 || tableBytes < HEADER_BITS / BITS_PER_BYTE || tableBytes > Integer.MAX_VALUE) {
+			throw new IOException("invalid seek table offset");
+		}
+		ByteBuffer buffer = readFully(in, offset, (int) tableBytes);
+		int interval = buffer.getInt();
+		int size = buffer.getInt();
+		long length = buffer.getLong();
+		if (interval <= 0 || interval % FilterChain.BLOCK_SIZE != 0 || size < 0
+				|| (long) size * BITS_PER_ENTRY / BITS_PER_BYTE != buffer.remaining()) {
+			throw new IOException("invalid seek table");
+		}
+		SeekTable table = new SeekTable(interval);
+		table.setLength(length);
+		for (int i = 0; i < size; i++) {
+			table.add(buffer.getLong(), buffer.getLong(), buffer.getInt());
+		}
+		return table;
+	}
+
+	// helper method writes a long as two ints, high half first.
+	private static void writeLong(BitOutputStream writer, long value) {
+		writer.writeBits(IHuffConstants.BITS_PER_INT, (int) (value >>> IHuffConstants.BITS_PER_INT));
+		writer.writeBits(IHuffConstants.BITS_PER_INT, (int) value);
+	}
+
+	// helper method reads count bytes at position of in.
+	private static ByteBuffer readFully(SeekableByteChannel in, long position, int count) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(count);
+		in.position(position);
+		while (buffer.hasRemaining()) {
+			if (in.read(buffer) == -1) {
+				throw new IOException("file ended in the seek table");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+}
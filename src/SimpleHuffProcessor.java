@@ -1,53 +1,119 @@
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.SeekableByteChannel;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
 
-// class compresses and decompresses files.
+// class compresses and decompresses files. The counting and encoding are done
+// by a HuffEngine made from the options, this class keeps the Compressor
+// between preprocessCompress and compress and shows the results.
 public class SimpleHuffProcessor implements IHuffProcessor {
 	// instance vars:
 	// myViewer required to display messages to user.
 	private IHuffViewer myViewer;
 	// myCompressor stores all data required for compression.
 	private Compressor myCompressor;
+	// myFilters is the filter chain applied before counting, null means the chain
+	// is chosen from a sample of the input.
+	private FilterChain myFilters;
+	// mySplitBlocks is true if the data may be split into blocks with their own
+	// trees.
+	private boolean mySplitBlocks = true;
+	// myCheckSamples is true if a sample of the data is checked before counting so
+	// data that won't compress is not counted.
+	private boolean myCheckSamples = true;
+	// myStoreLength is true if the number of chunks is written in the header.
+	private boolean myStoreLength = true;
+	// myChecksums is true if every block is written with its checksums.
+	private boolean myChecksums = true;
+	// mySyncInterval is the number of chunks between sync points, 0 for no seek
+	// table.
+	private int mySyncInterval;
+	// myPipelined is true if compress reads and writes on threads of their own.
+	private boolean myPipelined;
+	// myVerify is true if compress decodes what it writes on a thread of its own
+	// and checks it against the input.
+	private boolean myVerify;
+	// myRetainLimit is the most bytes of the input kept in memory when
+	// preprocessCompress keeps a copy for compress, -1 if it doesn't.
+	private int myRetainLimit = -1;
+	// myRetained is the copy of the input preprocessCompress read, or null.
+	private SpillBuffer myRetained;
+	// myMetrics is the listener the phases and counts are reported to, or null.
+	private IHuffMetrics myMetrics;
+	// myFailed is true once an error is shown during the current operation.
+	private boolean myFailed;
+	// size of the buffer used when writing the uncompressed file.
+	private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
 
 	// compress method: method writes the compressed version to a file.
 	// in: InputStream connected to the file to be compressed.
 	// out: OutputStream connected to the output file.
 	// force: boolean which determines if the output file is to be written
-	// pre: in != null & out != null
+	// pre: in != null & out != null, in may be null if preprocessCompress kept a
+	// copy of the input, which is then read instead.
 	// Method returns the number of bits written to the compressed file.
 	public int compress(InputStream in, OutputStream out, boolean force) throws IOException {
 		// check precon:
-		if (in == null || out == null) {
+		if ((in == null && myRetained == null) || out == null) {
 			throw new IllegalArgumentException("InputStream and OutputStream cannot equal null");
 		}
+		if (myRetained != null) {
+			try (SpillBuffer retained = myRetained; InputStream copy = retained.openStream()) {
+				myRetained = null;
+				return toIntBits(compressData(copy, out, force));
+			}
+		}
+		return toIntBits(compressData(in, out, force));
+	}
+
+	// helper method times and writes the compressed file, see compress.
+	private long compressData(InputStream in, OutputStream out, boolean force) throws IOException {
+		HuffOperation op = null;
+		if (myMetrics != null) {
+			op = startOperation(IHuffMetrics.Phase.COMPRESS, EntropySampler.remainingLength(in));
+		}
+		if (myPipelined) {
+			// the stages only start their threads if the data is written.
+			in = HuffPipeline.reading(in);
+			out = HuffPipeline.writing(out);
+		}
+		long bitsWritten = -1;
+		try {
+			bitsWritten = writeCompressed(op == null ? in : op.track(in), out, force);
+		} finally {
+			endOperation(op, bitsWritten == -1 ? -1 : (bitsWritten + BITS_PER_WORD - 1) / BITS_PER_WORD);
+		}
+		return bitsWritten;
+	}
 
+	// helper method writes the compressed file, see compress.
+	private long writeCompressed(InputStream in, OutputStream out, boolean force) throws IOException {
 		// get the number of bits in the original file.
-		int bitsInOriginalFile = myCompressor.getNumBitsInOriginalFile();
+		long bitsInOriginalFile = myCompressor.getNumBitsInOriginalFile();
 		// get the number of bits that would be written to the compressed file.
-		int bitsWritten = myCompressor.getNumBitsWritten();
+		long bitsWritten = myCompressor.getNumBitsWritten();
 		// check if the compressed file should be written.
 		// if force is not true, the number of bits written should be less than the
 		// number of bits in the original file.
 		if (force || (bitsInOriginalFile - bitsWritten) > 0) {
-			// create a BitOutputStream from the OutputStream. use BufferedOutputStream to
-			// make method faster.
-			BitOutputStream writer = new BitOutputStream(new BufferedOutputStream(out));
-			// create a BitInputStream from the InputStream. use BufferedInputStream to make
-			// method faster.
-			BitInputStream reader = new BitInputStream(new BufferedInputStream(in));
-			// call the compressor's compress method to write to the file.
-			myCompressor.compress(writer, reader);
-			// close the reader and writer.
-			writer.close();
-			reader.close();
+			if (myVerify) {
+				HuffVerifier verifier = new HuffVerifier();
+				bitsWritten = getEngine().encode(myCompressor, verifier.input(in), verifier.output(out));
+				showString("verified: " + verifier.finish() + " bytes");
+			} else {
+				bitsWritten = getEngine().encode(myCompressor, in, out);
+			}
 			showString("bits written: " + bitsWritten);
 			return bitsWritten;
 		} else {
-			myViewer.showError("compressed file was larger than original");
+			showError("compressed file was larger than original");
 		}
 		// if no compression was done, return -1.
 		return -1;
@@ -55,7 +121,8 @@ public class SimpleHuffProcessor implements IHuffProcessor {
 
 	// method makes calls to methods in myCompressor, prepares data required for
 	// compression.
-	// in: InputStream connected to the file to be compressed.
+	// in: InputStream connected to the file to be compressed. With setRetainInput
+	// all of it is read and kept for compress.
 	// headerFormat: determines which format the file is to be compressed in.
 	// pre: in != null
 	// method return the number of bits that would be saved by compressing the file.
@@ -64,24 +131,174 @@ public class SimpleHuffProcessor implements IHuffProcessor {
 		if (in == null) {
 			throw new IllegalArgumentException("InputStream cannot equal null");
 		}
+		if (myRetained != null) {
+			// the copy of an input that was never compressed.
+			myRetained.close();
+			myRetained = null;
+		}
+		if (myRetainLimit == -1) {
+			return toIntBits(preprocessData(in, headerFormat));
+		}
+		SpillBuffer retained = new SpillBuffer(myRetainLimit);
+		boolean kept = false;
+		try {
+			InputStream tee = retained.tee(in);
+			long bitsSaved = preprocessData(tee, headerFormat);
+			// data that is stored isn't counted, it is still needed by compress.
+			tee.skip(Long.MAX_VALUE);
+			if (retained.isSpilled()) {
+				showString("input kept in a temp file: " + retained.size() + " bytes");
+			}
+			myRetained = retained;
+			kept = true;
+			return toIntBits(bitsSaved);
+		} finally {
+			if (!kept) {
+				retained.close();
+			}
+		}
+	}
 
-		// create a BitInputStream from the InputStream. use BufferedInputStream to make
-		// method faster.
-		BitInputStream reader = new BitInputStream(new BufferedInputStream(in));
-		// initialize myCompressor.
-		myCompressor = new Compressor(reader, headerFormat);
-		// close the reader.
-		reader.close();
+	// helper method times and counts the data, see preprocessCompress.
+	private long preprocessData(InputStream in, int headerFormat) throws IOException {
+		HuffOperation op = null;
+		if (myMetrics != null) {
+			op = startOperation(IHuffMetrics.Phase.PREPROCESS, EntropySampler.remainingLength(in));
+		}
+		long start = IHuffMetrics.startPhase(myMetrics, IHuffMetrics.Phase.PREPROCESS);
+		long bitsSaved = 0;
+		boolean counted = false;
+		try {
+			bitsSaved = countData(in, headerFormat, op);
+			counted = true;
+		} finally {
+			endOperation(op, counted ? 0 : -1);
+		}
+		IHuffMetrics.endPhase(myMetrics, IHuffMetrics.Phase.PREPROCESS, start, myCompressor.getOriginalLength());
+		return bitsSaved;
+	}
+
+	// helper method chooses the filters, samples the data and counts it.
+	// op: the operation the bytes read are added to, or null.
+	// returns the number of bits that would be saved by compressing the file.
+	private long countData(InputStream in, int headerFormat, HuffOperation op) throws IOException {
+		myCompressor = getEngine().analyze(in, headerFormat, op);
 		// find the bits saved by compression.
-		int bitsSaved = myCompressor.getNumBitsInOriginalFile() - myCompressor.getNumBitsWritten();
+		long bitsSaved = myCompressor.getNumBitsInOriginalFile() - myCompressor.getNumBitsWritten();
+		if (myCompressor.isStoreOnly()) {
+			showString("sampled as not compressing, not counted");
+		}
+		if (!myCompressor.getFilterChain().isEmpty()) {
+			showString("filters: " + myCompressor.getFilterChain());
+		}
+		if (myCompressor.getNumBlocks() > 0) {
+			showString("blocks: " + myCompressor.getNumBlocks());
+		}
 		showString("bits saved: " + bitsSaved);
 		return bitsSaved;
 	}
 
+	// helper method returns an engine with the options set now.
+	private HuffEngine getEngine() {
+		int flags = mySplitBlocks ? FLAG_BLOCKS : 0;
+		if (myStoreLength) {
+			flags |= FLAG_LENGTH;
+		}
+		if (myChecksums) {
+			flags |= FLAG_CHECKSUM;
+		}
+		return new HuffEngine(myFilters, flags, myCheckSamples, mySyncInterval, myMetrics);
+	}
+
 	public void setViewer(IHuffViewer viewer) {
 		myViewer = viewer;
 	}
 
+	// method sets the listener the phases of every call and the bytes, files,
+	// blocks and errors are reported to, null for none (the default).
+	public void setMetrics(IHuffMetrics metrics) {
+		myMetrics = metrics;
+	}
+
+	// method sets the filters applied to the data before it is counted.
+	// filters: the chain to use, FilterChain.NONE to turn filtering off or null
+	// to choose the chain from a sample of each input (the default).
+	public void setFilterChain(FilterChain filters) {
+		myFilters = filters;
+	}
+
+	// method sets whether the data may be split into blocks, each huffed with its
+	// own tree, when that makes the compressed file smaller. On by default.
+	public void setBlockSplitting(boolean split) {
+		mySplitBlocks = split;
+	}
+
+	// method sets whether a sample of the data is checked before it is counted.
+	// Data estimated not to compress is then not counted and compress writes it
+	// as it is, or not at all unless forced. On by default, only used when
+	// block splitting is on.
+	public void setSampleCheck(boolean check) {
+		myCheckSamples = check;
+	}
+
+	// method sets whether the number of chunks is written in the header of the
+	// compressed file. The decompressed file can then be sized before it is
+	// written and is decoded without a pseudoEOF. On by default.
+	public void setStoreLength(boolean store) {
+		myStoreLength = store;
+	}
+
+	// method sets whether every block of the compressed file is followed by the
+	// CRC32C of its payload and of its chunks, so damaged files are found when
+	// they are uncompressed or tested. The data is then always written in
+	// blocks. On by default.
+	public void setChecksums(boolean checksums) {
+		myChecksums = checksums;
+	}
+
+	// method sets whether compress reads the original file and writes the
+	// compressed file on threads of their own, so the disk is busy while the
+	// data is encoded. Off by default, see HuffPipeline.
+	public void setPipelined(boolean pipelined) {
+		myPipelined = pipelined;
+	}
+
+	// method sets whether compress checks the compressed data as it writes it. A
+	// second thread decodes the data written and matches it against the input
+	// read, so a bad file makes compress throw instead of being found later. Off
+	// by default, see HuffVerifier.
+	public void setVerify(boolean verify) {
+		myVerify = verify;
+	}
+
+	// method sets whether preprocessCompress keeps a copy of the input it reads,
+	// so compress reads the copy and the input is only read once. The copy is
+	// kept in memory up to memoryLimit bytes and moved to a temp file past that,
+	// which compress deletes when it is done. For streams that can't be read
+	// twice, like standard in.
+	// memoryLimit: the most bytes kept in memory, or -1 for no copy (the default).
+	// pre: memoryLimit >= -1
+	public void setRetainInput(int memoryLimit) {
+		// check precon:
+		if (memoryLimit < -1) {
+			throw new IllegalArgumentException("memory limit must be -1 or more");
+		}
+		myRetainLimit = memoryLimit;
+	}
+
+	// method sets the number of chunks between the sync points of a seek table
+	// written at the end of the compressed file, so uncompressRange can start
+	// near the range instead of at the start. The data is then always written in
+	// blocks. 0 for no table (the default).
+	// pre: interval is 0 or a positive multiple of FilterChain.BLOCK_SIZE
+	public void setSyncInterval(int interval) {
+		// check precon:
+		if (interval < 0 || interval % FilterChain.BLOCK_SIZE != 0) {
+			throw new IllegalArgumentException("interval must be 0 or a multiple of " + FilterChain.BLOCK_SIZE);
+		}
+		mySyncInterval = interval;
+	}
+
 	// method creates an uncompressed file from a compressed file.
 	// in: InputStream connected to a compressed file.
 	// out: OutputStream connected to the uncompressed file.
@@ -92,35 +309,213 @@ public class SimpleHuffProcessor implements IHuffProcessor {
 		if (in == null || out == null) {
 			throw new IllegalArgumentException("InputStream and OutputStream not equal to null");
 		}
+		return toIntBits(uncompressData(in, out));
+	}
+
+	// helper method times and writes the uncompressed file, see uncompress.
+	// returns the number of bits written, or -1 if the file isn't compressed.
+	private long uncompressData(InputStream in, OutputStream out) throws IOException {
+		HuffEvents.Uncompress event = HuffEvents.isRecording() ? new HuffEvents.Uncompress() : null;
+		// the compressed bytes are only counted if someone is listening.
+		HuffOperation op = null;
+		if (myMetrics != null || (event != null && event.isEnabled())) {
+			op = new HuffOperation(IHuffMetrics.Phase.UNCOMPRESS, EntropySampler.remainingLength(in));
+			myFailed = false;
+			IHuffMetrics.startOperation(myMetrics, op);
+		}
+		long result = -1;
+		try {
+			result = writeUncompressed(op == null ? in : op.track(in), out, event, op);
+		} finally {
+			endOperation(op, result == -1 ? -1 : result / BITS_PER_WORD);
+		}
+		return result;
+	}
 
+	// helper method writes the uncompressed file, see uncompress.
+	// event: the flight recorder event of the call, begun.
+	// op: the operation reading in, or null.
+	private long writeUncompressed(InputStream in, OutputStream out, HuffEvents.Uncompress event, HuffOperation op)
+			throws IOException {
+		long start = IHuffMetrics.startPhase(myMetrics, IHuffMetrics.Phase.UNCOMPRESS);
 		// create a BitInputStream object from the InputStream.
 		BitInputStream reader = new BitInputStream(new BufferedInputStream(in));
-		// create a BitOutputStream object from the OutputStream.
-		BitOutputStream writer = new BitOutputStream(new BufferedOutputStream(out));
-		int result = 0;
+		// the BitOutputStream is created once the header says which filters to undo.
+		BitOutputStream writer = null;
+		long result = 0;
 		// create a Decompressor object.
 		Decompressor myDecompressor = new Decompressor();
+		myDecompressor.setMetrics(myMetrics);
 		// ensure the file being read is a compressed file (compressed using Huffman)
 		boolean isCompressed = myDecompressor.isCompressedFile(reader);
 		if (isCompressed) {
 			// reconstruct the tree using information from the header.
 			myDecompressor.constructTree(reader);
+			long length = myDecompressor.getOriginalLength();
+			int bufferSize = OUTPUT_BUFFER_SIZE;
+			if (length != -1) {
+				showString("original length: " + length);
+				// the length hasn't been checked yet, so it only ever makes the
+				// buffer smaller.
+				bufferSize = (int) Math.max(1, Math.min(bufferSize, length));
+			}
+			// create a BitOutputStream object from the OutputStream.
+			writer = new BitOutputStream(
+					new BufferedOutputStream(myDecompressor.getFilterChain().unfilter(out), bufferSize));
 			// get the number of bits written.
-			result = myDecompressor.decompress(reader, writer);
+			long chunks = myDecompressor.decompress(reader, writer);
+			result = chunks == -1 ? -1 : chunks * BITS_PER_WORD;
 			// if the PEOF was missing, the compressed file was not properly formed.
 			if (result == -1) {
-				myViewer.showError("File not compressed properly, missing Pseudo-EOF");
+				if (length != -1) {
+					showError("File not compressed properly, ended before " + length + " chunks");
+				} else {
+					showError("File not compressed properly, missing Pseudo-EOF");
+				}
 			}
 		} else {
-			myViewer.showError("File not compressed");
+			showError("File not compressed");
+			writer = new BitOutputStream(new BufferedOutputStream(out));
 		}
 		showString("bits written: " + result);
 		// close the reader and writer.
 		reader.close();
 		writer.close();
+		if (event != null) {
+			event.end();
+			if (event.shouldCommit()) {
+				event.headerFormat = isCompressed ? HuffEvents.getFormatName(myDecompressor.getHeaderFormat()) : "none";
+				event.compressedSize = op.getDone();
+				event.originalSize = Math.max(0, result / BITS_PER_WORD);
+				event.succeeded = isCompressed && result != -1;
+				event.commit();
+			}
+		}
+		if (myMetrics != null && isCompressed && result != -1) {
+			long length = result / BITS_PER_WORD;
+			IHuffMetrics.endPhase(myMetrics, IHuffMetrics.Phase.UNCOMPRESS, start, length);
+			IHuffMetrics.add(myMetrics, IHuffMetrics.Counter.BYTES_READ, op.getDone());
+			IHuffMetrics.add(myMetrics, IHuffMetrics.Counter.BYTES_WRITTEN, length);
+			IHuffMetrics.add(myMetrics, IHuffMetrics.Counter.FILES, 1);
+		}
 		return result;
 	}
 
+	// method checks that a compressed file uncompresses without writing the
+	// uncompressed data anywhere, it only goes into a CRC32C which is shown. Files
+	// written in blocks are decoded a block at a time in memory, and the
+	// checksums of blocks that have them are checked. Other files are checked by
+	// uncompress.
+	// in: InputStream connected to a compressed file.
+	// pre: in != null
+	// method returns the number of bytes the file uncompresses to, or -1 if it
+	// doesn't.
+	public long test(InputStream in) throws IOException {
+		// check precon:
+		if (in == null) {
+			throw new IllegalArgumentException("InputStream cannot equal null");
+		}
+
+		CheckedOutputStream sink = new CheckedOutputStream(OutputStream.nullOutputStream(), new CRC32C());
+		long total = EntropySampler.remainingLength(in);
+		BufferedInputStream buffered = new BufferedInputStream(in, OUTPUT_BUFFER_SIZE);
+		// the header says if the file is in blocks, then it is read again.
+		buffered.mark(2 * BITS_PER_INT / BITS_PER_WORD);
+		boolean blocks = false;
+		try {
+			DataInputStream header = new DataInputStream(buffered);
+			blocks = header.readInt() == MAGIC_NUMBER && (header.readInt() & FLAG_BLOCKS) != 0;
+		} catch (EOFException e) {
+			// too short to be compressed, uncompress shows the error.
+		}
+		buffered.reset();
+		long length = -1;
+		if (blocks) {
+			HuffOperation op = startOperation(IHuffMetrics.Phase.UNCOMPRESS, total);
+			try {
+				length = new HuffmanInputStream(op == null ? buffered : op.track(buffered)).transferTo(sink);
+			} catch (IOException e) {
+				showError(e.getMessage());
+			} finally {
+				endOperation(op, length);
+			}
+		} else {
+			long bits = uncompressData(buffered, sink);
+			length = bits == -1 ? -1 : bits / BITS_PER_WORD;
+		}
+		if (length != -1) {
+			showString("bytes decoded: " + length + ", crc32c " + Long.toHexString(sink.getChecksum().getValue()));
+		}
+		return length;
+	}
+
+	// method writes part of the uncompressed file. Files written with a sync
+	// interval are decoded from the sync point at or before offset, other files
+	// from the start.
+	// in: channel connected to a compressed file, its position is changed.
+	// offset: offset in the uncompressed file of the first byte to write.
+	// length: the most bytes to write.
+	// out: OutputStream the bytes are written to, it is not closed.
+	// pre: in != null & out != null, offset >= 0, length >= 0
+	// method returns the number of bytes written, or -1 if the file could not be
+	// uncompressed.
+	public long uncompressRange(SeekableByteChannel in, long offset, long length, OutputStream out)
+			throws IOException {
+		// check precon:
+		if (in == null || out == null || offset < 0 || length < 0) {
+			throw new IllegalArgumentException("need in and out not equal to null, offset >= 0 and length >= 0");
+		}
+
+		try {
+			Decompressor decompressor = new Decompressor();
+			decompressor.setMetrics(myMetrics);
+			long written = decompressor.decompressRange(in, offset, length, out);
+			showString("bytes written: " + written);
+			return written;
+		} catch (IOException e) {
+			showError(e.getMessage());
+			return -1;
+		}
+	}
+
+	// helper method creates an operation and reports that it started, if there
+	// is a listener.
+	// total: bytes of input the operation will read, -1 if unknown.
+	// returns the operation, or null if there is no listener.
+	private HuffOperation startOperation(IHuffMetrics.Phase kind, long total) {
+		if (myMetrics == null) {
+			return null;
+		}
+		HuffOperation op = new HuffOperation(kind, total);
+		myFailed = false;
+		myMetrics.operationStarted(op);
+		return op;
+	}
+
+	// helper method returns bits as the int the IHuffProcessor methods return.
+	// Files of 256 MB or more have more bits than an int holds, they get the
+	// closest int.
+	private static int toIntBits(long bits) {
+		return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, bits));
+	}
+
+	// helper method records how an operation ended and reports it, if there is
+	// one. It failed if an error was shown.
+	// output: the bytes written, -1 if the operation failed.
+	private void endOperation(HuffOperation op, long output) {
+		if (op != null) {
+			op.finish(Math.max(0, output), output != -1 && !myFailed);
+			IHuffMetrics.endOperation(myMetrics, op);
+		}
+	}
+
+	private void showError(String s) {
+		myFailed = true;
+		IHuffMetrics.add(myMetrics, IHuffMetrics.Counter.ERRORS, 1);
+		if (myViewer != null)
+			myViewer.showError(s);
+	}
+
 	private void showString(String s) {
 		if (myViewer != null)
 			myViewer.update(s);
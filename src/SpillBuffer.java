@@ -0,0 +1,193 @@
+//import statements:
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+// SpillBuffer keeps a copy of a stream as it is read, so a stream that can
+// only be read once can be read again. The copy is kept in memory until it
+// passes the memory limit, then all of it is moved to a temp file:
+//
+// SpillBuffer copy = new SpillBuffer(1 << 24);
+// count(copy.tee(System.in));
+// encode(copy.openStream());
+// copy.close();
+//
+// The temp file is deleted by close, or when the JVM exits if close is never
+// called.
+public class SpillBuffer extends OutputStream {
+
+	// class constants:
+	private static final int INITIAL_SIZE = 1 << 16;
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	// instance vars:
+	// the most bytes kept in memory.
+	private final int myMemoryLimit;
+	// the bytes kept in memory, null once they have spilled.
+	private byte[] myBytes;
+	private long mySize;
+	// the temp file and the stream writing it, null until the bytes spill.
+	private File myFile;
+	private OutputStream myFileOut;
+	private boolean myClosed;
+
+	// Constructor:
+	// memoryLimit: the most bytes kept in memory before the copy is moved to a
+	// temp file, 0 to always use a temp file.
+	// pre: memoryLimit >= 0
+	public SpillBuffer(int memoryLimit) {
+		// check precon:
+		if (memoryLimit < 0) {
+			throw new IllegalArgumentException("memory limit cannot be negative");
+		}
+		myMemoryLimit = memoryLimit;
+		myBytes = new byte[Math.min(INITIAL_SIZE, memoryLimit)];
+	}
+
+	// method returns a stream of the bytes of in that adds every byte read from
+	// it to this copy. Closing the stream doesn't close in.
+	// pre: in != null
+	public InputStream tee(InputStream in) {
+		// check precon:
+		if (in == null) {
+			throw new IllegalArgumentException("InputStream cannot equal null");
+		}
+		return new TeeInputStream(in);
+	}
+
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	public void write(byte[] b, int off, int len) throws IOException {
+		// check precon:
+		if (off < 0 || len < 0 || off + len > b.length) {
+			throw new IndexOutOfBoundsException("off " + off + " len " + len + " for " + b.length + " bytes");
+		}
+		if (myClosed) {
+			throw new IOException("buffer closed");
+		}
+		if (myFileOut == null && mySize + len > myMemoryLimit) {
+			spill();
+		}
+		if (myFileOut != null) {
+			myFileOut.write(b, off, len);
+		} else {
+			if (mySize + len > myBytes.length) {
+				long size = Math.max(mySize + len, 2L * myBytes.length);
+				myBytes = Arrays.copyOf(myBytes, (int) Math.min(myMemoryLimit, size));
+			}
+			System.arraycopy(b, off, myBytes, (int) mySize, len);
+		}
+		mySize += len;
+	}
+
+	// method returns the number of bytes copied.
+	public long size() {
+		return mySize;
+	}
+
+	// method returns true if the copy has been moved to a temp file.
+	public boolean isSpilled() {
+		return myFile != null;
+	}
+
+	// method returns a stream of the bytes copied so far. The stream is a
+	// ByteArrayInputStream or a FileInputStream, so it can be sampled and its
+	// length found without reading it.
+	// pre: the buffer isn't closed
+	public InputStream openStream() throws IOException {
+		if (myClosed) {
+			throw new IOException("buffer closed");
+		}
+		if (myFileOut == null) {
+			return new ByteArrayInputStream(myBytes, 0, (int) mySize);
+		}
+		myFileOut.flush();
+		return new FileInputStream(myFile);
+	}
+
+	// method frees the copy and deletes the temp file if there is one.
+	public void close() throws IOException {
+		if (myClosed) {
+			return;
+		}
+		myClosed = true;
+		myBytes = null;
+		if (myFileOut != null) {
+			try {
+				myFileOut.close();
+			} finally {
+				if (!myFile.delete()) {
+					throw new IOException("can't delete " + myFile);
+				}
+			}
+		}
+	}
+
+	// helper method moves the bytes kept in memory to a new temp file.
+	private void spill() throws IOException {
+		myFile = File.createTempFile("huff", ".spill");
+		myFile.deleteOnExit();
+		myFileOut = new BufferedOutputStream(new FileOutputStream(myFile), BUFFER_SIZE);
+		myFileOut.write(myBytes, 0, (int) mySize);
+		myBytes = null;
+	}
+
+	// InputStream that copies the bytes read from in to the buffer. Skipped bytes
+	// are read so they are copied too.
+	private class TeeInputStream extends FilterInputStream {
+
+		private TeeInputStream(InputStream in) {
+			super(in);
+		}
+
+		public int read() throws IOException {
+			int b = in.read();
+			if (b != -1) {
+				write(b);
+			}
+			return b;
+		}
+
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = in.read(b, off, len);
+			if (n > 0) {
+				write(b, off, n);
+			}
+			return n;
+		}
+
+		public long skip(long n) throws IOException {
+			byte[] buffer = new byte[(int) Math.min(n, BUFFER_SIZE)];
+			long skipped = 0;
+			int got = 0;
+			while (skipped < n && (got = read(buffer, 0, (int) Math.min(n - skipped, buffer.length))) != -1) {
+				skipped += got;
+			}
+			return skipped;
+		}
+
+		public boolean markSupported() {
+			return false;
+		}
+
+		public void mark(int readlimit) {
+		}
+
+		public void reset() throws IOException {
+			throw new IOException("mark/reset not supported");
+		}
+
+		// the stream read belongs to the caller.
+		public void close() {
+		}
+	}
+}